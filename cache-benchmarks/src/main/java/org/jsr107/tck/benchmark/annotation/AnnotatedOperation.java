@@ -0,0 +1,108 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import domain.Blog;
+import manager.CountingBlogManagerImpl;
+
+import javax.cache.annotation.CachePut;
+import javax.cache.annotation.CacheRemove;
+import javax.cache.annotation.CacheRemoveAll;
+import javax.cache.annotation.CacheResult;
+import java.lang.annotation.Annotation;
+
+/**
+ * The annotated methods of a {@link CountingBlogManagerImpl} that the
+ * annotation harnesses are compared on.
+ */
+public enum AnnotatedOperation {
+
+  /**
+   * Gets an entry with {@link CountingBlogManagerImpl#getEntryCached(String)},
+   * which is a cache hit once the entry is cached.
+   */
+  CACHE_RESULT(CacheResult.class) {
+    @Override
+    public void invoke(CountingBlogManagerImpl blogManager, Blog blog) {
+      blogManager.getEntryCached(blog.getTitle());
+    }
+  },
+
+  /**
+   * Caches an entry with
+   * {@link CountingBlogManagerImpl#updateEntry(String, Blog)}.
+   */
+  CACHE_PUT(CachePut.class) {
+    @Override
+    public void invoke(CountingBlogManagerImpl blogManager, Blog blog) {
+      blogManager.updateEntry(blog.getTitle(), blog);
+    }
+  },
+
+  /**
+   * Removes an entry with
+   * {@link CountingBlogManagerImpl#clearEntryFromCache(String)}.
+   */
+  CACHE_REMOVE(CacheRemove.class) {
+    @Override
+    public void invoke(CountingBlogManagerImpl blogManager, Blog blog) {
+      blogManager.clearEntryFromCache(blog.getTitle());
+    }
+  },
+
+  /**
+   * Removes every entry with {@link CountingBlogManagerImpl#clearCache()}.
+   */
+  CACHE_REMOVE_ALL(CacheRemoveAll.class) {
+    @Override
+    public void invoke(CountingBlogManagerImpl blogManager, Blog blog) {
+      blogManager.clearCache();
+    }
+  };
+
+  private final Class<? extends Annotation> annotation;
+
+  AnnotatedOperation(Class<? extends Annotation> annotation) {
+    this.annotation = annotation;
+  }
+
+  /**
+   * Obtains the annotation of the method called.
+   *
+   * @return the annotation type
+   */
+  public Class<? extends Annotation> getAnnotation() {
+    return annotation;
+  }
+
+  /**
+   * Obtains the name of the annotation, as written on the method.
+   *
+   * @return the name, for example <code>@CacheResult</code>
+   */
+  public String getAnnotationName() {
+    return "@" + annotation.getSimpleName();
+  }
+
+  /**
+   * Calls the annotated method for an entry.
+   *
+   * @param blogManager the {@link CountingBlogManagerImpl} bean
+   * @param blog        the entry
+   */
+  public abstract void invoke(CountingBlogManagerImpl blogManager, Blog blog);
+}
@@ -0,0 +1,240 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import domain.Blog;
+import manager.CountingBlogManagerImpl;
+import org.jsr107.tck.benchmark.support.AllocationMeter;
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the annotation harness on the classpath running the same
+ * {@link CountingBlogManagerImpl} workload for each
+ * {@link AnnotatedOperation}: how long the harness takes to start, and the
+ * throughput, 99th percentile latency and allocation of each annotated
+ * method.
+ * <p/>
+ * Each operation is called by <code>threads</code> threads on entries chosen
+ * at random from <code>entries</code> cached ones, for <code>warmup</code>
+ * seconds and then for <code>duration</code> seconds while it is measured.
+ * Its allocation is measured separately on a single thread.
+ * <p/>
+ * As the startup time is only meaningful in a new JVM, harnesses are best
+ * compared with a {@link CrossFrameworkAnnotationBenchmark}, which runs this
+ * benchmark in a JVM of its own for each harness.  When
+ * <code>resultFile</code> is set the {@link HarnessMeasurement} is also
+ * stored in that file.
+ */
+public class AnnotationWorkloadBenchmark {
+
+  private final int threads;
+  private final long warmupNanos;
+  private final long durationNanos;
+  private final int entries;
+  private final int allocationIterations;
+
+  /**
+   * Constructs an {@link AnnotationWorkloadBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public AnnotationWorkloadBenchmark() {
+    this.threads = BenchmarkProperties.getInt("threads", 4);
+    this.warmupNanos = TimeUnit.SECONDS.toNanos(BenchmarkProperties.getLong("warmup", 5));
+    this.durationNanos = TimeUnit.SECONDS.toNanos(BenchmarkProperties.getLong("duration", 10));
+    this.entries = BenchmarkProperties.getInt("entries", 1000);
+    this.allocationIterations = BenchmarkProperties.getInt("allocationIterations", 100000);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    HarnessMeasurement measurement = new AnnotationWorkloadBenchmark().run(System.out);
+
+    String resultFile = BenchmarkProperties.getString("resultFile", null);
+    if (resultFile != null) {
+      measurement.store(new File(resultFile));
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @return the {@link HarnessMeasurement}
+   * @throws Exception when the benchmark fails
+   */
+  public HarnessMeasurement run(PrintStream out) throws Exception {
+    long begin = System.nanoTime();
+    CountingBlogManagerImpl blogManager = BeanProviders.getBeanProvider().getBeanByType(CountingBlogManagerImpl.class);
+    long bootstrapNanos = System.nanoTime() - begin;
+    long readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+
+    HarnessMeasurement measurement = new HarnessMeasurement(BeanProviders.getBeanProvider().getClass().getName(),
+        LatencyHistogram.convert(bootstrapNanos, TimeUnit.MILLISECONDS), readyMillis);
+
+    out.printf("Annotation workload through %s of %s%n", BeanProviders.describe(), BenchmarkCaching.describe());
+    out.printf("startup: bootstrap=%.1f ms ready=%d ms after the JVM started%n",
+        measurement.getBootstrapMillis(), readyMillis);
+    out.printf("threads=%d warmup=%d s duration=%d s entries=%d%n", threads,
+        TimeUnit.NANOSECONDS.toSeconds(warmupNanos), TimeUnit.NANOSECONDS.toSeconds(durationNanos), entries);
+    out.printf("%-18s %14s %12s %12s%n", "annotation", "calls/s", "p99 us", "bytes/call");
+
+    Blog[] blogs = new Blog[entries];
+    for (int entry = 0; entry < entries; entry++) {
+      blogs[entry] = new Blog("title " + entry, "body " + entry);
+      blogManager.createEntry(blogs[entry]);
+    }
+
+    try {
+      for (AnnotatedOperation operation : AnnotatedOperation.values()) {
+        HarnessMeasurement.OperationMeasurement operationMeasurement = measure(blogManager, operation, blogs);
+        measurement.put(operation, operationMeasurement);
+        out.printf("%-18s %14.0f %12.1f %12.1f%n", operation.getAnnotationName(), operationMeasurement.getThroughput(),
+            LatencyHistogram.convert(operationMeasurement.getP99Nanos(), TimeUnit.MICROSECONDS),
+            operationMeasurement.getAllocatedBytes());
+      }
+    } finally {
+      blogManager.clearCache();
+    }
+    out.printf("bytes/call is measured on one thread and is NaN when the JVM can't measure allocation%n");
+    return measurement;
+  }
+
+  /**
+   * Measures an {@link AnnotatedOperation}, after caching every entry.
+   *
+   * @param blogManager the {@link CountingBlogManagerImpl} bean
+   * @param operation   the {@link AnnotatedOperation}
+   * @param blogs       the entries
+   * @return the {@link HarnessMeasurement.OperationMeasurement}
+   * @throws Exception when a call fails
+   */
+  private HarnessMeasurement.OperationMeasurement measure(final CountingBlogManagerImpl blogManager,
+                                                          final AnnotatedOperation operation,
+                                                          final Blog[] blogs) throws Exception {
+    blogManager.clearCache();
+    for (Blog blog : blogs) {
+      blogManager.getEntryCached(blog.getTitle());
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final LatencyHistogram[] latencies = new LatencyHistogram[threads];
+    final long[] calls = new long[threads];
+    final long[] window = new long[2];
+
+    List<Thread> callers = new ArrayList<Thread>();
+    for (int thread = 0; thread < threads; thread++) {
+      final int index = thread;
+      latencies[index] = new LatencyHistogram();
+      Thread caller = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            Random random = new Random(index);
+            LatencyHistogram latency = latencies[index];
+            long measureFrom = window[0];
+            long measureUntil = window[1];
+            long count = 0;
+
+            while (true) {
+              long begin = System.nanoTime();
+              if (begin >= measureUntil) {
+                break;
+              }
+              operation.invoke(blogManager, blogs[random.nextInt(blogs.length)]);
+              if (begin >= measureFrom) {
+                latency.record(System.nanoTime() - begin);
+                count++;
+              }
+            }
+            calls[index] = count;
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      }, operation.name().toLowerCase() + "-" + thread);
+      caller.start();
+      callers.add(caller);
+    }
+
+    window[0] = System.nanoTime() + warmupNanos;
+    window[1] = window[0] + durationNanos;
+    start.countDown();
+    for (Thread caller : callers) {
+      caller.join();
+    }
+    if (failure.get() != null) {
+      throw new IllegalStateException("A caller of " + operation.getAnnotationName() + " failed", failure.get());
+    }
+
+    LatencyHistogram latency = new LatencyHistogram();
+    long total = 0;
+    for (int thread = 0; thread < threads; thread++) {
+      latency.add(latencies[thread]);
+      total += calls[thread];
+    }
+    double throughput = total / LatencyHistogram.convert(durationNanos, TimeUnit.SECONDS);
+
+    return new HarnessMeasurement.OperationMeasurement(throughput, latency.getValueAtPercentile(99),
+        allocatedBytes(blogManager, operation, blogs));
+  }
+
+  /**
+   * Measures the bytes an {@link AnnotatedOperation} allocates per call.
+   *
+   * @param blogManager the {@link CountingBlogManagerImpl} bean
+   * @param operation   the {@link AnnotatedOperation}
+   * @param blogs       the entries, which are cycled through
+   * @return the bytes per call, or {@link Double#NaN} when the JVM can't
+   *         measure allocation
+   */
+  private double allocatedBytes(final CountingBlogManagerImpl blogManager, final AnnotatedOperation operation,
+                                final Blog[] blogs) {
+    if (!AllocationMeter.isSupported()) {
+      return Double.NaN;
+    }
+    return new AllocationMeter(allocationIterations / 10, allocationIterations).bytesPerOperation(new Runnable() {
+      private int next;
+
+      @Override
+      public void run() {
+        if (next == blogs.length) {
+          next = 0;
+        }
+        operation.invoke(blogManager, blogs[next++]);
+      }
+    });
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+
+import javax.cache.annotation.BeanProvider;
+import javax.cache.annotation.BootstrapTimedBeanProvider;
+import java.util.ServiceLoader;
+
+/**
+ * Resolves the {@link BeanProvider} of the annotation harness on the
+ * classpath, in the same way as the TCK's annotation tests.
+ * <p/>
+ * When more than one harness is present the <code>beanProvider</code>
+ * property selects one by class name, otherwise the first found is used.
+ */
+public final class BeanProviders {
+
+  private static BeanProvider beanProvider;
+
+  private BeanProviders() {
+    //utility class
+  }
+
+  /**
+   * Obtains the {@link BeanProvider}, creating it, and so starting the
+   * harness's container, on first use.
+   *
+   * @return the {@link BeanProvider}
+   * @throws IllegalStateException when no harness is on the classpath
+   */
+  public static synchronized BeanProvider getBeanProvider() {
+    if (beanProvider == null) {
+      String className = BenchmarkProperties.getString("beanProvider", null);
+      for (BeanProvider candidate : ServiceLoader.load(BeanProvider.class)) {
+        if (className == null || candidate.getClass().getName().equals(className)) {
+          beanProvider = candidate;
+          break;
+        }
+      }
+
+      if (beanProvider == null) {
+        throw new IllegalStateException("Failed to resolve the annotation harness to benchmark"
+            + (className == null ? "" : " " + className) + ". Build with -P annotations "
+            + "-Dannotation-harness-artifactId=cdi-weld-annotations-test-harness, spring-annotations-test-harness "
+            + "or guice-annotations-test-harness");
+      }
+    }
+    return beanProvider;
+  }
+
+  /**
+   * Describes the {@link BeanProvider}.
+   *
+   * @return the class name of the {@link BeanProvider}, followed by how long
+   *         its container took to bootstrap when it is a
+   *         {@link BootstrapTimedBeanProvider}
+   */
+  public static String describe() {
+    BeanProvider provider = getBeanProvider();
+    String name = provider.getClass().getName();
+    if (provider instanceof BootstrapTimedBeanProvider) {
+      return name + " (" + ((BootstrapTimedBeanProvider) provider).getBootstrapPhases() + ")";
+    }
+    return name;
+  }
+}
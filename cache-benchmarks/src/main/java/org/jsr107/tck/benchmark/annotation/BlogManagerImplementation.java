@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import manager.BlogManager;
+import manager.CacheNameOnEachMethodBlogManagerImpl;
+import manager.ClassLevelCacheConfigBlogManagerImpl;
+import manager.CountingBlogManagerImpl;
+import manager.UsingDefaultCacheNameBlogManagerImpl;
+
+/**
+ * The {@link BlogManager} implementations of the test domain.  Most differ
+ * in how they name the caches their annotations use.
+ */
+public enum BlogManagerImplementation {
+
+  /**
+   * Names the cache on each annotated method.
+   */
+  CACHE_NAME_ON_EACH_METHOD(CacheNameOnEachMethodBlogManagerImpl.class),
+
+  /**
+   * Names the cache once with {@link javax.cache.annotation.CacheDefaults}.
+   */
+  CLASS_LEVEL_CACHE_CONFIG(ClassLevelCacheConfigBlogManagerImpl.class),
+
+  /**
+   * Uses the default cache name derived from each method.
+   */
+  USING_DEFAULT_CACHE_NAME(UsingDefaultCacheNameBlogManagerImpl.class),
+
+  /**
+   * Thread-safe, counting how many times its annotated methods run.
+   */
+  COUNTING(CountingBlogManagerImpl.class);
+
+  private final Class<? extends BlogManager> implementationClass;
+
+  BlogManagerImplementation(Class<? extends BlogManager> implementationClass) {
+    this.implementationClass = implementationClass;
+  }
+
+  /**
+   * Obtains the class of the implementation.
+   *
+   * @return the class
+   */
+  public Class<? extends BlogManager> getImplementationClass() {
+    return implementationClass;
+  }
+
+  /**
+   * Obtains the implementation as a bean from the
+   * {@link javax.cache.annotation.BeanProvider}, so that its annotations are
+   * intercepted.
+   *
+   * @return the intercepted {@link BlogManager}
+   */
+  public BlogManager getBean() {
+    return BeanProviders.getBeanProvider().getBeanByType(implementationClass);
+  }
+
+  /**
+   * Creates an instance of the implementation directly, so that its
+   * annotations are ignored.
+   *
+   * @return the {@link BlogManager}
+   */
+  public BlogManager newInstance() {
+    try {
+      return implementationClass.newInstance();
+    } catch (InstantiationException e) {
+      throw new IllegalStateException("Failed to instantiate " + implementationClass.getName(), e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Failed to instantiate " + implementationClass.getName(), e);
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.cache.annotation.CacheKeyGenerator;
+import javax.cache.annotation.GeneratedCacheKey;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of generating a {@link GeneratedCacheKey} for each
+ * {@link KeyShape}, as an annotation interceptor does on every call, and
+ * checks the quality of the keys' hash codes.
+ * <p/>
+ * The {@link CacheKeyGenerator} is resolved by {@link KeyGenerators}.  Each
+ * operation generates a key from a prepared {@link KeyInvocationContext};
+ * <code>generateAndHash</code> also obtains its hash code, as a cache lookup
+ * would.
+ * <p/>
+ * Run {@link #main(String[])} to measure every shape with the JMH
+ * <code>gc</code> profiler and then report the {@link KeyHashQuality} of
+ * each.  The benchmark exits with a non-zero status if the hash codes of any
+ * shape collide more often than <code>maxCollisionRate</code>, crowd more
+ * than <code>maxBucketLoad</code> keys into a bucket, or differ for equal
+ * arguments of types that have value equality.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheKeyGenerationBenchmark {
+
+  /**
+   * The shape of the parameters.
+   */
+  @Param({"PARAMETERS_1", "PARAMETERS_2", "PARAMETERS_4", "PARAMETERS_8",
+      "CACHE_KEY_1_OF_3", "CACHE_KEY_2_OF_8", "IDENTIFIER", "BLOG"})
+  public KeyShape shape;
+
+  /**
+   * The number of distinct invocations cycled through.
+   */
+  @Param({"1024"})
+  public int invocations;
+
+  private CacheKeyGenerator generator;
+  private KeyInvocationContext[] contexts;
+  private int next;
+
+  /**
+   * Prepares the invocation contexts.
+   */
+  @Setup(Level.Trial)
+  public void createContexts() {
+    generator = KeyGenerators.getCacheKeyGenerator();
+    contexts = new KeyInvocationContext[invocations];
+    for (int index = 0; index < invocations; index++) {
+      contexts[index] = new KeyInvocationContext(shape.getMethod(), shape.getArguments(index, index));
+    }
+  }
+
+  /**
+   * Generates a key.
+   *
+   * @return the {@link GeneratedCacheKey}
+   */
+  @Benchmark
+  public GeneratedCacheKey generate() {
+    return generator.generateCacheKey(nextContext());
+  }
+
+  /**
+   * Generates a key and obtains its hash code.
+   *
+   * @return the hash code
+   */
+  @Benchmark
+  public int generateAndHash() {
+    return generator.generateCacheKey(nextContext()).hashCode();
+  }
+
+  /**
+   * Obtains the next invocation context, cycling through them.
+   *
+   * @return the {@link KeyInvocationContext}
+   */
+  private KeyInvocationContext nextContext() {
+    if (next == contexts.length) {
+      next = 0;
+    }
+    return contexts[next++];
+  }
+
+  /**
+   * Measures every shape, reports the cost and allocation of generating
+   * keys and the quality of their hash codes.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    int keys = BenchmarkProperties.getInt("hashKeys", 100000);
+    double maxCollisionRate = BenchmarkProperties.getDouble("maxCollisionRate", 0.001);
+    int maxBucketLoad = BenchmarkProperties.getInt("maxBucketLoad", 16);
+
+    ChainedOptionsBuilder options = new OptionsBuilder()
+        .include(CacheKeyGenerationBenchmark.class.getName())
+        .addProfiler(GCProfiler.class);
+    Collection<RunResult> results = new Runner(JmhSupport.withParameters(options, "shape", "invocations").build()).run();
+
+    CacheKeyGenerator generator = KeyGenerators.getCacheKeyGenerator();
+    out.printf("GeneratedCacheKey generation by %s%n", generator.getClass().getName());
+    out.printf("%-18s %12s %12s %12s %12s%n", "shape", "generate ns", "alloc B/op", "+hash ns", "alloc B/op");
+    for (KeyShape shape : KeyShape.values()) {
+      RunResult generate = find(results, shape, "generate");
+      RunResult generateAndHash = find(results, shape, "generateAndHash");
+      if (generate == null && generateAndHash == null) {
+        continue;
+      }
+      out.printf("%-18s %12.1f %12.0f %12.1f %12.0f%n", shape.name().toLowerCase(),
+          score(generate), allocated(generate), score(generateAndHash), allocated(generateAndHash));
+    }
+
+    boolean passed = true;
+    out.printf("%nhash quality of %d keys per shape%n", keys);
+    out.printf("%-18s %12s %10s %10s %10s %8s  %s%n",
+        "shape", "collisions", "buckets", "max load", "chi2 ratio", "equal", "verdict");
+    for (KeyShape shape : KeyShape.values()) {
+      KeyHashQuality quality = new KeyHashQuality(generator, shape, keys);
+      boolean good = quality.getCollisionRate() <= maxCollisionRate
+          && quality.getMaxBucketLoad() <= maxBucketLoad
+          && (quality.isEqualForEqualArguments() || !shape.hasValueEquality());
+      passed &= good;
+      out.printf("%-18s %12.5f %10d %10d %10.2f %8s  %s%n", shape.name().toLowerCase(),
+          quality.getCollisionRate(), quality.getBuckets(), quality.getMaxBucketLoad(), quality.getChiSquaredRatio(),
+          quality.isEqualForEqualArguments() ? "yes" : shape.hasValueEquality() ? "no" : "identity",
+          good ? "ok" : "POOR");
+    }
+    out.printf("equal is whether equal arguments gave equal keys; identity means a parameter type has no value "
+        + "equality, so every call misses%n");
+
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Finds the {@link RunResult} of a benchmark method for a shape.
+   *
+   * @param results the {@link RunResult}s
+   * @param shape   the {@link KeyShape}
+   * @param method  the name of the benchmark method
+   * @return the {@link RunResult}, or <code>null</code> if it wasn't run
+   */
+  private static RunResult find(Collection<RunResult> results, KeyShape shape, String method) {
+    for (RunResult result : results) {
+      if (shape.name().equals(result.getParams().getParam("shape")) && method.equals(JmhSupport.getMethodName(result))) {
+        return result;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Obtains the score of a {@link RunResult}.
+   *
+   * @param result the {@link RunResult}, or <code>null</code>
+   * @return the score in ns per operation, or {@link Double#NaN}
+   */
+  private static double score(RunResult result) {
+    return result == null ? Double.NaN : result.getPrimaryResult().getScore();
+  }
+
+  /**
+   * Obtains the allocation per operation of a {@link RunResult}.
+   *
+   * @param result the {@link RunResult}, or <code>null</code>
+   * @return the bytes allocated per operation, or {@link Double#NaN}
+   */
+  private static double allocated(RunResult result) {
+    return result == null ? Double.NaN : JmhSupport.getAllocatedPerOperation(result);
+  }
+}
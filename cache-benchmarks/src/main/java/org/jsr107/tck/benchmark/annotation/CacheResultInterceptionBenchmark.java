@@ -0,0 +1,231 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import domain.Blog;
+import manager.BlogManager;
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.cache.annotation.CacheResult;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per call overhead of {@link CacheResult} interception by the
+ * CDI, Spring or Guice annotation harness on the classpath.
+ * <p/>
+ * For each {@link BlogManagerImplementation} the benchmark calls:
+ * <ol>
+ * <li><code>direct</code>: {@link BlogManager#getEntryRaw(String)} on an
+ * instance created directly, which is just a map lookup,</li>
+ * <li><code>raw</code>: {@link BlogManager#getEntryRaw(String)}, which isn't
+ * annotated, on the bean from the harness, adding the cost of its proxy,</li>
+ * <li><code>cached</code>: {@link BlogManager#getEntryCached(String)}, which
+ * is annotated with {@link CacheResult}, on the bean, every call being a
+ * cache hit,</li>
+ * <li><code>cachedKeyParam</code>: the three argument
+ * {@link BlogManager#getEntryCached(String, String, String)}, whose key is
+ * generated from the one parameter annotated with
+ * {@link javax.cache.annotation.CacheKey}.</li>
+ * </ol>
+ * Run {@link #main(String[])} to print, for each implementation, the cost of
+ * the proxy (<code>raw</code> less <code>direct</code>) and of the
+ * interception (<code>cached</code> less <code>raw</code>).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheResultInterceptionBenchmark {
+
+  /**
+   * The {@link BlogManager} implementation.
+   */
+  @Param({"CACHE_NAME_ON_EACH_METHOD", "CLASS_LEVEL_CACHE_CONFIG", "USING_DEFAULT_CACHE_NAME"})
+  public BlogManagerImplementation implementation;
+
+  /**
+   * The number of blog entries created, all of which are cached.
+   */
+  @Param({"1000"})
+  public int entries;
+
+  private BlogManager direct;
+  private BlogManager bean;
+  private String[] titles;
+
+  /**
+   * The position of the next title, per thread.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    /**
+     * Obtains the next title, cycling through them.
+     *
+     * @param titles the titles
+     * @return the title
+     */
+    String next(String[] titles) {
+      if (next == titles.length) {
+        next = 0;
+      }
+      return titles[next++];
+    }
+  }
+
+  /**
+   * Creates the entries and caches them through the bean.
+   */
+  @Setup(Level.Trial)
+  public void createEntries() {
+    direct = implementation.newInstance();
+    bean = implementation.getBean();
+    bean.clearCache();
+
+    titles = new String[entries];
+    for (int entry = 0; entry < entries; entry++) {
+      titles[entry] = "title " + entry;
+      bean.createEntry(new Blog(titles[entry], "body " + entry));
+    }
+    for (String title : titles) {
+      bean.getEntryCached(title);
+      bean.getEntryCached(null, title, null);
+    }
+  }
+
+  /**
+   * Clears the cache used by the bean.
+   */
+  @TearDown(Level.Trial)
+  public void clearCache() {
+    bean.clearCache();
+  }
+
+  /**
+   * Calls the unannotated method on an instance created directly.
+   *
+   * @param cursor the {@link Cursor}
+   * @return the {@link Blog}
+   */
+  @Benchmark
+  public Blog direct(Cursor cursor) {
+    return direct.getEntryRaw(cursor.next(titles));
+  }
+
+  /**
+   * Calls the unannotated method on the bean.
+   *
+   * @param cursor the {@link Cursor}
+   * @return the {@link Blog}
+   */
+  @Benchmark
+  public Blog raw(Cursor cursor) {
+    return bean.getEntryRaw(cursor.next(titles));
+  }
+
+  /**
+   * Calls the {@link CacheResult} method on the bean.
+   *
+   * @param cursor the {@link Cursor}
+   * @return the cached {@link Blog}
+   */
+  @Benchmark
+  public Blog cached(Cursor cursor) {
+    return bean.getEntryCached(cursor.next(titles));
+  }
+
+  /**
+   * Calls the {@link CacheResult} method with a
+   * {@link javax.cache.annotation.CacheKey} parameter on the bean.
+   *
+   * @param cursor the {@link Cursor}
+   * @return the cached {@link Blog}
+   */
+  @Benchmark
+  public Blog cachedKeyParam(Cursor cursor) {
+    return bean.getEntryCached(null, cursor.next(titles), null);
+  }
+
+  /**
+   * Runs the benchmark and prints the overhead of the proxy and the
+   * interception for each implementation.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    ChainedOptionsBuilder options = new OptionsBuilder().include(CacheResultInterceptionBenchmark.class.getName());
+    Collection<RunResult> results = new Runner(JmhSupport.withParameters(options, "implementation", "entries").build()).run();
+
+    out.printf("@CacheResult interception by %s of %s%n", BeanProviders.describe(), BenchmarkCaching.describe());
+    out.printf("%-26s %10s %10s %10s %10s %10s %12s%n",
+        "implementation", "direct", "raw", "cached", "keyParam", "proxy", "interception");
+    for (BlogManagerImplementation implementation : BlogManagerImplementation.values()) {
+      double direct = score(results, implementation, "direct");
+      double raw = score(results, implementation, "raw");
+      double cached = score(results, implementation, "cached");
+      if (Double.isNaN(direct) && Double.isNaN(raw) && Double.isNaN(cached)) {
+        continue;
+      }
+      out.printf("%-26s %10.1f %10.1f %10.1f %10.1f %10.1f %12.1f%n", implementation.name().toLowerCase(),
+          direct, raw, cached, score(results, implementation, "cachedKeyParam"), raw - direct, cached - raw);
+    }
+    out.printf("times are ns per call; proxy is raw less direct and interception is cached less raw%n");
+  }
+
+  /**
+   * Finds the score of a benchmark method for an implementation.
+   *
+   * @param results        the {@link RunResult}s
+   * @param implementation the {@link BlogManagerImplementation}
+   * @param method         the name of the benchmark method
+   * @return the score in ns per call, or {@link Double#NaN} if it wasn't run
+   */
+  private static double score(Collection<RunResult> results, BlogManagerImplementation implementation, String method) {
+    for (RunResult result : results) {
+      if (implementation.name().equals(result.getParams().getParam("implementation"))
+          && method.equals(JmhSupport.getMethodName(result))) {
+        return result.getPrimaryResult().getScore();
+      }
+    }
+    return Double.NaN;
+  }
+}
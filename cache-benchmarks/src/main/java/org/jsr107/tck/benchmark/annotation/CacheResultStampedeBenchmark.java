@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import domain.Blog;
+import manager.BlogManager;
+import manager.CountingBlogManagerImpl;
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+
+import javax.cache.annotation.CacheResult;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures whether annotation driven caching stampedes the backend: many
+ * callers ask a {@link CacheResult} method for the same uncached entry at
+ * the same moment.
+ * <p/>
+ * Each round creates a new entry in a {@link CountingBlogManagerImpl}, whose
+ * annotated methods take <code>backendLatency</code> milliseconds, and
+ * starts <code>callers</code> threads that call
+ * {@link BlogManager#getEntryCached(String)} for it together.  The benchmark
+ * reports how many times the method actually ran, where an implementation
+ * that coalesces concurrent misses runs it once, and the distribution of
+ * the callers' latency.  A final round of the same callers, all hitting the
+ * cache, gives the latency without the backend.
+ */
+public class CacheResultStampedeBenchmark {
+
+  private final int callers;
+  private final int rounds;
+  private final long backendLatency;
+  private final boolean keyParam;
+
+  /**
+   * Constructs a {@link CacheResultStampedeBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public CacheResultStampedeBenchmark() {
+    this.callers = BenchmarkProperties.getInt("callers", 1000);
+    this.rounds = BenchmarkProperties.getInt("rounds", 10);
+    this.backendLatency = BenchmarkProperties.getLong("backendLatency", 20);
+    this.keyParam = BenchmarkProperties.getBoolean("keyParam", false);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new CacheResultStampedeBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    BlogManager blogManager = BeanProviders.getBeanProvider().getBeanByType(CountingBlogManagerImpl.class);
+    blogManager.clearCache();
+    CountingBlogManagerImpl.resetInvocationCounts();
+    CountingBlogManagerImpl.setLatency(backendLatency, TimeUnit.MILLISECONDS);
+
+    out.printf("@CacheResult stampede through %s of %s%n", BeanProviders.describe(), BenchmarkCaching.describe());
+    out.printf("callers=%d rounds=%d backendLatency=%d ms keyParam=%s%n", callers, rounds, backendLatency, keyParam);
+    out.printf("%-8s %12s  %s%n", "round", "invocations", "caller latency");
+
+    try {
+      LatencyHistogram missLatency = new LatencyHistogram();
+      long totalInvocations = 0;
+      String title = null;
+      for (int round = 0; round < rounds; round++) {
+        title = "stampede " + round;
+        blogManager.createEntry(new Blog(title, "body " + round));
+
+        LatencyHistogram latency = call(blogManager, title);
+        long invocations = CountingBlogManagerImpl.getInvocationCount(title);
+        totalInvocations += invocations;
+        missLatency.add(latency);
+        out.printf("%-8d %12d  %s%n", round, invocations, latency.summary(TimeUnit.MILLISECONDS));
+      }
+
+      LatencyHistogram hitLatency = title == null ? new LatencyHistogram() : call(blogManager, title);
+      out.printf("%-8s %12.1f  %s%n", "misses", rounds == 0 ? 0 : (double) totalInvocations / rounds,
+          missLatency.summary(TimeUnit.MILLISECONDS));
+      out.printf("%-8s %12s  %s%n", "hits", "-", hitLatency.summary(TimeUnit.MILLISECONDS));
+      out.printf("invocations is the number of times the method ran for a round's entry, 1 when concurrent misses are "
+          + "coalesced; %.1f%% of the calling threads ran it%n",
+          rounds == 0 ? 0 : 100.0 * totalInvocations / ((long) rounds * callers));
+    } finally {
+      CountingBlogManagerImpl.setLatency(0, TimeUnit.MILLISECONDS);
+      blogManager.clearCache();
+    }
+  }
+
+  /**
+   * Starts {@link #callers} threads that get an entry together and waits for
+   * them to finish.
+   *
+   * @param blogManager the {@link BlogManager}
+   * @param title       the title of the entry
+   * @return the latency of each caller
+   * @throws Exception when a caller fails
+   */
+  private LatencyHistogram call(final BlogManager blogManager, final String title) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final long[] latencies = new long[callers];
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    Thread[] threads = new Thread[callers];
+    for (int caller = 0; caller < callers; caller++) {
+      final int index = caller;
+      threads[caller] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            long begin = System.nanoTime();
+            Blog blog = keyParam
+                ? blogManager.getEntryCached("caller " + index, title, null)
+                : blogManager.getEntryCached(title);
+            latencies[index] = System.nanoTime() - begin;
+
+            if (blog == null || !title.equals(blog.getTitle())) {
+              throw new IllegalStateException("Caller " + index + " got " + blog + " rather than " + title);
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      }, "stampede-" + caller);
+      threads[caller].start();
+    }
+
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new IllegalStateException("A caller failed", failure.get());
+    }
+
+    LatencyHistogram latency = new LatencyHistogram();
+    for (long nanos : latencies) {
+      latency.record(nanos);
+    }
+    return latency;
+  }
+}
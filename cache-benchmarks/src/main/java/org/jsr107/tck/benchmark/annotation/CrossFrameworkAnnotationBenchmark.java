@@ -0,0 +1,203 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CDI, Spring and Guice annotation harnesses by running an
+ * {@link AnnotationWorkloadBenchmark} for each of them, and prints a table
+ * of their startup times and of the throughput, 99th percentile latency and
+ * allocation of {@link javax.cache.annotation.CacheResult},
+ * {@link javax.cache.annotation.CachePut},
+ * {@link javax.cache.annotation.CacheRemove} and
+ * {@link javax.cache.annotation.CacheRemoveAll}.
+ * <p/>
+ * Each harness runs in a new JVM, on the classpath of this one, with its
+ * {@link javax.cache.annotation.BeanProvider} selected by class name, so
+ * that each starts cold and none is affected by the others' containers.
+ * The harnesses compared are listed by <code>beanProviders</code>, the
+ * options of the JVMs by <code>jvmArgs</code>, and the benchmark settings
+ * of this JVM are passed on to them.
+ */
+public class CrossFrameworkAnnotationBenchmark {
+
+  /**
+   * The {@link javax.cache.annotation.BeanProvider}s of the three harnesses.
+   */
+  public static final String DEFAULT_BEAN_PROVIDERS = "org.jsr107.tck.annotations.cdi.test.CdiBeanProvider,"
+      + "org.jsr107.tck.annotations.spring.test.SpringBeanProvider,"
+      + "org.jsr107.tck.annotations.guice.test.GuiceBeanProvider";
+
+  private final List<String> beanProviders = new ArrayList<String>();
+  private final String jvmArgs;
+
+  /**
+   * Constructs a {@link CrossFrameworkAnnotationBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public CrossFrameworkAnnotationBenchmark() {
+    for (String beanProvider : BenchmarkProperties.getString("beanProviders", DEFAULT_BEAN_PROVIDERS).split(",")) {
+      if (beanProvider.trim().length() > 0) {
+        beanProviders.add(beanProvider.trim());
+      }
+    }
+    this.jvmArgs = BenchmarkProperties.getString("jvmArgs", "").trim();
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out, and exits with status 1
+   * when a harness fails to run.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (!new CrossFrameworkAnnotationBenchmark().run(System.out)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @return <code>true</code> if every harness was measured
+   * @throws Exception when the benchmark fails
+   */
+  public boolean run(PrintStream out) throws Exception {
+    Map<String, HarnessMeasurement> measurements = new LinkedHashMap<String, HarnessMeasurement>();
+    for (String beanProvider : beanProviders) {
+      out.printf("Running the annotation workload through %s%n", beanProvider);
+      measurements.put(beanProvider, measure(beanProvider));
+    }
+
+    out.printf("%nAnnotation harness comparison%n");
+    out.printf("%-26s", "");
+    for (String beanProvider : beanProviders) {
+      out.printf(" %20s", beanProvider.substring(beanProvider.lastIndexOf('.') + 1));
+    }
+    out.printf("%n");
+
+    printRow(out, measurements, "bootstrap ms", null, 0);
+    printRow(out, measurements, "ready ms", null, 1);
+    for (AnnotatedOperation operation : AnnotatedOperation.values()) {
+      printRow(out, measurements, operation.getAnnotationName() + " calls/s", operation, 0);
+      printRow(out, measurements, operation.getAnnotationName() + " p99 us", operation, 1);
+      printRow(out, measurements, operation.getAnnotationName() + " bytes/call", operation, 2);
+    }
+    out.printf("bootstrap is the time to start the container and provide the first bean; ready is when that finished "
+        + "after the JVM started%n");
+
+    boolean complete = true;
+    for (Map.Entry<String, HarnessMeasurement> entry : measurements.entrySet()) {
+      if (entry.getValue() == null) {
+        out.printf("%s failed to run; is its harness on the classpath?%n", entry.getKey());
+        complete = false;
+      }
+    }
+    return complete;
+  }
+
+  /**
+   * Runs an {@link AnnotationWorkloadBenchmark} for a harness in a new JVM.
+   *
+   * @param beanProvider the class name of the harness's
+   *                     {@link javax.cache.annotation.BeanProvider}
+   * @return the {@link HarnessMeasurement}, or <code>null</code> if the
+   *         harness failed to run
+   * @throws Exception when the JVM can't be started
+   */
+  private HarnessMeasurement measure(String beanProvider) throws Exception {
+    File resultFile = File.createTempFile("annotation-harness", ".properties");
+    try {
+      List<String> command = new ArrayList<String>();
+      command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+      if (jvmArgs.length() > 0) {
+        for (String jvmArg : jvmArgs.split("\\s+")) {
+          command.add(jvmArg);
+        }
+      }
+      for (String name : System.getProperties().stringPropertyNames()) {
+        if ((name.startsWith(BenchmarkProperties.PREFIX) || name.startsWith("javax.cache."))
+            && !name.startsWith(BenchmarkProperties.PREFIX + "beanProvider")
+            && !name.equals(BenchmarkProperties.PREFIX + "resultFile")) {
+          command.add("-D" + name + "=" + System.getProperty(name));
+        }
+      }
+      command.add("-D" + BenchmarkProperties.PREFIX + "beanProvider=" + beanProvider);
+      command.add("-D" + BenchmarkProperties.PREFIX + "resultFile=" + resultFile.getPath());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(AnnotationWorkloadBenchmark.class.getName());
+
+      Process process = new ProcessBuilder(command).inheritIO().start();
+      if (process.waitFor() != 0 || resultFile.length() == 0) {
+        return null;
+      }
+      return HarnessMeasurement.load(resultFile);
+    } finally {
+      if (!resultFile.delete()) {
+        resultFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Prints a row of the comparison.
+   *
+   * @param out          the {@link PrintStream}
+   * @param measurements the {@link HarnessMeasurement} of each harness,
+   *                     <code>null</code> for those that failed
+   * @param label        the label of the row
+   * @param operation    the {@link AnnotatedOperation}, or <code>null</code>
+   *                     for the startup rows
+   * @param metric       the index of the metric: bootstrap or ready for the
+   *                     startup rows, and throughput, p99 or allocation for
+   *                     an operation
+   */
+  private void printRow(PrintStream out, Map<String, HarnessMeasurement> measurements, String label,
+                        AnnotatedOperation operation, int metric) {
+    out.printf("%-26s", label);
+    for (HarnessMeasurement measurement : measurements.values()) {
+      double value = Double.NaN;
+      if (measurement != null && operation == null) {
+        value = metric == 0 ? measurement.getBootstrapMillis() : measurement.getReadyMillis();
+      } else if (measurement != null && measurement.get(operation) != null) {
+        HarnessMeasurement.OperationMeasurement operationMeasurement = measurement.get(operation);
+        if (metric == 0) {
+          value = operationMeasurement.getThroughput();
+        } else if (metric == 1) {
+          value = LatencyHistogram.convert(operationMeasurement.getP99Nanos(), TimeUnit.MICROSECONDS);
+        } else {
+          value = operationMeasurement.getAllocatedBytes();
+        }
+      }
+      out.printf(measurement == null ? " %20s" : " %20.1f", measurement == null ? "failed" : value);
+    }
+    out.printf("%n");
+  }
+}
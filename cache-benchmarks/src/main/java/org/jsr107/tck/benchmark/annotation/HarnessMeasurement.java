@@ -0,0 +1,220 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * What an {@link AnnotationWorkloadBenchmark} measured of one annotation
+ * harness, which can be stored in a file so that a
+ * {@link CrossFrameworkAnnotationBenchmark} can collect it from the JVM that
+ * ran the harness.
+ */
+public class HarnessMeasurement {
+
+  private final String beanProvider;
+  private final double bootstrapMillis;
+  private final double readyMillis;
+  private final Map<AnnotatedOperation, OperationMeasurement> operations =
+      new EnumMap<AnnotatedOperation, OperationMeasurement>(AnnotatedOperation.class);
+
+  /**
+   * Constructs a {@link HarnessMeasurement}.
+   *
+   * @param beanProvider    the class name of the harness's
+   *                        {@link javax.cache.annotation.BeanProvider}
+   * @param bootstrapMillis how long the harness took to start and provide
+   *                        its first bean
+   * @param readyMillis     how long after the JVM started the harness was
+   *                        ready
+   */
+  public HarnessMeasurement(String beanProvider, double bootstrapMillis, double readyMillis) {
+    this.beanProvider = beanProvider;
+    this.bootstrapMillis = bootstrapMillis;
+    this.readyMillis = readyMillis;
+  }
+
+  /**
+   * Obtains the class name of the harness's
+   * {@link javax.cache.annotation.BeanProvider}.
+   *
+   * @return the class name
+   */
+  public String getBeanProvider() {
+    return beanProvider;
+  }
+
+  /**
+   * Obtains how long the harness took to start its container and provide
+   * its first bean.
+   *
+   * @return the time in milliseconds
+   */
+  public double getBootstrapMillis() {
+    return bootstrapMillis;
+  }
+
+  /**
+   * Obtains how long after the JVM started the harness had provided its
+   * first bean.
+   *
+   * @return the time in milliseconds
+   */
+  public double getReadyMillis() {
+    return readyMillis;
+  }
+
+  /**
+   * Records the measurement of an {@link AnnotatedOperation}.
+   *
+   * @param operation   the {@link AnnotatedOperation}
+   * @param measurement the {@link OperationMeasurement}
+   */
+  public void put(AnnotatedOperation operation, OperationMeasurement measurement) {
+    operations.put(operation, measurement);
+  }
+
+  /**
+   * Obtains the measurement of an {@link AnnotatedOperation}.
+   *
+   * @param operation the {@link AnnotatedOperation}
+   * @return the {@link OperationMeasurement}, or <code>null</code> if the
+   *         operation wasn't measured
+   */
+  public OperationMeasurement get(AnnotatedOperation operation) {
+    return operations.get(operation);
+  }
+
+  /**
+   * Stores the measurement in a file.
+   *
+   * @param file the file
+   * @throws IOException when the file can't be written
+   */
+  public void store(File file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("beanProvider", beanProvider);
+    properties.setProperty("bootstrapMillis", Double.toString(bootstrapMillis));
+    properties.setProperty("readyMillis", Double.toString(readyMillis));
+    for (Map.Entry<AnnotatedOperation, OperationMeasurement> entry : operations.entrySet()) {
+      String prefix = entry.getKey().name() + ".";
+      OperationMeasurement measurement = entry.getValue();
+      properties.setProperty(prefix + "throughput", Double.toString(measurement.getThroughput()));
+      properties.setProperty(prefix + "p99Nanos", Long.toString(measurement.getP99Nanos()));
+      properties.setProperty(prefix + "allocatedBytes", Double.toString(measurement.getAllocatedBytes()));
+    }
+
+    OutputStream output = new FileOutputStream(file);
+    try {
+      properties.store(output, "annotation harness measurement");
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Loads a measurement stored with {@link #store(File)}.
+   *
+   * @param file the file
+   * @return the {@link HarnessMeasurement}
+   * @throws IOException when the file can't be read
+   */
+  public static HarnessMeasurement load(File file) throws IOException {
+    Properties properties = new Properties();
+    InputStream input = new FileInputStream(file);
+    try {
+      properties.load(input);
+    } finally {
+      input.close();
+    }
+
+    HarnessMeasurement measurement = new HarnessMeasurement(properties.getProperty("beanProvider"),
+        Double.parseDouble(properties.getProperty("bootstrapMillis")),
+        Double.parseDouble(properties.getProperty("readyMillis")));
+    for (AnnotatedOperation operation : AnnotatedOperation.values()) {
+      String prefix = operation.name() + ".";
+      String throughput = properties.getProperty(prefix + "throughput");
+      if (throughput != null) {
+        measurement.put(operation, new OperationMeasurement(Double.parseDouble(throughput),
+            Long.parseLong(properties.getProperty(prefix + "p99Nanos")),
+            Double.parseDouble(properties.getProperty(prefix + "allocatedBytes"))));
+      }
+    }
+    return measurement;
+  }
+
+  /**
+   * What was measured of one {@link AnnotatedOperation}.
+   */
+  public static class OperationMeasurement {
+
+    private final double throughput;
+    private final long p99Nanos;
+    private final double allocatedBytes;
+
+    /**
+     * Constructs an {@link OperationMeasurement}.
+     *
+     * @param throughput     the calls per second, over all threads
+     * @param p99Nanos       the 99th percentile latency of a call
+     * @param allocatedBytes the bytes allocated per call, or
+     *                       {@link Double#NaN} when the JVM can't measure
+     *                       allocation
+     */
+    public OperationMeasurement(double throughput, long p99Nanos, double allocatedBytes) {
+      this.throughput = throughput;
+      this.p99Nanos = p99Nanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Obtains the calls per second, over all threads.
+     *
+     * @return the throughput
+     */
+    public double getThroughput() {
+      return throughput;
+    }
+
+    /**
+     * Obtains the 99th percentile latency of a call.
+     *
+     * @return the latency in nanoseconds
+     */
+    public long getP99Nanos() {
+      return p99Nanos;
+    }
+
+    /**
+     * Obtains the bytes allocated per call.
+     *
+     * @return the bytes, or {@link Double#NaN} when the JVM can't measure
+     *         allocation
+     */
+    public double getAllocatedBytes() {
+      return allocatedBytes;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+
+import javax.cache.annotation.CacheKeyGenerator;
+
+/**
+ * Resolves the {@link CacheKeyGenerator} to measure: the class named by the
+ * <code>keyGenerator</code> property, otherwise the default generator of the
+ * annotations RI when it is on the classpath, otherwise a
+ * {@link ReferenceCacheKeyGenerator}.
+ */
+public final class KeyGenerators {
+
+  /**
+   * The class name of the default {@link CacheKeyGenerator} of the
+   * annotations RI.
+   */
+  public static final String RI_KEY_GENERATOR = "org.jsr107.ri.annotations.DefaultCacheKeyGenerator";
+
+  private KeyGenerators() {
+    //utility class
+  }
+
+  /**
+   * Creates the {@link CacheKeyGenerator} to measure.
+   *
+   * @return the {@link CacheKeyGenerator}
+   */
+  public static CacheKeyGenerator getCacheKeyGenerator() {
+    String className = BenchmarkProperties.getString("keyGenerator", null);
+    if (className == null) {
+      try {
+        Class.forName(RI_KEY_GENERATOR);
+        className = RI_KEY_GENERATOR;
+      } catch (ClassNotFoundException e) {
+        return new ReferenceCacheKeyGenerator();
+      }
+    }
+
+    try {
+      return (CacheKeyGenerator) Class.forName(className).newInstance();
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to create the CacheKeyGenerator " + className, e);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import javax.cache.annotation.CacheKeyGenerator;
+import javax.cache.annotation.GeneratedCacheKey;
+import java.util.Arrays;
+
+/**
+ * The quality of the hash codes of the {@link GeneratedCacheKey}s a
+ * {@link CacheKeyGenerator} generates for distinct arguments of a
+ * {@link KeyShape}.
+ * <p/>
+ * The hash codes are spread into the buckets of a table sized, as a
+ * {@link java.util.HashMap} would be, for the keys, so the largest bucket
+ * shows the longest chain a hash based store would have to search.  The
+ * chi-squared ratio compares the distribution with a uniform one and is
+ * close to one for a good hash.
+ */
+public class KeyHashQuality {
+
+  private final KeyShape shape;
+  private final int keys;
+  private final int distinctHashCodes;
+  private final int buckets;
+  private final int maxBucketLoad;
+  private final double chiSquaredRatio;
+  private final boolean equalForEqualArguments;
+
+  /**
+   * Generates keys for distinct arguments and measures the quality of their
+   * hash codes.
+   *
+   * @param generator the {@link CacheKeyGenerator}
+   * @param shape     the {@link KeyShape}
+   * @param keys      the number of keys to generate
+   */
+  public KeyHashQuality(CacheKeyGenerator generator, KeyShape shape, int keys) {
+    this.shape = shape;
+    this.keys = keys;
+
+    int[] hashCodes = new int[keys];
+    boolean equal = true;
+    for (int index = 0; index < keys; index++) {
+      GeneratedCacheKey key = generate(generator, shape, index, 0);
+      hashCodes[index] = key.hashCode();
+
+      if (index < 100) {
+        GeneratedCacheKey other = generate(generator, shape, index, 1);
+        equal &= key.equals(other) && key.hashCode() == other.hashCode();
+      }
+    }
+    this.equalForEqualArguments = equal;
+
+    int[] sorted = hashCodes.clone();
+    Arrays.sort(sorted);
+    int distinct = keys == 0 ? 0 : 1;
+    for (int index = 1; index < keys; index++) {
+      if (sorted[index] != sorted[index - 1]) {
+        distinct++;
+      }
+    }
+    this.distinctHashCodes = distinct;
+
+    //the power of two table a HashMap grows to for the keys at its load factor of 0.75
+    int tableSize = Integer.highestOneBit(Math.max(1, (int) (keys / 0.75f))) << 1;
+    int[] loads = new int[tableSize];
+    for (int hashCode : hashCodes) {
+      loads[(hashCode ^ (hashCode >>> 16)) & (tableSize - 1)]++;
+    }
+    int max = 0;
+    double expected = (double) keys / tableSize;
+    double chiSquared = 0;
+    for (int load : loads) {
+      max = Math.max(max, load);
+      chiSquared += (load - expected) * (load - expected) / expected;
+    }
+    this.buckets = tableSize;
+    this.maxBucketLoad = max;
+    this.chiSquaredRatio = chiSquared / (tableSize - 1);
+  }
+
+  /**
+   * Generates a key.
+   *
+   * @param generator the {@link CacheKeyGenerator}
+   * @param shape     the {@link KeyShape}
+   * @param index     the index of the key
+   * @param variant   the variant of the parameters that aren't part of the key
+   * @return the {@link GeneratedCacheKey}
+   */
+  private static GeneratedCacheKey generate(CacheKeyGenerator generator, KeyShape shape, int index, int variant) {
+    return generator.generateCacheKey(new KeyInvocationContext(shape.getMethod(), shape.getArguments(index, variant)));
+  }
+
+  /**
+   * Obtains the {@link KeyShape}.
+   *
+   * @return the {@link KeyShape}
+   */
+  public KeyShape getShape() {
+    return shape;
+  }
+
+  /**
+   * Obtains the fraction of keys whose hash code equals that of another key.
+   *
+   * @return the collision rate
+   */
+  public double getCollisionRate() {
+    return keys == 0 ? 0 : (double) (keys - distinctHashCodes) / keys;
+  }
+
+  /**
+   * Obtains the number of distinct hash codes.
+   *
+   * @return the number of distinct hash codes
+   */
+  public int getDistinctHashCodes() {
+    return distinctHashCodes;
+  }
+
+  /**
+   * Obtains the number of buckets the keys were spread into.
+   *
+   * @return the number of buckets
+   */
+  public int getBuckets() {
+    return buckets;
+  }
+
+  /**
+   * Obtains the number of keys in the fullest bucket.
+   *
+   * @return the maximum bucket load
+   */
+  public int getMaxBucketLoad() {
+    return maxBucketLoad;
+  }
+
+  /**
+   * Obtains the chi-squared statistic of the bucket loads divided by its
+   * degrees of freedom.
+   *
+   * @return the chi-squared ratio, close to one for a uniform distribution
+   */
+  public double getChiSquaredRatio() {
+    return chiSquaredRatio;
+  }
+
+  /**
+   * Determines whether equal, but not identical, key parameters produced
+   * equal keys with equal hash codes, whatever the other parameters.
+   *
+   * @return <code>true</code> if equal arguments produced equal keys
+   */
+  public boolean isEqualForEqualArguments() {
+    return equalForEqualArguments;
+  }
+}
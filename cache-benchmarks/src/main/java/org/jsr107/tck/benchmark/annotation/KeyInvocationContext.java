@@ -0,0 +1,196 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import javax.cache.annotation.CacheInvocationParameter;
+import javax.cache.annotation.CacheKey;
+import javax.cache.annotation.CacheKeyInvocationContext;
+import javax.cache.annotation.CacheResult;
+import javax.cache.annotation.CacheValue;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link CacheKeyInvocationContext} of an invocation of a
+ * {@link CacheResult} method, as an annotation interceptor would provide it
+ * to a {@link javax.cache.annotation.CacheKeyGenerator}.
+ * <p/>
+ * The key parameters are those annotated with {@link CacheKey} or, when
+ * there are none, all those not annotated with {@link CacheValue}.
+ */
+public class KeyInvocationContext implements CacheKeyInvocationContext<CacheResult> {
+
+  private final Method method;
+  private final CacheInvocationParameter[] allParameters;
+  private final CacheInvocationParameter[] keyParameters;
+
+  /**
+   * Constructs a {@link KeyInvocationContext}.
+   *
+   * @param method    the {@link CacheResult} method
+   * @param arguments the arguments of the invocation
+   */
+  public KeyInvocationContext(Method method, Object[] arguments) {
+    this.method = method;
+
+    Class<?>[] types = method.getParameterTypes();
+    Annotation[][] annotations = method.getParameterAnnotations();
+    boolean[] isKeyParameter = getKeyParameters(method);
+
+    List<CacheInvocationParameter> keys = new ArrayList<CacheInvocationParameter>();
+    allParameters = new CacheInvocationParameter[types.length];
+    for (int position = 0; position < types.length; position++) {
+      allParameters[position] = new Parameter(types[position], arguments[position], annotations[position], position);
+      if (isKeyParameter[position]) {
+        keys.add(allParameters[position]);
+      }
+    }
+    keyParameters = keys.toArray(new CacheInvocationParameter[keys.size()]);
+  }
+
+  /**
+   * Determines which parameters of a method are part of the key.
+   *
+   * @param method the {@link CacheResult} method
+   * @return whether each parameter is part of the key
+   */
+  static boolean[] getKeyParameters(Method method) {
+    Annotation[][] annotations = method.getParameterAnnotations();
+    boolean[] cacheKey = new boolean[annotations.length];
+    boolean[] notCacheValue = new boolean[annotations.length];
+    boolean anyCacheKey = false;
+    for (int position = 0; position < annotations.length; position++) {
+      notCacheValue[position] = true;
+      for (Annotation annotation : annotations[position]) {
+        if (annotation instanceof CacheKey) {
+          cacheKey[position] = true;
+          anyCacheKey = true;
+        } else if (annotation instanceof CacheValue) {
+          notCacheValue[position] = false;
+        }
+      }
+    }
+    return anyCacheKey ? cacheKey : notCacheValue;
+  }
+
+  @Override
+  public CacheInvocationParameter[] getKeyParameters() {
+    return keyParameters.clone();
+  }
+
+  @Override
+  public CacheInvocationParameter getValueParameter() {
+    return null;
+  }
+
+  @Override
+  public Object getTarget() {
+    return null;
+  }
+
+  @Override
+  public CacheInvocationParameter[] getAllParameters() {
+    return allParameters.clone();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> cls) {
+    throw new IllegalArgumentException("Unwrapping to " + cls + " is not supported");
+  }
+
+  @Override
+  public Method getMethod() {
+    return method;
+  }
+
+  @Override
+  public Set<Annotation> getAnnotations() {
+    return new HashSet<Annotation>(Arrays.asList(method.getAnnotations()));
+  }
+
+  @Override
+  public CacheResult getCacheAnnotation() {
+    return method.getAnnotation(CacheResult.class);
+  }
+
+  @Override
+  public String getCacheName() {
+    String cacheName = getCacheAnnotation().cacheName();
+    if (!cacheName.isEmpty()) {
+      return cacheName;
+    }
+
+    StringBuilder builder = new StringBuilder(method.getDeclaringClass().getName())
+        .append('.').append(method.getName()).append('(');
+    Class<?>[] types = method.getParameterTypes();
+    for (int position = 0; position < types.length; position++) {
+      builder.append(position == 0 ? "" : ",").append(types[position].getName());
+    }
+    return builder.append(')').toString();
+  }
+
+  /**
+   * A parameter of the invocation.
+   */
+  private static class Parameter implements CacheInvocationParameter {
+    private final Class<?> rawType;
+    private final Object value;
+    private final Set<Annotation> annotations;
+    private final int position;
+
+    /**
+     * Constructs a {@link Parameter}.
+     *
+     * @param rawType     the declared type of the parameter
+     * @param value       the argument
+     * @param annotations the annotations of the parameter
+     * @param position    the position of the parameter
+     */
+    Parameter(Class<?> rawType, Object value, Annotation[] annotations, int position) {
+      this.rawType = rawType;
+      this.value = value;
+      this.annotations = Collections.unmodifiableSet(new HashSet<Annotation>(Arrays.asList(annotations)));
+      this.position = position;
+    }
+
+    @Override
+    public Class<?> getRawType() {
+      return rawType;
+    }
+
+    @Override
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public Set<Annotation> getAnnotations() {
+      return annotations;
+    }
+
+    @Override
+    public int getParameterPosition() {
+      return position;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import domain.Blog;
+import domain.Identifier;
+import manager.ClassLevelCacheConfigBlogManagerImpl;
+
+import java.lang.reflect.Method;
+
+/**
+ * The shapes of the parameters from which a
+ * {@link javax.cache.annotation.GeneratedCacheKey} is generated: the number
+ * of parameters, which of them are annotated with
+ * {@link javax.cache.annotation.CacheKey}, and their types.
+ */
+public enum KeyShape {
+
+  /**
+   * A single {@link String}.
+   */
+  PARAMETERS_1(method(KeyedMethods.class, "parameters1", 1)),
+
+  /**
+   * Two {@link String}s.
+   */
+  PARAMETERS_2(method(KeyedMethods.class, "parameters2", 2)),
+
+  /**
+   * Four {@link String}s.
+   */
+  PARAMETERS_4(method(KeyedMethods.class, "parameters4", 4)),
+
+  /**
+   * Eight {@link String}s.
+   */
+  PARAMETERS_8(method(KeyedMethods.class, "parameters8", 8)),
+
+  /**
+   * The second of three {@link String}s, as in
+   * {@link manager.BlogManager#getEntryCached(String, String, String)}.
+   */
+  CACHE_KEY_1_OF_3(method(ClassLevelCacheConfigBlogManagerImpl.class, "getEntryCached", 3)),
+
+  /**
+   * Two of eight {@link String}s.
+   */
+  CACHE_KEY_2_OF_8(method(KeyedMethods.class, "cacheKeys2Of8", 8)),
+
+  /**
+   * An {@link Identifier}, which is equal to others with the same name.
+   */
+  IDENTIFIER(method(KeyedMethods.class, "identifier", 1)),
+
+  /**
+   * A {@link Blog}, which is only equal to itself.
+   */
+  BLOG(method(KeyedMethods.class, "blog", 1));
+
+  private final Method method;
+  private final boolean[] keyParameters;
+
+  KeyShape(Method method) {
+    this.method = method;
+    this.keyParameters = KeyInvocationContext.getKeyParameters(method);
+  }
+
+  /**
+   * Obtains the annotated method.
+   *
+   * @return the {@link Method}
+   */
+  public Method getMethod() {
+    return method;
+  }
+
+  /**
+   * Creates the arguments of an invocation.  Invocations with the same index
+   * have equal, though not identical, key parameters.  The other parameters
+   * depend only on the variant, which a key generator must ignore.
+   *
+   * @param index   the index of the key
+   * @param variant the variant of the parameters that aren't part of the key
+   * @return the arguments
+   */
+  public Object[] getArguments(int index, int variant) {
+    Class<?>[] types = method.getParameterTypes();
+    Object[] arguments = new Object[types.length];
+    for (int position = 0; position < types.length; position++) {
+      if (!keyParameters[position]) {
+        arguments[position] = "other " + variant;
+      } else if (types[position] == Identifier.class) {
+        arguments[position] = new Identifier("identifier " + index);
+      } else if (types[position] == Blog.class) {
+        arguments[position] = new Blog("title " + index, "body " + index);
+      } else {
+        arguments[position] = "p" + position + " " + index;
+      }
+    }
+    return arguments;
+  }
+
+  /**
+   * Determines whether equal key parameters are expected to produce equal
+   * keys, which they can't when a parameter type doesn't override
+   * {@link Object#equals(Object)}.
+   *
+   * @return <code>true</code> if every key parameter type overrides
+   *         {@link Object#equals(Object)}
+   */
+  public boolean hasValueEquality() {
+    Class<?>[] types = method.getParameterTypes();
+    for (int position = 0; position < types.length; position++) {
+      try {
+        if (keyParameters[position] && types[position].getMethod("equals", Object.class).getDeclaringClass() == Object.class) {
+          return false;
+        }
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds a method by name and number of parameters.
+   *
+   * @param declaringClass the class declaring the method
+   * @param name           the name of the method
+   * @param parameters     the number of parameters
+   * @return the {@link Method}
+   */
+  private static Method method(Class<?> declaringClass, String name, int parameters) {
+    for (Method method : declaringClass.getMethods()) {
+      if (method.getName().equals(name) && method.getParameterTypes().length == parameters) {
+        return method;
+      }
+    }
+    throw new IllegalStateException("No method " + name + " with " + parameters + " parameters in " + declaringClass);
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import domain.Blog;
+import domain.Identifier;
+
+import javax.cache.annotation.CacheKey;
+import javax.cache.annotation.CacheResult;
+
+/**
+ * Annotated methods whose parameters are the shapes of
+ * {@link javax.cache.annotation.GeneratedCacheKey} measured by the
+ * {@link CacheKeyGenerationBenchmark}.  They are never invoked.
+ */
+interface KeyedMethods {
+
+  @CacheResult
+  Object parameters1(String p1);
+
+  @CacheResult
+  Object parameters2(String p1, String p2);
+
+  @CacheResult
+  Object parameters4(String p1, String p2, String p3, String p4);
+
+  @CacheResult
+  Object parameters8(String p1, String p2, String p3, String p4, String p5, String p6, String p7, String p8);
+
+  @CacheResult
+  Object cacheKeys2Of8(String p1, @CacheKey String p2, String p3, String p4, String p5, String p6,
+                       @CacheKey String p7, String p8);
+
+  @CacheResult
+  Object identifier(Identifier identifier);
+
+  @CacheResult
+  Object blog(Blog blog);
+}
@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.annotation;
+
+import javax.cache.annotation.CacheInvocationParameter;
+import javax.cache.annotation.CacheKeyGenerator;
+import javax.cache.annotation.CacheKeyInvocationContext;
+import javax.cache.annotation.GeneratedCacheKey;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+
+/**
+ * A {@link CacheKeyGenerator} that, like the default generator of the
+ * annotations RI, combines the values of the key parameters with
+ * {@link Arrays#deepHashCode(Object[])} and {@link Arrays#deepEquals}.  It
+ * is measured when no other generator is available.
+ */
+public class ReferenceCacheKeyGenerator implements CacheKeyGenerator {
+
+  @Override
+  public GeneratedCacheKey generateCacheKey(CacheKeyInvocationContext<? extends Annotation> context) {
+    CacheInvocationParameter[] keyParameters = context.getKeyParameters();
+    Object[] values = new Object[keyParameters.length];
+    for (int position = 0; position < keyParameters.length; position++) {
+      values[position] = keyParameters[position].getValue();
+    }
+    return new ReferenceGeneratedCacheKey(values);
+  }
+
+  /**
+   * The {@link GeneratedCacheKey} of a {@link ReferenceCacheKeyGenerator}.
+   */
+  private static final class ReferenceGeneratedCacheKey implements GeneratedCacheKey {
+
+    /**
+     * The serialVersionUID required for {@link java.io.Serializable}.
+     */
+    public static final long serialVersionUID = 202610181304L;
+
+    private final Object[] values;
+    private final int hashCode;
+
+    /**
+     * Constructs a {@link ReferenceGeneratedCacheKey}.
+     *
+     * @param values the values of the key parameters
+     */
+    ReferenceGeneratedCacheKey(Object[] values) {
+      this.values = values;
+      this.hashCode = Arrays.deepHashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof ReferenceGeneratedCacheKey)) {
+        return false;
+      }
+      ReferenceGeneratedCacheKey other = (ReferenceGeneratedCacheKey) object;
+      return hashCode == other.hashCode && Arrays.deepEquals(values, other.values);
+    }
+  }
+}
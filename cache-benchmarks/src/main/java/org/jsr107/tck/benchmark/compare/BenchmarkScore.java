@@ -0,0 +1,208 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.compare;
+
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * The score of one configuration of a JMH benchmark for one implementation.
+ * <p/>
+ * Configurations are identified by the benchmark method, its parameters and
+ * the mode, so that the same configuration can be matched across
+ * implementations.
+ */
+public class BenchmarkScore {
+
+  private final String benchmark;
+  private final String parameters;
+  private final String mode;
+  private final double score;
+  private final double error;
+  private final String unit;
+  private final double allocated;
+
+  /**
+   * Constructs a {@link BenchmarkScore}.
+   *
+   * @param benchmark  the benchmark, as the simple class name and method
+   * @param parameters the parameters and thread count, as
+   *                   <code>name=value</code> pairs separated by spaces
+   * @param mode       the short label of the JMH mode, such as
+   *                   <code>thrpt</code>
+   * @param score      the score
+   * @param error      the error of the score, or {@link Double#NaN}
+   * @param unit       the unit of the score
+   * @param allocated  the bytes allocated per operation, or
+   *                   {@link Double#NaN} when not measured
+   */
+  public BenchmarkScore(String benchmark, String parameters, String mode, double score, double error, String unit,
+                        double allocated) {
+    this.benchmark = benchmark;
+    this.parameters = parameters;
+    this.mode = mode;
+    this.score = score;
+    this.error = error;
+    this.unit = unit;
+    this.allocated = allocated;
+  }
+
+  /**
+   * Creates the {@link BenchmarkScore} of a JMH run.
+   *
+   * @param result the {@link RunResult}
+   * @return the {@link BenchmarkScore}
+   */
+  public static BenchmarkScore from(RunResult result) {
+    BenchmarkParams params = result.getParams();
+    String className = params.getBenchmark().substring(0, params.getBenchmark().lastIndexOf('.'));
+    String benchmark = className.substring(className.lastIndexOf('.') + 1) + "." + JmhSupport.getMethodName(result);
+
+    StringBuilder parameters = new StringBuilder("threads=").append(params.getThreads());
+    for (String name : params.getParamsKeys()) {
+      parameters.append(' ').append(name).append('=').append(params.getParam(name));
+    }
+
+    Result<?> primary = result.getPrimaryResult();
+    return new BenchmarkScore(benchmark, parameters.toString(), params.getMode().shortLabel(), primary.getScore(),
+        primary.getScoreError(), primary.getScoreUnit(), JmhSupport.getAllocatedPerOperation(result));
+  }
+
+  /**
+   * Obtains the identity of the configuration, which is the same for every
+   * implementation.
+   *
+   * @return the benchmark, parameters and mode
+   */
+  public String getId() {
+    return benchmark + " " + parameters + " " + mode;
+  }
+
+  /**
+   * Obtains the benchmark.
+   *
+   * @return the simple class name and method of the benchmark
+   */
+  public String getBenchmark() {
+    return benchmark;
+  }
+
+  /**
+   * Obtains the parameters and thread count.
+   *
+   * @return the <code>name=value</code> pairs separated by spaces
+   */
+  public String getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Obtains the short label of the JMH mode.
+   *
+   * @return the mode, such as <code>thrpt</code> or <code>avgt</code>
+   */
+  public String getMode() {
+    return mode;
+  }
+
+  /**
+   * Obtains the score.
+   *
+   * @return the score, in {@link #getUnit()}
+   */
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * Obtains the error of the score, at JMH's confidence level.
+   *
+   * @return the error, or {@link Double#NaN} when there were too few
+   *         measurements
+   */
+  public double getError() {
+    return error;
+  }
+
+  /**
+   * Obtains the unit of the score.
+   *
+   * @return the unit, such as <code>ops/us</code>
+   */
+  public String getUnit() {
+    return unit;
+  }
+
+  /**
+   * Obtains the bytes allocated per operation, as measured by JMH's
+   * <code>gc</code> profiler.
+   *
+   * @return the bytes, or {@link Double#NaN} when the profiler wasn't used
+   */
+  public double getAllocated() {
+    return allocated;
+  }
+
+  /**
+   * Determines whether a higher score is better, which is the case for
+   * throughput and not for the modes that measure time.
+   *
+   * @return <code>true</code> if a higher score is better
+   */
+  public boolean isHigherBetter() {
+    return "thrpt".equals(mode);
+  }
+
+  /**
+   * Determines how much better this score is than another of the same
+   * configuration.
+   *
+   * @param baseline the {@link BenchmarkScore} to compare with
+   * @return the ratio of the scores, greater than 1 when this score is
+   *         better, whatever the mode
+   */
+  public double relativeTo(BenchmarkScore baseline) {
+    return isHigherBetter() ? score / baseline.getScore() : baseline.getScore() / score;
+  }
+
+  /**
+   * Formats the {@link BenchmarkScore} as a line of tab separated fields.
+   *
+   * @return the line
+   */
+  public String toLine() {
+    return benchmark + '\t' + parameters + '\t' + mode + '\t' + score + '\t' + error + '\t' + unit + '\t' + allocated;
+  }
+
+  /**
+   * Parses a line formatted by {@link #toLine()}.
+   *
+   * @param line the line
+   * @return the {@link BenchmarkScore}
+   * @throws IllegalArgumentException when the line isn't a score
+   */
+  public static BenchmarkScore parse(String line) {
+    String[] fields = line.split("\t");
+    if (fields.length != 7) {
+      throw new IllegalArgumentException("Not a benchmark score: " + line);
+    }
+    return new BenchmarkScore(fields[0], fields[1], fields[2], Double.parseDouble(fields[3]),
+        Double.parseDouble(fields[4]), fields[5], Double.parseDouble(fields[6]));
+  }
+}
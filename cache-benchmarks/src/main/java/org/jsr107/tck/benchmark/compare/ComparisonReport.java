@@ -0,0 +1,383 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.compare;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The comparison of the {@link ProviderResult}s of several implementations,
+ * which can be written as JSON, for tools, or as a Markdown or HTML table.
+ * <p/>
+ * Each row is a configuration of a benchmark, and each implementation has a
+ * column with its score and, when JMH's <code>gc</code> profiler was used,
+ * the bytes it allocated per operation.  The first implementation is the
+ * baseline: every other also has a column with its score relative to the
+ * baseline's, greater than 1 when it is better, whether the mode measures
+ * throughput or time.
+ */
+public class ComparisonReport {
+
+  private final Map<String, String> settings;
+  private final List<String> names;
+  private final Map<String, ProviderResult> results;
+  private final List<BenchmarkScore> configurations = new ArrayList<BenchmarkScore>();
+
+  /**
+   * Constructs a {@link ComparisonReport}.
+   *
+   * @param settings the settings every implementation was run with, such as
+   *                 the benchmarks and the JVM options, by name
+   * @param results  the {@link ProviderResult} of each implementation by
+   *                 name, <code>null</code> for those that failed to run,
+   *                 with the baseline first
+   */
+  public ComparisonReport(Map<String, String> settings, Map<String, ProviderResult> results) {
+    this.settings = new LinkedHashMap<String, String>(settings);
+    this.names = new ArrayList<String>(results.keySet());
+    this.results = new LinkedHashMap<String, ProviderResult>(results);
+
+    List<String> ids = new ArrayList<String>();
+    for (ProviderResult result : results.values()) {
+      if (result != null) {
+        for (BenchmarkScore score : result.getScores()) {
+          if (!ids.contains(score.getId())) {
+            ids.add(score.getId());
+            configurations.add(score);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the comparison as a JSON document.
+   *
+   * @param writer the {@link PrintWriter}
+   */
+  public void writeJson(PrintWriter writer) {
+    writer.println("{");
+    writer.println("  \"settings\": {");
+    String separator = "";
+    for (Map.Entry<String, String> entry : settings.entrySet()) {
+      writer.print(separator);
+      writer.print("    " + json(entry.getKey()) + ": " + json(entry.getValue()));
+      separator = ",\n";
+    }
+    writer.println();
+    writer.println("  },");
+
+    writer.println("  \"providers\": [");
+    separator = "";
+    for (String name : names) {
+      ProviderResult result = results.get(name);
+      writer.print(separator);
+      writer.print("    {\"name\": " + json(name) + ", \"description\": "
+          + json(result == null ? null : result.getDescription()) + ", \"failed\": " + (result == null) + "}");
+      separator = ",\n";
+    }
+    writer.println();
+    writer.println("  ],");
+
+    writer.println("  \"results\": [");
+    separator = "";
+    for (BenchmarkScore configuration : configurations) {
+      writer.print(separator);
+      writer.println("    {");
+      writer.println("      \"benchmark\": " + json(configuration.getBenchmark()) + ",");
+      writer.println("      \"parameters\": " + json(configuration.getParameters()) + ",");
+      writer.println("      \"mode\": " + json(configuration.getMode()) + ",");
+      writer.println("      \"unit\": " + json(configuration.getUnit()) + ",");
+      writer.println("      \"higherIsBetter\": " + configuration.isHigherBetter() + ",");
+      writer.println("      \"scores\": {");
+      String scoreSeparator = "";
+      for (String name : names) {
+        BenchmarkScore score = find(name, configuration);
+        if (score != null) {
+          writer.print(scoreSeparator);
+          writer.print("        " + json(name) + ": {\"score\": " + json(score.getScore())
+              + ", \"error\": " + json(score.getError())
+              + ", \"allocated\": " + json(score.getAllocated())
+              + ", \"relative\": " + json(relative(score, configuration)) + "}");
+          scoreSeparator = ",\n";
+        }
+      }
+      writer.println();
+      writer.println("      }");
+      writer.print("    }");
+      separator = ",\n";
+    }
+    writer.println();
+    writer.println("  ]");
+    writer.println("}");
+  }
+
+  /**
+   * Writes the comparison as a Markdown table.
+   *
+   * @param writer the {@link PrintWriter}
+   */
+  public void writeMarkdown(PrintWriter writer) {
+    writer.println("# Implementation comparison");
+    writer.println();
+    for (String name : names) {
+      ProviderResult result = results.get(name);
+      writer.println("- **" + name + "**: " + (result == null ? "failed to run" : result.getDescription()));
+    }
+    for (Map.Entry<String, String> entry : settings.entrySet()) {
+      writer.println("- " + entry.getKey() + ": `" + entry.getValue() + "`");
+    }
+    writer.println();
+
+    List<String> header = header();
+    writer.println("| " + join(header, " | ") + " |");
+    StringBuilder rule = new StringBuilder("|");
+    for (int column = 0; column < header.size(); column++) {
+      rule.append(column < 4 ? "---|" : "---:|");
+    }
+    writer.println(rule);
+    for (BenchmarkScore configuration : configurations) {
+      writer.println("| " + join(row(configuration), " | ") + " |");
+    }
+    writer.println();
+    writer.println(legend());
+  }
+
+  /**
+   * Writes the comparison as an HTML page.
+   *
+   * @param writer the {@link PrintWriter}
+   */
+  public void writeHtml(PrintWriter writer) {
+    writer.println("<!DOCTYPE html>");
+    writer.println("<html>");
+    writer.println("<head>");
+    writer.println("<meta charset=\"UTF-8\">");
+    writer.println("<title>Implementation comparison</title>");
+    writer.println("<style>table {border-collapse: collapse} th, td {border: 1px solid #ccc; padding: 2px 6px} "
+        + "td.number {text-align: right} td.better {color: #070} td.worse {color: #a00}</style>");
+    writer.println("</head>");
+    writer.println("<body>");
+    writer.println("<h1>Implementation comparison</h1>");
+    writer.println("<ul>");
+    for (String name : names) {
+      ProviderResult result = results.get(name);
+      writer.println("<li><b>" + html(name) + "</b>: "
+          + html(result == null ? "failed to run" : result.getDescription()) + "</li>");
+    }
+    for (Map.Entry<String, String> entry : settings.entrySet()) {
+      writer.println("<li>" + html(entry.getKey()) + ": <code>" + html(entry.getValue()) + "</code></li>");
+    }
+    writer.println("</ul>");
+
+    writer.println("<table>");
+    writer.print("<tr>");
+    for (String column : header()) {
+      writer.print("<th>" + html(column) + "</th>");
+    }
+    writer.println("</tr>");
+    for (BenchmarkScore configuration : configurations) {
+      writer.print("<tr>");
+      List<String> cells = row(configuration);
+      for (int column = 0; column < cells.size(); column++) {
+        String style = column < 4 ? "" : " class=\"number" + relativeStyle(configuration, column) + "\"";
+        writer.print("<td" + style + ">" + html(cells.get(column)) + "</td>");
+      }
+      writer.println("</tr>");
+    }
+    writer.println("</table>");
+    writer.println("<p>" + html(legend()) + "</p>");
+    writer.println("</body>");
+    writer.println("</html>");
+  }
+
+  /**
+   * Obtains the headings of the table's columns.
+   *
+   * @return the headings
+   */
+  private List<String> header() {
+    List<String> header = new ArrayList<String>();
+    header.add("benchmark");
+    header.add("parameters");
+    header.add("mode");
+    header.add("unit");
+    for (int index = 0; index < names.size(); index++) {
+      header.add(names.get(index));
+      if (index > 0) {
+        header.add(names.get(index) + " vs " + names.get(0));
+      }
+    }
+    return header;
+  }
+
+  /**
+   * Obtains the cells of a row of the table.
+   *
+   * @param configuration a {@link BenchmarkScore} of the configuration
+   * @return the cells
+   */
+  private List<String> row(BenchmarkScore configuration) {
+    List<String> cells = new ArrayList<String>();
+    cells.add(configuration.getBenchmark());
+    cells.add(configuration.getParameters());
+    cells.add(configuration.getMode());
+    cells.add(configuration.getUnit());
+    for (int index = 0; index < names.size(); index++) {
+      BenchmarkScore score = find(names.get(index), configuration);
+      if (score == null) {
+        cells.add("-");
+      } else {
+        String cell = number(score.getScore());
+        if (!Double.isNaN(score.getError())) {
+          cell += " \u00b1 " + number(score.getError());
+        }
+        if (!Double.isNaN(score.getAllocated())) {
+          cell += " (" + number(score.getAllocated()) + " B/op)";
+        }
+        cells.add(cell);
+      }
+      if (index > 0) {
+        double relative = score == null ? Double.NaN : relative(score, configuration);
+        cells.add(Double.isNaN(relative) ? "-" : String.format(Locale.ROOT, "%.2fx", relative));
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Determines the style of a cell of the table that compares an
+   * implementation with the baseline.
+   *
+   * @param configuration a {@link BenchmarkScore} of the configuration
+   * @param column        the column of the cell
+   * @return the additional style class, if any
+   */
+  private String relativeStyle(BenchmarkScore configuration, int column) {
+    String heading = header().get(column);
+    for (int index = 1; index < names.size(); index++) {
+      if (heading.equals(names.get(index) + " vs " + names.get(0))) {
+        BenchmarkScore score = find(names.get(index), configuration);
+        double relative = score == null ? Double.NaN : relative(score, configuration);
+        if (relative > 1) {
+          return " better";
+        } else if (relative < 1) {
+          return " worse";
+        }
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Describes how to read the table.
+   *
+   * @return the legend
+   */
+  private String legend() {
+    return "Scores are followed by their error and, when measured, the bytes allocated per operation. "
+        + "Higher is better for thrpt and lower for the other modes; a comparison with " + names.get(0)
+        + " greater than 1.00x is better whatever the mode. Differences within the errors are not significant.";
+  }
+
+  /**
+   * Finds the score of an implementation for a configuration.
+   *
+   * @param name          the name of the implementation
+   * @param configuration a {@link BenchmarkScore} of the configuration
+   * @return the {@link BenchmarkScore}, or <code>null</code> if the
+   *         implementation failed or didn't run the configuration
+   */
+  private BenchmarkScore find(String name, BenchmarkScore configuration) {
+    ProviderResult result = results.get(name);
+    return result == null ? null : result.find(configuration.getId());
+  }
+
+  /**
+   * Determines a score relative to the baseline's for the same
+   * configuration.
+   *
+   * @param score         the {@link BenchmarkScore}
+   * @param configuration a {@link BenchmarkScore} of the configuration
+   * @return the relative score, or {@link Double#NaN} when the baseline
+   *         didn't run the configuration
+   */
+  private double relative(BenchmarkScore score, BenchmarkScore configuration) {
+    BenchmarkScore baseline = find(names.get(0), configuration);
+    return baseline == null ? Double.NaN : score.relativeTo(baseline);
+  }
+
+  private static String number(double value) {
+    if (Double.isNaN(value)) {
+      return "-";
+    }
+    return String.format(Locale.ROOT, Math.abs(value) >= 100 ? "%.1f" : "%.3f", value);
+  }
+
+  private static String join(List<String> values, String separator) {
+    StringBuilder builder = new StringBuilder();
+    for (String value : values) {
+      if (builder.length() > 0) {
+        builder.append(separator);
+      }
+      builder.append(value);
+    }
+    return builder.toString();
+  }
+
+  private static String json(double value) {
+    return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+  }
+
+  private static String json(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder builder = new StringBuilder("\"");
+    for (char character : value.toCharArray()) {
+      switch (character) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        default:
+          if (character < ' ') {
+            builder.append(String.format("\\u%04x", (int) character));
+          } else {
+            builder.append(character);
+          }
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private static String html(String value) {
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.compare;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs JMH benchmarks against the implementation on the classpath and stores
+ * their {@link BenchmarkScore}s, as a {@link ProviderResult}, in the file
+ * named by <code>resultFile</code>.
+ * <p/>
+ * This is the program a {@link ProviderComparison} runs in the JVM it forks
+ * for each implementation.  Its arguments are those of
+ * <code>org.openjdk.jmh.Main</code>: the benchmarks to run and the JMH
+ * options.  <code>providerName</code> is the name given to the
+ * implementation in the comparison.
+ */
+public final class ProviderBenchmarkRun {
+
+  private ProviderBenchmarkRun() {
+    //main class
+  }
+
+  /**
+   * Runs the benchmarks and stores their scores.
+   *
+   * @param args the JMH command line
+   * @throws Exception when the benchmarks fail
+   */
+  public static void main(String[] args) throws Exception {
+    String resultFile = BenchmarkProperties.getString("resultFile", null);
+    if (resultFile == null) {
+      throw new IllegalArgumentException("The benchmark setting " + BenchmarkProperties.PREFIX
+          + "resultFile must name the file in which to store the scores");
+    }
+    String description = BenchmarkCaching.describe();
+
+    List<BenchmarkScore> scores = new ArrayList<BenchmarkScore>();
+    for (RunResult result : new Runner(new CommandLineOptions(args)).run()) {
+      scores.add(BenchmarkScore.from(result));
+    }
+
+    new ProviderResult(BenchmarkProperties.getString("providerName", description), description, scores)
+        .store(new File(resultFile));
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.compare;
+
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+
+import javax.cache.Caching;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the same JMH benchmarks against several JSR107 implementations and
+ * writes a comparative report of their scores.
+ * <p/>
+ * <code>providers</code> lists the implementations as comma separated
+ * <code>name=classpath</code> pairs, where the classpath holds the
+ * implementation's jars separated by the platform's path separator.  The
+ * first is the baseline the others are compared with.  Each implementation
+ * is benchmarked by a {@link ProviderBenchmarkRun} in a JVM of its own, with
+ * the classpath of this JVM followed by the implementation's, so this JVM's
+ * classpath must not contain an implementation.  Every JVM runs the
+ * benchmarks matching <code>benchmark</code> with the same JMH options,
+ * <code>jmhOptions</code>, the same JVM options, <code>jvmArgs</code>, and
+ * the benchmark settings of this JVM.
+ * <p/>
+ * The report is written to <code>report</code> with the extensions
+ * <code>.json</code>, <code>.md</code> and <code>.html</code>, and the
+ * Markdown is also printed.
+ */
+public class ProviderComparison {
+
+  private final Map<String, String> providers = new LinkedHashMap<String, String>();
+  private final String benchmark;
+  private final String jmhOptions;
+  private final String jvmArgs;
+  private final String report;
+
+  /**
+   * Constructs a {@link ProviderComparison} configured by
+   * {@link BenchmarkProperties}.
+   *
+   * @throws IllegalArgumentException when <code>providers</code> isn't a
+   *                                  list of <code>name=classpath</code>
+   *                                  pairs with different names
+   */
+  public ProviderComparison() {
+    String providerList = BenchmarkProperties.getString("providers", "");
+    for (String provider : providerList.split(",")) {
+      if (provider.trim().length() == 0) {
+        continue;
+      }
+      int separator = provider.indexOf('=');
+      if (separator <= 0 || separator == provider.length() - 1) {
+        throw new IllegalArgumentException("The implementation " + provider.trim() + " isn't of the form name=classpath");
+      }
+      String name = provider.substring(0, separator).trim();
+      if (providers.put(name, provider.substring(separator + 1).trim()) != null) {
+        throw new IllegalArgumentException("There is more than one implementation named " + name);
+      }
+    }
+    if (providers.isEmpty()) {
+      throw new IllegalArgumentException("Set " + BenchmarkProperties.PREFIX
+          + "providers to the implementations to compare, as comma separated name=classpath pairs");
+    }
+
+    this.benchmark = BenchmarkProperties.getString("benchmark", "CoreOperationsBenchmark");
+    this.jmhOptions = BenchmarkProperties.getString("jmhOptions", "-p size=100000 -p keyType=LONG").trim();
+    this.jvmArgs = BenchmarkProperties.getString("jvmArgs", "").trim();
+    this.report = BenchmarkProperties.getString("report", "provider-comparison");
+  }
+
+  /**
+   * Runs the comparison, printing the report, and exits with status 1 when
+   * an implementation fails to run.
+   *
+   * @param args not used
+   * @throws Exception when the comparison fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (!new ProviderComparison().run(System.out)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the comparison.
+   *
+   * @param out the {@link PrintStream} on which to print the report
+   * @return <code>true</code> if every implementation was benchmarked
+   * @throws Exception when the comparison fails
+   */
+  public boolean run(PrintStream out) throws Exception {
+    if (Caching.getCachingProviders().iterator().hasNext()) {
+      throw new IllegalStateException("The classpath of the comparison contains an implementation, which would be "
+          + "benchmarked in place of those compared. Build without the implementation profile.");
+    }
+
+    Map<String, ProviderResult> results = new LinkedHashMap<String, ProviderResult>();
+    for (Map.Entry<String, String> provider : providers.entrySet()) {
+      out.printf("Benchmarking %s%n", provider.getKey());
+      results.put(provider.getKey(), benchmark(provider.getKey(), provider.getValue()));
+    }
+
+    Map<String, String> settings = new LinkedHashMap<String, String>();
+    settings.put("benchmark", benchmark);
+    settings.put("jmhOptions", jmhOptions);
+    settings.put("jvmArgs", jvmArgs);
+    for (Map.Entry<String, String> provider : providers.entrySet()) {
+      settings.put("classpath of " + provider.getKey(), provider.getValue());
+    }
+    ComparisonReport comparison = new ComparisonReport(settings, results);
+
+    PrintWriter console = new PrintWriter(out);
+    comparison.writeMarkdown(console);
+    console.flush();
+
+    PrintWriter json = open(new File(report + ".json"));
+    try {
+      comparison.writeJson(json);
+    } finally {
+      json.close();
+    }
+    PrintWriter markdown = open(new File(report + ".md"));
+    try {
+      comparison.writeMarkdown(markdown);
+    } finally {
+      markdown.close();
+    }
+    PrintWriter html = open(new File(report + ".html"));
+    try {
+      comparison.writeHtml(html);
+    } finally {
+      html.close();
+    }
+    out.printf("Wrote %s.json, %s.md and %s.html%n", report, report, report);
+
+    boolean complete = true;
+    for (Map.Entry<String, ProviderResult> result : results.entrySet()) {
+      if (result.getValue() == null) {
+        out.printf("%s failed to run%n", result.getKey());
+        complete = false;
+      }
+    }
+    return complete;
+  }
+
+  /**
+   * Benchmarks an implementation in a new JVM.
+   *
+   * @param name      the name of the implementation
+   * @param classpath the classpath of the implementation
+   * @return the {@link ProviderResult}, or <code>null</code> if the
+   *         implementation failed to run
+   * @throws Exception when the JVM can't be started
+   */
+  private ProviderResult benchmark(String name, String classpath) throws Exception {
+    File resultFile = File.createTempFile("provider-comparison", ".txt");
+    try {
+      List<String> command = new ArrayList<String>();
+      command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+      addAll(command, jvmArgs);
+      for (String property : System.getProperties().stringPropertyNames()) {
+        if ((property.startsWith(BenchmarkProperties.PREFIX) || property.startsWith("javax.cache."))
+            && !property.equals(BenchmarkProperties.PREFIX + "providers")
+            && !property.equals(BenchmarkProperties.PREFIX + "report")) {
+          command.add("-D" + property + "=" + System.getProperty(property));
+        }
+      }
+      command.add("-D" + BenchmarkProperties.PREFIX + "providerName=" + name);
+      command.add("-D" + BenchmarkProperties.PREFIX + "resultFile=" + resultFile.getPath());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path") + File.pathSeparator + classpath);
+      command.add(ProviderBenchmarkRun.class.getName());
+      addAll(command, benchmark);
+      addAll(command, jmhOptions);
+
+      Process process = new ProcessBuilder(command).inheritIO().start();
+      if (process.waitFor() != 0 || resultFile.length() == 0) {
+        return null;
+      }
+      return ProviderResult.load(resultFile);
+    } finally {
+      if (!resultFile.delete()) {
+        resultFile.deleteOnExit();
+      }
+    }
+  }
+
+  private static void addAll(List<String> command, String arguments) {
+    if (arguments.length() > 0) {
+      for (String argument : arguments.split("\\s+")) {
+        command.add(argument);
+      }
+    }
+  }
+
+  private static PrintWriter open(File file) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create " + directory);
+    }
+    return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+  }
+}
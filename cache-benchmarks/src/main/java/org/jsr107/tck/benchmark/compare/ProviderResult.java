@@ -0,0 +1,149 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.compare;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link BenchmarkScore}s of one implementation, which a
+ * {@link ProviderBenchmarkRun} stores in a file for the
+ * {@link ProviderComparison} that forked it.
+ */
+public class ProviderResult {
+
+  private static final String ENCODING = "UTF-8";
+
+  private final String name;
+  private final String description;
+  private final List<BenchmarkScore> scores;
+
+  /**
+   * Constructs a {@link ProviderResult}.
+   *
+   * @param name        the name the implementation was given in the
+   *                    comparison
+   * @param description the description of the implementation, naming its
+   *                    <code>CachingProvider</code> and version
+   * @param scores      the {@link BenchmarkScore}s
+   */
+  public ProviderResult(String name, String description, List<BenchmarkScore> scores) {
+    this.name = name;
+    this.description = description;
+    this.scores = Collections.unmodifiableList(new ArrayList<BenchmarkScore>(scores));
+  }
+
+  /**
+   * Obtains the name the implementation was given in the comparison.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Obtains the description of the implementation.
+   *
+   * @return the <code>CachingProvider</code> class and version
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * Obtains the {@link BenchmarkScore}s.
+   *
+   * @return the {@link BenchmarkScore}s, in the order they were run
+   */
+  public List<BenchmarkScore> getScores() {
+    return scores;
+  }
+
+  /**
+   * Finds the {@link BenchmarkScore} of a configuration.
+   *
+   * @param id the {@link BenchmarkScore#getId()} of the configuration
+   * @return the {@link BenchmarkScore}, or <code>null</code> if the
+   *         configuration wasn't run
+   */
+  public BenchmarkScore find(String id) {
+    for (BenchmarkScore score : scores) {
+      if (score.getId().equals(id)) {
+        return score;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores the result in a file: the name and description on the first two
+   * lines, followed by a line for each {@link BenchmarkScore}.
+   *
+   * @param file the file
+   * @throws IOException when the file can't be written
+   */
+  public void store(File file) throws IOException {
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+    try {
+      writer.println(name);
+      writer.println(description);
+      for (BenchmarkScore score : scores) {
+        writer.println(score.toLine());
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Loads a result stored with {@link #store(File)}.
+   *
+   * @param file the file
+   * @return the {@link ProviderResult}
+   * @throws IOException when the file can't be read or isn't a result
+   */
+  public static ProviderResult load(File file) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+    try {
+      String name = reader.readLine();
+      String description = reader.readLine();
+      if (name == null || description == null) {
+        throw new IOException(file + " is not a benchmark result");
+      }
+
+      List<BenchmarkScore> scores = new ArrayList<BenchmarkScore>();
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (line.length() > 0) {
+          scores.add(BenchmarkScore.parse(line));
+        }
+      }
+      return new ProviderResult(name, description, scores);
+    } finally {
+      reader.close();
+    }
+  }
+}
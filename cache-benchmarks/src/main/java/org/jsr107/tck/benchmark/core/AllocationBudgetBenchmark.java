@@ -0,0 +1,252 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.core;
+
+import org.jsr107.tck.benchmark.support.AllocationMeter;
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.processor.GetEntryProcessor;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+
+/**
+ * Measures the bytes allocated by hot {@link Cache} operations and checks
+ * them against optional budgets, so that an implementation that starts to
+ * allocate more on, for example, its read path is caught.
+ * <p/>
+ * Each {@link AllocationOperation} is measured with an
+ * {@link AllocationMeter} on keys and values boxed in advance, so only the
+ * allocation of the implementation is counted.  Budgets, in bytes per
+ * operation, are read from a properties file named by the
+ * <code>budgets</code> property, where a budget named after the class of the
+ * <code>CachingProvider</code>, such as
+ * <code>org.jsr107.ri.spi.RICachingProvider.get_hit=64</code>, takes
+ * precedence over one for every implementation, such as
+ * <code>get_hit=64</code>.  A <code>budget.&lt;operation&gt;</code> property
+ * overrides both.  The benchmark exits with a non-zero status if any budget
+ * is exceeded.
+ */
+public class AllocationBudgetBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "AllocationBudgetBenchmark";
+
+  /**
+   * The operations that are measured.
+   */
+  public enum AllocationOperation {
+    GET_HIT, GET_MISS, PUT_UPDATE, CONTAINS_KEY, INVOKE
+  }
+
+  private final int entries;
+  private final int warmup;
+  private final int iterations;
+  private final boolean storeByValue;
+  private final String budgetsFile;
+
+  /**
+   * Constructs an {@link AllocationBudgetBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public AllocationBudgetBenchmark() {
+    this.entries = BenchmarkProperties.getInt("entries", 10000);
+    this.warmup = BenchmarkProperties.getInt("warmup", 200000);
+    this.iterations = BenchmarkProperties.getInt("iterations", 200000);
+    this.storeByValue = BenchmarkProperties.getBoolean("storeByValue", true);
+    this.budgetsFile = BenchmarkProperties.getString("budgets", null);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (!new AllocationBudgetBenchmark().run(System.out)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @return <code>true</code> if no budget was exceeded, which is also the case
+   *         when this JVM can't measure allocation and the budgets are skipped
+   * @throws Exception when the benchmark fails
+   */
+  public boolean run(PrintStream out) throws Exception {
+    if (!AllocationMeter.isSupported()) {
+      out.printf("allocation can't be measured on this JVM, skipping the budgets%n");
+      return true;
+    }
+
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+    Properties budgets = loadBudgets();
+    String providerClassName = BenchmarkCaching.getCachingProvider().getClass().getName();
+
+    try {
+      MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+      config.setTypes(Long.class, Long.class);
+      config.setStoreByValue(storeByValue);
+      Cache<Long, Long> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      Long[] keys = new Long[entries];
+      Long[] missingKeys = new Long[entries];
+      for (int i = 0; i < entries; i++) {
+        keys[i] = (long) i;
+        missingKeys[i] = (long) -i - 1;
+        cache.put(keys[i], keys[i]);
+      }
+
+      out.printf("Allocation budget benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("entries=%d warmup=%d iterations=%d storeByValue=%s budgets=%s%n",
+          entries, warmup, iterations, storeByValue, budgetsFile == null ? "none" : budgetsFile);
+      out.printf("%-14s %14s %14s  %s%n", "operation", "bytes/op", "budget", "result");
+
+      AllocationMeter meter = new AllocationMeter(warmup, iterations);
+      boolean withinBudget = true;
+      for (AllocationOperation operation : AllocationOperation.values()) {
+        double allocated = meter.bytesPerOperation(new CacheOperation(cache, operation, keys, missingKeys));
+
+        Long budget = getBudget(budgets, providerClassName, operation);
+        String result;
+        if (budget == null) {
+          result = "-";
+        } else if (allocated > budget) {
+          result = "OVER BUDGET";
+          withinBudget = false;
+        } else {
+          result = "ok";
+        }
+        out.printf("%-14s %14.1f %14s  %s%n", operation.name().toLowerCase(), allocated,
+            budget == null ? "-" : String.valueOf(budget), result);
+      }
+      out.printf("result: %s%n", withinBudget ? "within budget" : "budget exceeded");
+
+      return withinBudget;
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+    }
+  }
+
+  /**
+   * Loads the budgets file, if one was specified.
+   *
+   * @return the budgets, empty when no file was specified
+   * @throws IOException when the file can't be read
+   */
+  private Properties loadBudgets() throws IOException {
+    Properties budgets = new Properties();
+    if (budgetsFile != null) {
+      InputStream input = new FileInputStream(new File(budgetsFile));
+      try {
+        budgets.load(input);
+      } finally {
+        input.close();
+      }
+    }
+    return budgets;
+  }
+
+  /**
+   * Determines the budget of an {@link AllocationOperation}.
+   *
+   * @param budgets           the budgets file
+   * @param providerClassName the class of the implementation's
+   *                          <code>CachingProvider</code>
+   * @param operation         the {@link AllocationOperation}
+   * @return the budget in bytes per operation, or <code>null</code> when there
+   *         is none
+   */
+  private static Long getBudget(Properties budgets, String providerClassName, AllocationOperation operation) {
+    String name = operation.name().toLowerCase();
+    String budget = BenchmarkProperties.getString("budget." + name, null);
+    if (budget == null) {
+      budget = budgets.getProperty(providerClassName + "." + name, budgets.getProperty(name));
+    }
+    return budget == null ? null : Long.valueOf(budget.trim());
+  }
+
+  /**
+   * Performs an {@link AllocationOperation} on successive keys.
+   */
+  private static class CacheOperation implements Runnable {
+
+    private final Cache<Long, Long> cache;
+    private final AllocationOperation operation;
+    private final Long[] keys;
+    private final Long[] missingKeys;
+    private final GetEntryProcessor<Long, Long> getEntryProcessor = new GetEntryProcessor<Long, Long>();
+
+    private int next;
+
+    /**
+     * Constructs a {@link CacheOperation}.
+     *
+     * @param cache       the {@link Cache}
+     * @param operation   the {@link AllocationOperation} to perform
+     * @param keys        the keys of the entries in the {@link Cache}
+     * @param missingKeys keys that aren't in the {@link Cache}
+     */
+    CacheOperation(Cache<Long, Long> cache, AllocationOperation operation, Long[] keys, Long[] missingKeys) {
+      this.cache = cache;
+      this.operation = operation;
+      this.keys = keys;
+      this.missingKeys = missingKeys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      int index = next;
+      next = index + 1 == keys.length ? 0 : index + 1;
+
+      switch (operation) {
+        case GET_HIT:
+          cache.get(keys[index]);
+          break;
+        case GET_MISS:
+          cache.get(missingKeys[index]);
+          break;
+        case PUT_UPDATE:
+          cache.put(keys[index], keys[index]);
+          break;
+        case CONTAINS_KEY:
+          cache.containsKey(keys[index]);
+          break;
+        default:
+          cache.invoke(keys[index], getEntryProcessor);
+          break;
+      }
+    }
+  }
+}
@@ -0,0 +1,444 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.core;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the individual operations of a {@link Cache} that the
+ * <code>GetTest</code>, <code>PutTest</code>, <code>RemoveTest</code> and
+ * <code>ReplaceTest</code> of the TCK exercise, on keys that are present
+ * (hits) and absent (misses), for each {@link KeyType} and a range of
+ * {@link Cache} sizes.
+ * <p/>
+ * Operations that change the entries leave the size of the {@link Cache}
+ * unchanged: {@link #put(Cursor)}, {@link #putAll(Cursor)} and
+ * {@link #replaceHit(Cursor)} update existing entries, while the entry
+ * {@link #removeHit(RemovableKey)} removes is put back before each
+ * invocation, outside of the measured time.  That per invocation setup adds
+ * JMH's own overhead of timing each call to the remove, and the allocation
+ * reported by the <code>gc</code> profiler, which covers the whole iteration,
+ * includes that of the put.
+ * <p/>
+ * Run with the JMH <code>gc</code> profiler to see the allocation rate;
+ * {@link #main(String[])} does so and reports the throughput, average time
+ * and allocation of each operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CoreOperationsBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "CoreOperationsBenchmark";
+
+  /**
+   * The number of distinct keys, or batches of keys, each thread cycles
+   * through, so that looking them up doesn't dominate small caches.
+   */
+  private static final int POOL_SIZE = 1 << 16;
+
+  /**
+   * The number of batches for {@link Cache#getAll} and {@link Cache#putAll}.
+   */
+  private static final int BATCHES = 256;
+
+  /**
+   * The value of every entry.
+   */
+  private static final String VALUE = "a value of about the size of a short string";
+
+  /**
+   * The type of the keys.
+   */
+  @Param({"LONG", "STRING", "IDENTIFIER"})
+  public KeyType keyType;
+
+  /**
+   * The number of entries in the {@link Cache}.
+   */
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int size;
+
+  /**
+   * The number of keys passed to {@link Cache#getAll} and {@link Cache#putAll}.
+   */
+  @Param({"100"})
+  public int batchSize;
+
+  private CacheManager cacheManager;
+  private Cache<Object, String> cache;
+
+  private Object[] hitKeys;
+  private Object[] missKeys;
+  private List<Set<Object>> hitBatches;
+  private List<Set<Object>> missBatches;
+  private List<Map<Object, String>> entryBatches;
+
+  /**
+   * Creates and loads the {@link Cache} and chooses the keys to use.
+   */
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void createCache() {
+    cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    MutableConfiguration<Object, String> config = new MutableConfiguration<Object, String>();
+    config.setTypes((Class<Object>) keyType.getKeyClass(), String.class);
+    cache = cacheManager.createCache(CACHE_NAME, config);
+
+    Map<Object, String> batch = new HashMap<Object, String>();
+    for (long id = 0; id < size; id++) {
+      batch.put(keyType.createKey(id), VALUE);
+      if (batch.size() == 10000 || id == size - 1) {
+        cache.putAll(batch);
+        batch.clear();
+      }
+    }
+
+    //keys of entries that are present have ids in [0, size), absent ones are negative
+    Random random = new Random(size);
+    hitKeys = new Object[Math.min(POOL_SIZE, size)];
+    missKeys = new Object[hitKeys.length];
+    for (int i = 0; i < hitKeys.length; i++) {
+      hitKeys[i] = keyType.createKey(hitKeys.length == size ? i : (long) random.nextInt(size));
+      missKeys[i] = keyType.createKey(-1L - i);
+    }
+
+    hitBatches = new ArrayList<Set<Object>>(BATCHES);
+    missBatches = new ArrayList<Set<Object>>(BATCHES);
+    entryBatches = new ArrayList<Map<Object, String>>(BATCHES);
+    for (int i = 0; i < BATCHES; i++) {
+      Set<Object> hitBatch = new HashSet<Object>();
+      Set<Object> missBatch = new HashSet<Object>();
+      Map<Object, String> entryBatch = new HashMap<Object, String>();
+      for (int j = 0; j < Math.min(batchSize, hitKeys.length); j++) {
+        Object key = hitKeys[random.nextInt(hitKeys.length)];
+        hitBatch.add(key);
+        entryBatch.put(key, VALUE);
+        missBatch.add(missKeys[random.nextInt(missKeys.length)]);
+      }
+      hitBatches.add(hitBatch);
+      missBatches.add(missBatch);
+      entryBatches.add(entryBatch);
+    }
+  }
+
+  /**
+   * Destroys the {@link Cache}.
+   */
+  @TearDown(Level.Trial)
+  public void destroyCache() {
+    cacheManager.destroyCache(CACHE_NAME);
+  }
+
+  /**
+   * The position of a thread in the pools of keys, each thread starting at a
+   * different position.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private Cache<Object, String> cache;
+    private Object[] hitKeys;
+    private Object[] missKeys;
+    private List<Set<Object>> hitBatches;
+    private List<Set<Object>> missBatches;
+    private List<Map<Object, String>> entryBatches;
+    private int next;
+
+    /**
+     * Initializes the {@link Cursor}.
+     *
+     * @param benchmark the {@link CoreOperationsBenchmark}
+     */
+    @Setup(Level.Trial)
+    public void setUp(CoreOperationsBenchmark benchmark) {
+      cache = benchmark.cache;
+      hitKeys = benchmark.hitKeys;
+      missKeys = benchmark.missKeys;
+      hitBatches = benchmark.hitBatches;
+      missBatches = benchmark.missBatches;
+      entryBatches = benchmark.entryBatches;
+      next = new Random().nextInt(hitKeys.length);
+    }
+
+    private int next() {
+      next = next + 1 == hitKeys.length ? 0 : next + 1;
+      return next;
+    }
+
+    Cache<Object, String> cache() {
+      return cache;
+    }
+
+    Object hitKey() {
+      return hitKeys[next()];
+    }
+
+    Object missKey() {
+      return missKeys[next()];
+    }
+
+    Set<Object> hitBatch() {
+      return hitBatches.get(next() % BATCHES);
+    }
+
+    Set<Object> missBatch() {
+      return missBatches.get(next() % BATCHES);
+    }
+
+    Map<Object, String> entryBatch() {
+      return entryBatches.get(next() % BATCHES);
+    }
+  }
+
+  /**
+   * The key a thread removes next, chosen from the {@link Cursor} and put
+   * back before each invocation so that it is always present.
+   */
+  @State(Scope.Thread)
+  public static class RemovableKey extends Cursor {
+
+    private Object key;
+
+    /**
+     * Chooses the next key and puts its entry back.
+     */
+    @Setup(Level.Invocation)
+    public void restore() {
+      key = hitKey();
+      cache().put(key, VALUE);
+    }
+  }
+
+  /**
+   * Gets the value of a present entry.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return the value
+   */
+  @Benchmark
+  public String getHit(Cursor cursor) {
+    return cache.get(cursor.hitKey());
+  }
+
+  /**
+   * Gets the value of an absent entry.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return <code>null</code>
+   */
+  @Benchmark
+  public String getMiss(Cursor cursor) {
+    return cache.get(cursor.missKey());
+  }
+
+  /**
+   * Gets the values of a batch of present entries.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return the values
+   */
+  @Benchmark
+  public Map<Object, String> getAllHit(Cursor cursor) {
+    return cache.getAll(cursor.hitBatch());
+  }
+
+  /**
+   * Gets the values of a batch of absent entries.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return an empty map
+   */
+  @Benchmark
+  public Map<Object, String> getAllMiss(Cursor cursor) {
+    return cache.getAll(cursor.missBatch());
+  }
+
+  /**
+   * Determines whether a present entry exists.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return <code>true</code>
+   */
+  @Benchmark
+  public boolean containsKeyHit(Cursor cursor) {
+    return cache.containsKey(cursor.hitKey());
+  }
+
+  /**
+   * Determines whether an absent entry exists.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return <code>false</code>
+   */
+  @Benchmark
+  public boolean containsKeyMiss(Cursor cursor) {
+    return cache.containsKey(cursor.missKey());
+  }
+
+  /**
+   * Updates a present entry.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   */
+  @Benchmark
+  public void put(Cursor cursor) {
+    cache.put(cursor.hitKey(), VALUE);
+  }
+
+  /**
+   * Updates a batch of present entries.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   */
+  @Benchmark
+  public void putAll(Cursor cursor) {
+    cache.putAll(cursor.entryBatch());
+  }
+
+  /**
+   * Removes a present entry.
+   *
+   * @param removable the key to remove, put back before each invocation
+   * @return <code>true</code>
+   */
+  @Benchmark
+  public boolean removeHit(RemovableKey removable) {
+    return cache.remove(removable.key);
+  }
+
+  /**
+   * Removes an absent entry.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return <code>false</code>
+   */
+  @Benchmark
+  public boolean removeMiss(Cursor cursor) {
+    return cache.remove(cursor.missKey());
+  }
+
+  /**
+   * Replaces the value of a present entry.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return <code>true</code>
+   */
+  @Benchmark
+  public boolean replaceHit(Cursor cursor) {
+    return cache.replace(cursor.hitKey(), VALUE);
+  }
+
+  /**
+   * Attempts to replace the value of an absent entry.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return <code>false</code>
+   */
+  @Benchmark
+  public boolean replaceMiss(Cursor cursor) {
+    return cache.replace(cursor.missKey(), VALUE);
+  }
+
+  /**
+   * Runs the benchmarks with the JMH <code>gc</code> profiler, reporting the
+   * throughput, average time and allocation of each operation.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    ChainedOptionsBuilder options = new OptionsBuilder()
+        .include(CoreOperationsBenchmark.class.getName() + "." + BenchmarkProperties.getString("operations", ".*"))
+        .addProfiler(GCProfiler.class);
+    Collection<RunResult> results = new Runner(JmhSupport.withParameters(options, "keyType", "size", "batchSize").build()).run();
+
+    //combine the throughput and average time of each configuration into one row
+    Map<String, double[]> rows = new LinkedHashMap<String, double[]>();
+    for (RunResult result : results) {
+      BenchmarkParams params = result.getParams();
+      String row = String.format("%-16s %-10s %9s", JmhSupport.getMethodName(result),
+          params.getParam("keyType").toLowerCase(), params.getParam("size"));
+
+      double[] scores = rows.get(row);
+      if (scores == null) {
+        scores = new double[] {Double.NaN, Double.NaN, Double.NaN};
+        rows.put(row, scores);
+      }
+      if (params.getMode() == Mode.Throughput) {
+        scores[0] = result.getPrimaryResult().getScore();
+        scores[2] = JmhSupport.getAllocatedPerOperation(result);
+      } else {
+        scores[1] = result.getPrimaryResult().getScore();
+      }
+    }
+
+    out.printf("%-16s %-10s %9s %14s %12s %14s%n", "operation", "keyType", "size", "ops/s", "avg ns", "alloc B/op");
+    List<String> sorted = new ArrayList<String>(rows.keySet());
+    Collections.sort(sorted);
+    for (String row : sorted) {
+      double[] scores = rows.get(row);
+      out.printf("%s %14.0f %12.1f %14.1f%n", row, scores[0] * 1e6, scores[1] * 1e3, scores[2]);
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.core;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.HeapSupport;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures scanning a large {@link Cache} with {@link Cache#iterator()},
+ * optionally removing every entry with {@link Iterator#remove()} and
+ * optionally while other threads mutate the {@link Cache}.
+ * <p/>
+ * Each scan reports the entries visited per second and the bytes the
+ * scanning thread allocated per entry, and checks that the iteration was
+ * weakly consistent:
+ * <ul>
+ * <li>every entry that no other thread touches is visited exactly once,</li>
+ * <li>no entry is visited twice,</li>
+ * <li>no key is visited that was never put and</li>
+ * <li>no entry is visited without a value.</li>
+ * </ul>
+ * Mutators remove and put back a proportion of the loaded entries, and put
+ * and remove entries that aren't loaded, which may or may not be visited.
+ * The benchmark exits with a non-zero status if any scan was not weakly
+ * consistent.
+ */
+public class IteratorScanBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "IteratorScanBenchmark";
+
+  private final int entries;
+  private final int valueSize;
+  private final int warmupScans;
+  private final int scans;
+  private final boolean remove;
+  private final int mutators;
+  private final int churnPercent;
+
+  /**
+   * The number of keys beyond the loaded entries that mutators put and remove.
+   */
+  private final int addedKeys;
+
+  private volatile boolean mutating;
+  private final AtomicLong mutations = new AtomicLong();
+
+  /**
+   * Constructs an {@link IteratorScanBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public IteratorScanBenchmark() {
+    this.entries = BenchmarkProperties.getInt("entries", 1000000);
+    this.valueSize = BenchmarkProperties.getInt("valueSize", 64);
+    this.warmupScans = BenchmarkProperties.getInt("warmupScans", 2);
+    this.scans = BenchmarkProperties.getInt("scans", 5);
+    this.remove = BenchmarkProperties.getBoolean("remove", false);
+    this.mutators = BenchmarkProperties.getInt("mutators", 0);
+    this.churnPercent = mutators == 0 ? 0 : BenchmarkProperties.getInt("churnPercent", 10);
+    if (mutators > 0 && (churnPercent < 1 || churnPercent > 100)) {
+      throw new IllegalArgumentException("With mutators " + BenchmarkProperties.PREFIX
+          + "churnPercent must be from 1 to 100, not " + churnPercent);
+    }
+    this.addedKeys = (int) ((long) entries * churnPercent / 100);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (!new IteratorScanBenchmark().run(System.out)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @return <code>true</code> if every scan was weakly consistent
+   * @throws Exception when the benchmark fails
+   */
+  public boolean run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    List<Thread> mutatorThreads = new ArrayList<Thread>();
+    try {
+      MutableConfiguration<Long, byte[]> config = new MutableConfiguration<Long, byte[]>();
+      config.setTypes(Long.class, byte[].class);
+      Cache<Long, byte[]> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      out.printf("Iterator scan benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("entries=%d valueSize=%d remove=%s mutators=%d churnPercent=%d%n",
+          entries, valueSize, remove, mutators, churnPercent);
+      if (HeapSupport.allocatedBytes() < 0) {
+        out.printf("allocation can't be measured on this JVM%n");
+      }
+
+      long loadStart = System.nanoTime();
+      load(cache);
+      out.printf("load: %d entries in %d ms%n", entries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart));
+
+      mutating = true;
+      for (int i = 0; i < mutators; i++) {
+        Thread thread = new Thread(new Mutator(cache, i), "IteratorScanBenchmark-mutator-" + i);
+        thread.setDaemon(true);
+        thread.start();
+        mutatorThreads.add(thread);
+      }
+
+      boolean consistent = true;
+      double totalRate = 0;
+      double totalAllocated = 0;
+      for (int scan = 0; scan < warmupScans + scans; scan++) {
+        if (remove && scan > 0) {
+          load(cache);
+        }
+
+        Scan result = new Scan();
+        result.run(cache);
+
+        if (scan >= warmupScans) {
+          totalRate += result.getRate();
+          totalAllocated += result.getAllocatedPerEntry();
+          consistent &= result.isWeaklyConsistent();
+          out.printf("scan %d: %s%n", scan - warmupScans + 1, result);
+        }
+      }
+
+      mutating = false;
+      for (Thread thread : mutatorThreads) {
+        thread.join();
+      }
+
+      out.printf("mean: %.0f entries/s, %.1f bytes allocated per entry, %d concurrent mutations%n",
+          totalRate / scans, totalAllocated / scans, mutations.get());
+      if (remove && mutators == 0) {
+        long remaining = 0;
+        for (Iterator<Cache.Entry<Long, byte[]>> iterator = cache.iterator(); iterator.hasNext(); iterator.next()) {
+          remaining++;
+        }
+        consistent &= remaining == 0;
+        out.printf("remaining after removing every entry: %d%n", remaining);
+      }
+      out.printf("result: %s%n", consistent ? "weakly consistent" : "NOT weakly consistent");
+
+      return consistent;
+    } finally {
+      mutating = false;
+      cacheManager.destroyCache(CACHE_NAME);
+    }
+  }
+
+  /**
+   * Puts every entry.
+   *
+   * @param cache the {@link Cache}
+   */
+  private void load(Cache<Long, byte[]> cache) {
+    Map<Long, byte[]> batch = new HashMap<Long, byte[]>();
+    for (long key = 0; key < entries; key++) {
+      batch.put(key, new byte[valueSize]);
+      if (batch.size() == 10000 || key == entries - 1) {
+        cache.putAll(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Determines whether a loaded entry may be removed and put back by the
+   * mutators.
+   *
+   * @param key the key of the entry
+   * @return <code>true</code> if the entry is mutated
+   */
+  private boolean isChurned(long key) {
+    return key % 100 < churnPercent;
+  }
+
+  /**
+   * A single scan of the {@link Cache}.
+   */
+  private class Scan {
+
+    private final BitSet visitedKeys = new BitSet(entries + addedKeys);
+    private long visited;
+    private long duplicates;
+    private long phantoms;
+    private long withoutValue;
+    private long missing;
+    private long nanos;
+    private long allocated;
+
+    /**
+     * Scans the {@link Cache}.
+     *
+     * @param cache the {@link Cache}
+     */
+    void run(Cache<Long, byte[]> cache) {
+      long allocatedStart = HeapSupport.allocatedBytes();
+      long start = System.nanoTime();
+
+      for (Iterator<Cache.Entry<Long, byte[]>> iterator = cache.iterator(); iterator.hasNext(); ) {
+        Cache.Entry<Long, byte[]> entry = iterator.next();
+        long key = entry.getKey();
+
+        if (key < 0 || key >= entries + addedKeys) {
+          phantoms++;
+        } else if (visitedKeys.get((int) key)) {
+          duplicates++;
+        } else {
+          visitedKeys.set((int) key);
+        }
+        if (entry.getValue() == null) {
+          withoutValue++;
+        }
+        if (remove) {
+          iterator.remove();
+        }
+        visited++;
+      }
+
+      nanos = System.nanoTime() - start;
+      allocated = allocatedStart < 0 ? -1 : HeapSupport.allocatedBytes() - allocatedStart;
+
+      for (int key = 0; key < entries; key++) {
+        if (!isChurned(key) && !visitedKeys.get(key)) {
+          missing++;
+        }
+      }
+    }
+
+    double getRate() {
+      return visited / (nanos / 1e9);
+    }
+
+    double getAllocatedPerEntry() {
+      return allocated < 0 ? Double.NaN : (double) allocated / Math.max(1, visited);
+    }
+
+    boolean isWeaklyConsistent() {
+      return missing == 0 && duplicates == 0 && phantoms == 0 && withoutValue == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return String.format("visited=%d in %d ms (%.0f entries/s) allocated=%.1f B/entry "
+              + "missing=%d duplicates=%d phantoms=%d withoutValue=%d",
+          visited, TimeUnit.NANOSECONDS.toMillis(nanos), getRate(), getAllocatedPerEntry(),
+          missing, duplicates, phantoms, withoutValue);
+    }
+  }
+
+  /**
+   * Removes and puts back churned entries, and puts and removes entries that
+   * aren't loaded, until the benchmark finishes.
+   */
+  private class Mutator implements Runnable {
+
+    private final Cache<Long, byte[]> cache;
+    private final Random random;
+
+    /**
+     * Constructs a {@link Mutator}.
+     *
+     * @param cache the {@link Cache} to mutate
+     * @param seed  the seed for choosing keys and operations
+     */
+    Mutator(Cache<Long, byte[]> cache, long seed) {
+      this.cache = cache;
+      this.random = new Random(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      byte[] value = new byte[valueSize];
+      while (mutating) {
+        long key;
+        if (random.nextBoolean()) {
+          //a churned entry: the hundreds of a loaded key plus a churned remainder
+          key = random.nextInt(Math.max(1, entries / 100)) * 100L + random.nextInt(churnPercent);
+          if (key >= entries) {
+            continue;
+          }
+        } else {
+          key = entries + random.nextInt(Math.max(1, addedKeys));
+        }
+
+        if (random.nextBoolean()) {
+          cache.put(key, value);
+        } else {
+          cache.remove(key);
+        }
+        mutations.incrementAndGet();
+      }
+    }
+  }
+}
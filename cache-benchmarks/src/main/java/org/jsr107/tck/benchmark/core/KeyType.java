@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.core;
+
+import domain.Identifier;
+
+/**
+ * The types of key used by the benchmarks, each able to create a distinct key
+ * for any <code>long</code>.
+ */
+public enum KeyType {
+
+  /**
+   * {@link Long} keys.
+   */
+  LONG(Long.class) {
+    @Override
+    public Object createKey(long id) {
+      return id;
+    }
+  },
+
+  /**
+   * {@link String} keys.
+   */
+  STRING(String.class) {
+    @Override
+    public Object createKey(long id) {
+      return "key-" + id;
+    }
+  },
+
+  /**
+   * {@link Identifier} keys from the test domain.
+   */
+  IDENTIFIER(Identifier.class) {
+    @Override
+    public Object createKey(long id) {
+      return new Identifier("key-" + id);
+    }
+  };
+
+  private final Class<?> keyClass;
+
+  KeyType(Class<?> keyClass) {
+    this.keyClass = keyClass;
+  }
+
+  /**
+   * Obtains the class of the keys.
+   *
+   * @return the class of the keys
+   */
+  public Class<?> getKeyClass() {
+    return keyClass;
+  }
+
+  /**
+   * Creates a key.  Keys created for different identities are not equal.
+   *
+   * @param id the identity of the key
+   * @return a new key
+   */
+  public abstract Object createKey(long id);
+}
@@ -0,0 +1,295 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.core;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.jsr107.tck.benchmark.workload.OperationMix;
+import org.jsr107.tck.processor.IncrementEntryProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of mixes of {@link Cache#get(Object)},
+ * {@link Cache#put(Object, Object)} and {@link Cache#invoke} scales with the
+ * number of threads.
+ * <p/>
+ * Threads operate on keys chosen uniformly from a loaded {@link Cache}, so
+ * they rarely touch the same entry and an implementation without internal
+ * contention should scale with the number of cores.  A global lock, or a
+ * synchronized counter such as one maintaining statistics, shows up as a
+ * curve that flattens early.
+ * <p/>
+ * Run a single configuration with JMH, for example
+ * <code>java -jar benchmarks.jar ThreadScalingBenchmark -t 4</code>, or run
+ * {@link #main(String[])} to print the scaling curve of each configuration,
+ * with the speedup and efficiency per thread relative to the fewest threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadScalingBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "ThreadScalingBenchmark";
+
+  /**
+   * The operations the threads perform.
+   */
+  public enum ScalingOperation {
+    GET, PUT, INVOKE
+  }
+
+  /**
+   * The mixes of {@link ScalingOperation}s measured.
+   */
+  public enum Mix {
+    READ_ONLY("get=1"),
+    READ_MOSTLY("get=0.9,put=0.1"),
+    WRITE_HEAVY("get=0.5,put=0.5"),
+    INVOKE("get=0.5,invoke=0.5");
+
+    private final OperationMix<ScalingOperation> operationMix;
+
+    Mix(String mix) {
+      this.operationMix = OperationMix.parse(ScalingOperation.class, mix);
+    }
+  }
+
+  /**
+   * The {@link IncrementEntryProcessor} used for every invoke.
+   */
+  private static final IncrementEntryProcessor<Long> INCREMENT = new IncrementEntryProcessor<Long>();
+
+  /**
+   * The mix of operations.
+   */
+  @Param({"READ_ONLY", "READ_MOSTLY", "WRITE_HEAVY", "INVOKE"})
+  public Mix mix;
+
+  /**
+   * The number of entries loaded, from which keys are chosen.
+   */
+  @Param({"100000"})
+  public int size;
+
+  /**
+   * Whether the {@link Cache} maintains statistics.
+   */
+  @Param({"false", "true"})
+  public boolean statisticsEnabled;
+
+  private CacheManager cacheManager;
+  private Cache<Long, Long> cache;
+
+  /**
+   * Creates and loads the {@link Cache}.
+   */
+  @Setup(Level.Trial)
+  public void createCache() {
+    cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+    config.setTypes(Long.class, Long.class);
+    config.setStatisticsEnabled(statisticsEnabled);
+    cache = cacheManager.createCache(CACHE_NAME, config);
+
+    Map<Long, Long> batch = new HashMap<Long, Long>();
+    for (long key = 0; key < size; key++) {
+      batch.put(key, key);
+      if (batch.size() == 10000 || key == size - 1) {
+        cache.putAll(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Destroys the {@link Cache}.
+   */
+  @TearDown(Level.Trial)
+  public void destroyCache() {
+    cacheManager.destroyCache(CACHE_NAME);
+  }
+
+  /**
+   * The {@link Random} of each thread, seeded differently for each.
+   */
+  @State(Scope.Thread)
+  public static class ThreadRandom {
+    private Random random;
+
+    /**
+     * Seeds the {@link Random}.
+     *
+     * @param threadParams the {@link ThreadParams} of the thread
+     */
+    @Setup(Level.Trial)
+    public void seed(ThreadParams threadParams) {
+      random = new Random(threadParams.getThreadIndex());
+    }
+  }
+
+  /**
+   * Performs an operation chosen from the {@link Mix} on a random key.
+   *
+   * @param threadRandom the {@link ThreadRandom} of the thread
+   * @return the result of the operation
+   */
+  @Benchmark
+  public Object operation(ThreadRandom threadRandom) {
+    Random random = threadRandom.random;
+    long key = random.nextInt(size);
+
+    switch (mix.operationMix.next(random)) {
+      case GET:
+        return cache.get(key);
+      case PUT:
+        cache.put(key, key);
+        return null;
+      default:
+        return cache.invoke(key, INCREMENT);
+    }
+  }
+
+  /**
+   * Runs the benchmark with increasing numbers of threads, by default the
+   * powers of two up to twice the available processors, and prints the
+   * scaling curve of each configuration.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    int processors = Runtime.getRuntime().availableProcessors();
+    List<Integer> threadCounts = JmhSupport.getThreadCounts("threads", defaultThreadCounts(processors));
+
+    List<RunResult> results = new ArrayList<RunResult>();
+    for (int threads : threadCounts) {
+      ChainedOptionsBuilder options = new OptionsBuilder()
+          .include(ThreadScalingBenchmark.class.getName())
+          .threads(threads);
+      results.addAll(new Runner(JmhSupport.withParameters(options, "mix", "size", "statisticsEnabled").build()).run());
+    }
+
+    Set<Integer> sizes = new TreeSet<Integer>();
+    for (RunResult result : results) {
+      sizes.add(Integer.parseInt(result.getParams().getParam("size")));
+    }
+
+    out.printf("Thread scaling of %s on %d processors%n", BenchmarkCaching.describe(), processors);
+    out.printf("%-12s %10s %-10s %8s %12s %12s %10s %10s%n",
+        "mix", "size", "statistics", "threads", "ops/us", "ops/us/thd", "speedup", "efficiency");
+    for (Mix mix : Mix.values()) {
+      for (int size : sizes) {
+        for (String statistics : new String[]{"false", "true"}) {
+          double perThreadBaseline = Double.NaN;
+          for (int threads : threadCounts) {
+            RunResult result = find(results, mix, size, statistics, threads);
+            if (result == null) {
+              continue;
+            }
+            double score = result.getPrimaryResult().getScore();
+            if (Double.isNaN(perThreadBaseline)) {
+              perThreadBaseline = score / threads;
+            }
+            double speedup = score / perThreadBaseline;
+            out.printf("%-12s %10d %-10s %8d %12.3f %12.3f %10.2f %10.2f%n", mix.name().toLowerCase(), size, statistics,
+                threads, score, score / threads, speedup, speedup / threads);
+          }
+        }
+      }
+    }
+    out.printf("speedup and efficiency are relative to the fewest threads; efficiency is expected to fall once the "
+        + "threads outnumber the %d processors%n", processors);
+  }
+
+  /**
+   * Determines the default thread counts: the powers of two up to twice the
+   * number of processors, and twice the number of processors.
+   *
+   * @param processors the number of processors
+   * @return the comma separated thread counts
+   */
+  private static String defaultThreadCounts(int processors) {
+    StringBuilder threadCounts = new StringBuilder("1");
+    for (int threads = 2; threads < 2 * processors; threads *= 2) {
+      threadCounts.append(',').append(threads);
+    }
+    threadCounts.append(',').append(2 * processors);
+    return threadCounts.toString();
+  }
+
+  /**
+   * Finds the {@link RunResult} of a configuration.
+   *
+   * @param results    the {@link RunResult}s
+   * @param mix        the {@link Mix}
+   * @param size       the number of entries
+   * @param statistics whether statistics were enabled
+   * @param threads    the number of threads
+   * @return the {@link RunResult}, or <code>null</code> if the configuration
+   *         wasn't run
+   */
+  private static RunResult find(List<RunResult> results, Mix mix, int size, String statistics, int threads) {
+    for (RunResult result : results) {
+      if (result.getParams().getThreads() == threads
+          && mix.name().equals(result.getParams().getParam("mix"))
+          && String.valueOf(size).equals(result.getParams().getParam("size"))
+          && statistics.equals(result.getParams().getParam("statisticsEnabled"))) {
+        return result;
+      }
+    }
+    return null;
+  }
+}
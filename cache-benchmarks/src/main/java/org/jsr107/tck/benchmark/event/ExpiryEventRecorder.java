@@ -0,0 +1,243 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.event;
+
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+
+import javax.cache.configuration.Factory;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListenerException;
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link CacheEntryExpiredListener} that records when the expiry event for
+ * each of the keys <code>0</code> to <code>keys - 1</code> arrives.
+ * <p/>
+ * Events for keys outside of that range are counted but otherwise ignored.
+ */
+public class ExpiryEventRecorder implements CacheEntryExpiredListener<Long, Long> {
+
+  /**
+   * The {@link ExpiryEventRecorder}s that may be reached by an in-process
+   * {@link LocalListener}, by identity.
+   */
+  private static final ConcurrentHashMap<String, ExpiryEventRecorder> RECORDERS =
+      new ConcurrentHashMap<String, ExpiryEventRecorder>();
+
+  /**
+   * The identity used to reach this {@link ExpiryEventRecorder} in-process.
+   */
+  private final String identity = UUID.randomUUID().toString();
+
+  /**
+   * The time, as per {@link System#nanoTime()}, at which the first event for
+   * each key arrived.  Zero when no event has arrived.
+   */
+  private final AtomicLongArray arrivals;
+
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong duplicates = new AtomicLong();
+  private final AtomicLong unknown = new AtomicLong();
+
+  /**
+   * Constructs an {@link ExpiryEventRecorder}.
+   *
+   * @param keys the number of keys to record
+   */
+  public ExpiryEventRecorder(int keys) {
+    this.arrivals = new AtomicLongArray(keys);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onExpired(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> events)
+      throws CacheEntryListenerException {
+    long now = System.nanoTime();
+    for (CacheEntryEvent<? extends Long, ? extends Long> event : events) {
+      Long key = event.getKey();
+      if (key == null || key < 0 || key >= arrivals.length()) {
+        unknown.incrementAndGet();
+      } else if (arrivals.compareAndSet(key.intValue(), 0, now)) {
+        received.incrementAndGet();
+      } else {
+        duplicates.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Obtains the number of keys for which an event has arrived.
+   *
+   * @return the number of keys
+   */
+  public long getReceived() {
+    return received.get();
+  }
+
+  /**
+   * Obtains the number of events that arrived for keys that already had one.
+   *
+   * @return the number of duplicate events
+   */
+  public long getDuplicates() {
+    return duplicates.get();
+  }
+
+  /**
+   * Obtains the number of events that arrived for keys not being recorded.
+   *
+   * @return the number of events
+   */
+  public long getUnknown() {
+    return unknown.get();
+  }
+
+  /**
+   * Determines if the event for a key has arrived.
+   *
+   * @param key the key
+   * @return <code>true</code> if the event has arrived
+   */
+  public boolean hasArrived(long key) {
+    return arrivals.get((int) key) != 0;
+  }
+
+  /**
+   * Records, for every key whose event has arrived, how long after its
+   * expected expiry the event arrived.
+   *
+   * @param expectedExpiry the expected expiry of each key, as per {@link System#nanoTime()}
+   * @return a {@link LatencyHistogram} of the lag in nanoseconds
+   */
+  public LatencyHistogram lag(long[] expectedExpiry) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int key = 0; key < arrivals.length(); key++) {
+      long arrival = arrivals.get(key);
+      if (arrival != 0) {
+        histogram.record(arrival - expectedExpiry[key]);
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Obtains the earliest and latest arrival times of the events.
+   *
+   * @return the earliest and latest arrival, as per {@link System#nanoTime()},
+   *         or <code>null</code> when no events have arrived
+   */
+  public long[] arrivalSpan() {
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (int key = 0; key < arrivals.length(); key++) {
+      long arrival = arrivals.get(key);
+      if (arrival != 0) {
+        first = Math.min(first, arrival);
+        last = Math.max(last, arrival);
+      }
+    }
+    return first == Long.MAX_VALUE ? null : new long[]{first, last};
+  }
+
+  /**
+   * Obtains a {@link Factory} for a listener that delegates, in-process, to
+   * this {@link ExpiryEventRecorder}.  The {@link Factory} may be serialized
+   * but the listeners it creates must be used in the JVM that created it.
+   *
+   * @return a {@link Factory} of {@link CacheEntryExpiredListener}s
+   */
+  public Factory<LocalListener> localListenerFactory() {
+    RECORDERS.put(identity, this);
+    return new LocalListenerFactory(identity);
+  }
+
+  /**
+   * Stops in-process listeners from delegating to this
+   * {@link ExpiryEventRecorder}.
+   */
+  public void close() {
+    RECORDERS.remove(identity);
+  }
+
+  /**
+   * A {@link Factory} of {@link LocalListener}s.
+   */
+  private static class LocalListenerFactory implements Factory<LocalListener> {
+
+    /**
+     * The serialVersionUID required for {@link java.io.Serializable}.
+     */
+    public static final long serialVersionUID = 202610181300L;
+
+    private final String identity;
+
+    LocalListenerFactory(String identity) {
+      this.identity = identity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalListener create() {
+      return new LocalListener(identity);
+    }
+  }
+
+  /**
+   * A {@link CacheEntryExpiredListener} that delegates to an
+   * {@link ExpiryEventRecorder} in the same JVM.
+   */
+  public static class LocalListener implements CacheEntryExpiredListener<Long, Long>, Serializable {
+
+    /**
+     * The serialVersionUID required for {@link java.io.Serializable}.
+     */
+    public static final long serialVersionUID = 202610181301L;
+
+    private final String identity;
+
+    /**
+     * Constructs a {@link LocalListener}.
+     *
+     * @param identity the identity of the {@link ExpiryEventRecorder}
+     */
+    public LocalListener(String identity) {
+      this.identity = identity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onExpired(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> events)
+        throws CacheEntryListenerException {
+      ExpiryEventRecorder recorder = RECORDERS.get(identity);
+      if (recorder == null) {
+        throw new CacheEntryListenerException("The ExpiryEventRecorder " + identity + " is not in this JVM");
+      }
+      recorder.onExpired(events);
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.event;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+import org.jsr107.tck.event.CacheEntryListenerClient;
+import org.jsr107.tck.event.CacheEntryListenerServer;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryEventFilter;
+import javax.cache.event.CacheEntryListener;
+import javax.cache.event.EventType;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires a large number of entries at (nearly) the same time with a
+ * {@link javax.cache.event.CacheEntryExpiredListener} registered and reports:
+ * <ol>
+ * <li>the rate at which expiry events are delivered,</li>
+ * <li>the lag between an entry expiring and its event arriving,</li>
+ * <li>the latency of foreground {@link Cache#put(Object, Object)} and
+ * {@link Cache#get(Object)} requests, to another {@link Cache} of the same
+ * {@link CacheManager}, before and during the storm,</li>
+ * <li>whether an event arrived for every expired entry.</li>
+ * </ol>
+ * All entries are created with the same {@link CreatedExpiryPolicy}, so they
+ * expire over a period as long as it took to load them.  Implementations may
+ * expire entries lazily, in which case few events will arrive until the
+ * entries are accessed.  Once events stop arriving the benchmark reads every
+ * entry whose event is missing and waits again, reporting both phases.
+ * <p/>
+ * The benchmark exits with a non-zero status if any expiry event never arrives.
+ */
+public class ExpiryEventStormBenchmark {
+
+  /**
+   * The name of the {@link Cache} whose entries expire.
+   */
+  public static final String CACHE_NAME = "ExpiryEventStormBenchmark";
+
+  /**
+   * The name of the {@link Cache} used by the foreground requests.
+   */
+  public static final String FOREGROUND_CACHE_NAME = "ExpiryEventStormBenchmark-foreground";
+
+  private final int entries;
+  private final long ttlMillis;
+  private final boolean remoteListener;
+  private final boolean synchronous;
+  private final int foregroundThreads;
+  private final int foregroundKeys;
+  private final long stormTimeoutNanos;
+
+  /**
+   * The expected expiry of each entry, as per {@link System#nanoTime()}.
+   */
+  private final long[] expectedExpiry;
+
+  /**
+   * Constructs an {@link ExpiryEventStormBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public ExpiryEventStormBenchmark() {
+    this.entries = BenchmarkProperties.getInt("entries", 1000000);
+    this.ttlMillis = BenchmarkProperties.getLong("ttl", 15000);
+    this.remoteListener = "remote".equalsIgnoreCase(BenchmarkProperties.getString("listener", "remote"));
+    this.synchronous = BenchmarkProperties.getBoolean("synchronous", false);
+    this.foregroundThreads = BenchmarkProperties.getInt("foregroundThreads", 2);
+    this.foregroundKeys = BenchmarkProperties.getInt("foregroundKeys", 10000);
+    this.stormTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(BenchmarkProperties.getLong("stormTimeout", 30000));
+    this.expectedExpiry = new long[entries];
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (!new ExpiryEventStormBenchmark().run(System.out)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @return <code>true</code> if an expiry event arrived for every entry
+   * @throws Exception when the benchmark fails
+   */
+  public boolean run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+
+    ExpiryEventRecorder recorder = new ExpiryEventRecorder(entries);
+    CacheEntryListenerServer<Long, Long> listenerServer = null;
+    CacheEntryListenerClient<Long, Long> listenerClient = null;
+
+    Factory<? extends CacheEntryListener<? super Long, ? super Long>> listenerFactory;
+    if (remoteListener) {
+      listenerServer = new CacheEntryListenerServer<Long, Long>(10011, Long.class, Long.class);
+      listenerServer.open();
+      listenerServer.addCacheEventListener(recorder);
+      listenerClient = new CacheEntryListenerClient<Long, Long>(listenerServer.getInetAddress(), listenerServer.getPort());
+      listenerFactory = FactoryBuilder.factoryOf(listenerClient);
+    } else {
+      listenerFactory = recorder.localListenerFactory();
+    }
+
+    try {
+      MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+      config.setTypes(Long.class, Long.class);
+      config.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.MILLISECONDS, ttlMillis)));
+      config.addCacheEntryListenerConfiguration(
+          new MutableCacheEntryListenerConfiguration<Long, Long>(listenerFactory,
+              FactoryBuilder.factoryOf(ExpiredEventFilter.class), false, synchronous));
+      Cache<Long, Long> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      Cache<Long, Long> foregroundCache = cacheManager.createCache(FOREGROUND_CACHE_NAME,
+          new MutableConfiguration<Long, Long>().setTypes(Long.class, Long.class));
+      for (long key = 0; key < foregroundKeys; key++) {
+        foregroundCache.put(key, key);
+      }
+
+      out.printf("Expiry event storm benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("entries=%d ttl=%d ms listener=%s synchronous=%s foregroundThreads=%d%n",
+          entries, ttlMillis, remoteListener ? "remote" : "local", synchronous, foregroundThreads);
+
+      long loadStart = System.nanoTime();
+      long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+      for (int key = 0; key < entries; key++) {
+        expectedExpiry[key] = System.nanoTime() + ttlNanos;
+        cache.put((long) key, (long) key);
+      }
+      long loadEnd = System.nanoTime();
+      out.printf("load: %d entries in %d ms%n", entries, TimeUnit.NANOSECONDS.toMillis(loadEnd - loadStart));
+      if (loadEnd > expectedExpiry[0]) {
+        out.printf("warning: entries started expiring before loading completed, increase the ttl%n");
+      }
+
+      return storm(out, cache, foregroundCache, recorder);
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+      cacheManager.destroyCache(FOREGROUND_CACHE_NAME);
+      recorder.close();
+      if (listenerClient != null) {
+        listenerClient.close();
+      }
+      if (listenerServer != null) {
+        listenerServer.close();
+      }
+    }
+  }
+
+  /**
+   * Waits for the entries to expire while running foreground requests,
+   * then reports on the events that arrived.
+   *
+   * @param out             the {@link PrintStream} on which to report
+   * @param cache           the {@link Cache} whose entries expire
+   * @param foregroundCache the {@link Cache} for foreground requests
+   * @param recorder        the {@link ExpiryEventRecorder}
+   * @return <code>true</code> if an expiry event arrived for every entry
+   * @throws InterruptedException when interrupted while waiting
+   */
+  private boolean storm(PrintStream out, Cache<Long, Long> cache, Cache<Long, Long> foregroundCache,
+                        ExpiryEventRecorder recorder) throws InterruptedException {
+    List<ForegroundLoad> loads = new ArrayList<ForegroundLoad>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < foregroundThreads; i++) {
+      ForegroundLoad load = new ForegroundLoad(foregroundCache, i);
+      Thread thread = new Thread(load, "ExpiryEventStormBenchmark-foreground-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      loads.add(load);
+      threads.add(thread);
+    }
+
+    //quiet until the first entry expires, then the storm
+    sleepUntil(expectedExpiry[0]);
+    for (ForegroundLoad load : loads) {
+      load.storming = true;
+    }
+
+    //wait for the events, giving up when none have arrived for a while
+    long lastProgress = System.nanoTime();
+    long lastReceived = 0;
+    while (recorder.getReceived() < entries
+        && (System.nanoTime() < expectedExpiry[entries - 1] || System.nanoTime() - lastProgress < stormTimeoutNanos)) {
+      Thread.sleep(10);
+      if (recorder.getReceived() != lastReceived) {
+        lastReceived = recorder.getReceived();
+        lastProgress = System.nanoTime();
+      }
+    }
+
+    for (ForegroundLoad load : loads) {
+      load.running = false;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    long delivered = recorder.getReceived();
+    long[] span = recorder.arrivalSpan();
+    double seconds = span == null ? 0 : Math.max(1, span[1] - span[0]) / 1e9;
+    out.printf("storm: %d of %d expiry events delivered without access (%.0f events/s)%n",
+        delivered, entries, seconds == 0 ? 0 : delivered / seconds);
+    out.printf("lag: %s%n", recorder.lag(expectedExpiry).summary(TimeUnit.MILLISECONDS));
+
+    reportForeground(out, loads);
+
+    if (delivered < entries) {
+      //implementations may only notice expiry when an entry is accessed
+      for (long key = 0; key < entries; key++) {
+        if (!recorder.hasArrived(key)) {
+          cache.get(key);
+        }
+      }
+      long deadline = System.nanoTime() + stormTimeoutNanos;
+      while (recorder.getReceived() < entries && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      out.printf("sweep: %d further expiry events delivered after reading the remaining entries%n",
+          recorder.getReceived() - delivered);
+    }
+
+    long missing = entries - recorder.getReceived();
+    out.printf("result: missing=%d duplicates=%d unexpected=%d%n",
+        missing, recorder.getDuplicates(), recorder.getUnknown());
+    return missing == 0;
+  }
+
+  /**
+   * Reports the foreground latencies before and during the storm.
+   *
+   * @param out   the {@link PrintStream} on which to report
+   * @param loads the {@link ForegroundLoad}s
+   */
+  private void reportForeground(PrintStream out, List<ForegroundLoad> loads) {
+    LatencyHistogram[][] combined = new LatencyHistogram[2][2];
+    for (int phase = 0; phase < 2; phase++) {
+      for (int operation = 0; operation < 2; operation++) {
+        combined[phase][operation] = new LatencyHistogram();
+        for (ForegroundLoad load : loads) {
+          combined[phase][operation].add(load.latencies[phase][operation]);
+        }
+      }
+    }
+
+    String[] phases = {"quiet", "storm"};
+    String[] operations = {"get", "put"};
+    for (int operation = 0; operation < 2; operation++) {
+      for (int phase = 0; phase < 2; phase++) {
+        out.printf("foreground %s (%s): %s%n", operations[operation], phases[phase],
+            combined[phase][operation].summary(TimeUnit.MICROSECONDS));
+      }
+    }
+  }
+
+  /**
+   * Sleeps until the specified time.
+   *
+   * @param nanoTime the time, as per {@link System#nanoTime()}
+   * @throws InterruptedException when interrupted
+   */
+  private static void sleepUntil(long nanoTime) throws InterruptedException {
+    long remaining = nanoTime - System.nanoTime();
+    while (remaining > 0) {
+      TimeUnit.NANOSECONDS.sleep(remaining);
+      remaining = nanoTime - System.nanoTime();
+    }
+  }
+
+  /**
+   * Issues an even mix of get and put requests to the foreground
+   * {@link Cache}, recording their latency before and during the storm.
+   */
+  private class ForegroundLoad implements Runnable {
+
+    private final Cache<Long, Long> cache;
+    private final Random random;
+
+    /**
+     * The latencies indexed by phase (quiet, storm) and operation (get, put).
+     */
+    private final LatencyHistogram[][] latencies = {
+        {new LatencyHistogram(), new LatencyHistogram()},
+        {new LatencyHistogram(), new LatencyHistogram()}};
+
+    private volatile boolean storming;
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a {@link ForegroundLoad}.
+     *
+     * @param cache the foreground {@link Cache}
+     * @param seed  the seed for choosing keys and operations
+     */
+    ForegroundLoad(Cache<Long, Long> cache, long seed) {
+      this.cache = cache;
+      this.random = new Random(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      while (running) {
+        long key = random.nextInt(foregroundKeys);
+        int operation = random.nextInt(2);
+        int phase = storming ? 1 : 0;
+
+        long start = System.nanoTime();
+        if (operation == 0) {
+          cache.get(key);
+        } else {
+          cache.put(key, key);
+        }
+        latencies[phase][operation].record(System.nanoTime() - start);
+      }
+    }
+  }
+
+  /**
+   * A {@link CacheEntryEventFilter} that only passes expiry events, so that
+   * creating entries does not send events to a remote listener.
+   */
+  public static class ExpiredEventFilter implements CacheEntryEventFilter<Long, Long>, Serializable {
+
+    /**
+     * The serialVersionUID required for {@link java.io.Serializable}.
+     */
+    public static final long serialVersionUID = 202610181302L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean evaluate(CacheEntryEvent<? extends Long, ? extends Long> event) {
+      return event.getEventType() == EventType.EXPIRED;
+    }
+  }
+}
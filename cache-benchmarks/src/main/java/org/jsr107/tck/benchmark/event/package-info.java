@@ -0,0 +1,27 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/**
+ This package contains benchmarks of how implementations deliver
+ {@link javax.cache.event.CacheEntryEvent}s to registered listeners.
+
+ Listeners may be registered through an
+ {@link org.jsr107.tck.event.CacheEntryListenerClient}, delegating to a
+ {@link org.jsr107.tck.event.CacheEntryListenerServer} hosted by the benchmark
+ as the TCK does, or in-process when the implementation runs in the same JVM.
+ */
+package org.jsr107.tck.benchmark.event;
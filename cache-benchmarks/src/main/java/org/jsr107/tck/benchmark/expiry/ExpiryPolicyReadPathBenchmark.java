@@ -0,0 +1,265 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.expiry;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+import org.jsr107.tck.expiry.ExpiryPolicyClient;
+import org.jsr107.tck.expiry.ExpiryPolicyServer;
+import org.jsr107.tck.expiry.ExpiryPolicyServer.EntryOperation;
+import org.jsr107.tck.processor.GetEntryProcessor;
+import org.jsr107.tck.processor.NoOpEntryProcessor;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how often an implementation consults the {@link ExpiryPolicy} on
+ * the read path.
+ * <p/>
+ * A {@link Cache} configured with an access based {@link ExpiryPolicy},
+ * provided through an {@link ExpiryPolicyClient}, is loaded and then read with
+ * each {@link ReadOperation} in turn.  The {@link ExpiryPolicyServer} counts
+ * every request it receives, so the benchmark reports exactly how many times
+ * each method of the {@link ExpiryPolicy} was called per operation and per
+ * entry read, together with the latency of the operation.
+ * <p/>
+ * The specification requires {@link ExpiryPolicy#getExpiryForAccess()} to be
+ * called once for each entry whose value is returned, and not at all for
+ * misses, {@link Cache#containsKey(Object)} or entry processors that don't
+ * read the value.  Calls beyond that are reported as excess.
+ */
+public class ExpiryPolicyReadPathBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "ExpiryPolicyReadPathBenchmark";
+
+  /**
+   * The read operations that are measured.
+   */
+  private enum ReadOperation {
+    GET_HIT("get (hit)", 1),
+    GET_MISS("get (miss)", 0),
+    GET_ALL("getAll", 1),
+    CONTAINS_KEY("containsKey", 0),
+    INVOKE_GET("invoke (getValue)", 1),
+    INVOKE_NOOP("invoke (no-op)", 0);
+
+    private final String description;
+    private final int expectedAccessPerEntry;
+
+    ReadOperation(String description, int expectedAccessPerEntry) {
+      this.description = description;
+      this.expectedAccessPerEntry = expectedAccessPerEntry;
+    }
+  }
+
+  private final int entries;
+  private final int operations;
+  private final int warmup;
+  private final int batchSize;
+  private final MixedTtlExpiryBenchmark.Policy policy;
+  private final long ttl;
+
+  private final Random random = new Random(42);
+
+  /**
+   * Constructs a {@link ExpiryPolicyReadPathBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public ExpiryPolicyReadPathBenchmark() {
+    this.entries = BenchmarkProperties.getInt("entries", 10000);
+    this.operations = BenchmarkProperties.getInt("operations", 50000);
+    this.warmup = BenchmarkProperties.getInt("warmup", 10000);
+    this.batchSize = Math.min(BenchmarkProperties.getInt("batchSize", 100), entries);
+    this.policy = MixedTtlExpiryBenchmark.Policy.valueOf(BenchmarkProperties.getString("policy", "accessed").toUpperCase());
+    this.ttl = BenchmarkProperties.getLong("ttl", TimeUnit.HOURS.toMillis(1));
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new ExpiryPolicyReadPathBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+
+    ExpiryPolicyServer expiryPolicyServer =
+        new ExpiryPolicyServer(10005, policy.create(new Duration(TimeUnit.MILLISECONDS, ttl)));
+    expiryPolicyServer.open();
+    ExpiryPolicyClient expiryPolicyClient =
+        new ExpiryPolicyClient(expiryPolicyServer.getInetAddress(), expiryPolicyServer.getPort());
+
+    try {
+      MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+      config.setTypes(Long.class, Long.class);
+      config.setExpiryPolicyFactory(FactoryBuilder.factoryOf(expiryPolicyClient));
+      Cache<Long, Long> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      out.printf("Expiry policy read path benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("entries=%d operations=%d batchSize=%d policy=%s ttl=%d ms%n",
+          entries, operations, batchSize, policy.name().toLowerCase(), ttl);
+
+      expiryPolicyServer.resetInvocationCounts();
+      for (long key = 0; key < entries; key++) {
+        cache.put(key, key);
+      }
+      out.printf("load: %d puts, policy calls: %s%n", entries, describeCounts(expiryPolicyServer));
+
+      out.printf("%-18s %10s %10s %10s %10s %10s %10s  %s%n",
+          "operation", "ops", "entries", "access", "create", "update", "excess", "latency");
+      for (ReadOperation operation : ReadOperation.values()) {
+        measure(cache, operation, warmup, null);
+
+        expiryPolicyServer.resetInvocationCounts();
+        LatencyHistogram latency = new LatencyHistogram();
+        long read = measure(cache, operation, operations, latency);
+
+        long access = expiryPolicyServer.getInvocationCount(EntryOperation.ACCESSED);
+        long excess = access - read * operation.expectedAccessPerEntry;
+        out.printf("%-18s %10d %10d %10.3f %10.3f %10.3f %10d  %s%n",
+            operation.description, operations, read,
+            perEntry(access, read), perEntry(expiryPolicyServer.getInvocationCount(EntryOperation.CREATION), read),
+            perEntry(expiryPolicyServer.getInvocationCount(EntryOperation.UPDATED), read),
+            excess, latency.summary(TimeUnit.MICROSECONDS));
+      }
+      out.printf("access, create and update are policy calls per entry read; excess is the number of access calls%n"
+          + "beyond one per value returned%n");
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+      expiryPolicyClient.close();
+      expiryPolicyServer.close();
+    }
+  }
+
+  /**
+   * Performs a number of {@link ReadOperation}s against random keys.
+   *
+   * @param cache      the {@link Cache} to read
+   * @param operation  the {@link ReadOperation} to perform
+   * @param operations the number of operations to perform
+   * @param latency    the {@link LatencyHistogram} in which to record the
+   *                   latency of each operation, or <code>null</code>
+   * @return the number of entries read, being the keys requested
+   */
+  private long measure(Cache<Long, Long> cache, ReadOperation operation, int operations, LatencyHistogram latency) {
+    GetEntryProcessor<Long, Long> getEntryProcessor = new GetEntryProcessor<Long, Long>();
+    NoOpEntryProcessor<Long, Long> noOpEntryProcessor = new NoOpEntryProcessor<Long, Long>();
+    Set<Long> keys = new HashSet<Long>();
+    long read = 0;
+
+    for (int i = 0; i < operations; i++) {
+      long key = nextKey();
+      if (operation == ReadOperation.GET_ALL) {
+        keys.clear();
+        while (keys.size() < batchSize) {
+          keys.add(nextKey());
+        }
+      }
+
+      long start = System.nanoTime();
+      switch (operation) {
+        case GET_HIT:
+          cache.get(key);
+          break;
+        case GET_MISS:
+          cache.get(-1 - key);
+          break;
+        case GET_ALL:
+          cache.getAll(keys);
+          break;
+        case CONTAINS_KEY:
+          cache.containsKey(key);
+          break;
+        case INVOKE_GET:
+          cache.invoke(key, getEntryProcessor);
+          break;
+        default:
+          cache.invoke(key, noOpEntryProcessor);
+          break;
+      }
+      if (latency != null) {
+        latency.record(System.nanoTime() - start);
+      }
+
+      read += operation == ReadOperation.GET_ALL ? keys.size() : 1;
+    }
+    return read;
+  }
+
+  /**
+   * Obtains a random key of a loaded entry.
+   *
+   * @return a key
+   */
+  private long nextKey() {
+    return random.nextInt(entries);
+  }
+
+  /**
+   * Calculates the number of policy calls per entry read.
+   *
+   * @param calls   the number of calls
+   * @param entries the number of entries read
+   * @return the calls per entry
+   */
+  private static double perEntry(long calls, long entries) {
+    return entries == 0 ? 0 : (double) calls / entries;
+  }
+
+  /**
+   * Describes the number of requests the {@link ExpiryPolicyServer} has
+   * received for each {@link EntryOperation}.
+   *
+   * @param expiryPolicyServer the {@link ExpiryPolicyServer}
+   * @return a description of the counts
+   */
+  private static String describeCounts(ExpiryPolicyServer expiryPolicyServer) {
+    StringBuilder builder = new StringBuilder();
+    for (EntryOperation entryOperation : EntryOperation.values()) {
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      builder.append(entryOperation.name().toLowerCase()).append('=')
+          .append(expiryPolicyServer.getInvocationCount(entryOperation));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,513 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.expiry;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.HeapSupport;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+import org.jsr107.tck.expiry.ExpiryPolicyClient;
+import org.jsr107.tck.expiry.ExpiryPolicyServer;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.TouchedExpiryPolicy;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Loads a {@link Cache} with a large number of entries whose time-to-live
+ * follows a {@link TtlDistribution}, lets them expire and reports:
+ * <ol>
+ * <li>the latency of {@link Cache#get(Object)} shortly before, at and shortly
+ * after entries expire,</li>
+ * <li>the precision of expiry, being how late entries disappear compared to
+ * when their time-to-live elapsed,</li>
+ * <li>the heap retained by the entries and how quickly it is reclaimed once
+ * all of them have expired.</li>
+ * </ol>
+ * The {@link ExpiryPolicy} is provided to the {@link Cache} by an
+ * {@link ExpiryPolicyClient}.  While each bucket of the distribution is loaded
+ * the {@link ExpiryPolicyServer} delegates to a {@link CreatedExpiryPolicy},
+ * {@link AccessedExpiryPolicy} or {@link TouchedExpiryPolicy} with that bucket's
+ * time-to-live.  The {@link ExpiryPolicy} isn't told which entry it is
+ * consulted for, so with an access based policy each latency probe is read
+ * while the server delegates to the policy of the probe's own bucket, with
+ * loading held off until it is restored.
+ * <p/>
+ * Expiry precision is observed with {@link Cache#containsKey(Object)}, which
+ * must not consult the {@link ExpiryPolicy}, on a sample of the entries.  The
+ * latency probes use a separate sample, each entry of which is read exactly
+ * once so that access based policies can't extend the entries being observed.
+ */
+public class MixedTtlExpiryBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "MixedTtlExpiryBenchmark";
+
+  /**
+   * The standard {@link ExpiryPolicy}s that may be benchmarked.
+   */
+  public enum Policy {
+    /**
+     * A {@link CreatedExpiryPolicy}.
+     */
+    CREATED,
+
+    /**
+     * An {@link AccessedExpiryPolicy}.
+     */
+    ACCESSED,
+
+    /**
+     * A {@link TouchedExpiryPolicy}.
+     */
+    TOUCHED;
+
+    /**
+     * Creates an {@link ExpiryPolicy} of this type.
+     *
+     * @param duration the {@link Duration} of the policy
+     * @return a new {@link ExpiryPolicy}
+     */
+    public ExpiryPolicy create(Duration duration) {
+      switch (this) {
+        case ACCESSED:
+          return new AccessedExpiryPolicy(duration);
+        case TOUCHED:
+          return new TouchedExpiryPolicy(duration);
+        default:
+          return new CreatedExpiryPolicy(duration);
+      }
+    }
+  }
+
+  /**
+   * When, relative to the expiry of an entry, a latency probe read it.
+   */
+  private enum Boundary {
+    BEFORE(-1), AT(0), AFTER(1);
+
+    private final int direction;
+
+    Boundary(int direction) {
+      this.direction = direction;
+    }
+
+    /**
+     * Classifies a read by when it actually happened, as the observer may
+     * not have managed to read a probe at its scheduled time.
+     *
+     * @param offset the time of the read relative to the expiry in nanoseconds
+     * @param window the width of the boundary in nanoseconds
+     * @return the {@link Boundary}
+     */
+    static Boundary of(long offset, long window) {
+      //allow for implementations only measuring time to the millisecond
+      if (offset < -TimeUnit.MILLISECONDS.toNanos(1)) {
+        return BEFORE;
+      } else if (offset < window) {
+        return AT;
+      } else {
+        return AFTER;
+      }
+    }
+  }
+
+  private final int entries;
+  private final int valueSize;
+  private final TtlDistribution distribution;
+  private final Policy policy;
+  private final int samples;
+  private final int probes;
+  private final long boundaryWindowNanos;
+  private final long pollIntervalMillis;
+  private final long graceNanos;
+  private final long reclaimTimeoutMillis;
+
+  /**
+   * The number of entries, and the {@link ExpiryPolicy}, of each bucket.
+   * Entries are loaded bucket by bucket, in key order.
+   */
+  private final int[] bucketCounts;
+  private final ExpiryPolicy[] bucketPolicies;
+
+  /**
+   * Held while the {@link ExpiryPolicyServer} delegates to the policy of a
+   * bucket for an operation, so another thread can't switch it meanwhile.
+   */
+  private final Object policyLock = new Object();
+  private volatile int loadingBucket;
+
+  /**
+   * Keys (and expected expiry times) of the entries observed with containsKey.
+   * An expiry time of zero means the entry has yet to be loaded.
+   */
+  private final long sampleStride;
+  private final AtomicLongArray sampleExpiry;
+
+  /**
+   * Keys (and expected expiry times) of the entries read once with get.
+   */
+  private final long probeStride;
+  private final AtomicLongArray probeExpiry;
+
+  private volatile boolean loaded;
+  private volatile long lastExpiry;
+
+  private final LatencyHistogram lateness = new LatencyHistogram();
+  private final LatencyHistogram[] probeLatency = new LatencyHistogram[Boundary.values().length];
+  private final long[] probeHits = new long[Boundary.values().length];
+  private long earlySamples;
+  private long outstandingSamples;
+
+  /**
+   * Constructs a {@link MixedTtlExpiryBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public MixedTtlExpiryBenchmark() {
+    this.entries = BenchmarkProperties.getInt("entries", 1000000);
+    this.valueSize = BenchmarkProperties.getInt("valueSize", 64);
+    this.distribution = TtlDistribution.parse(BenchmarkProperties.getString("ttls", "100:40,1000:30,5000:20,30000:10"));
+    this.policy = Policy.valueOf(BenchmarkProperties.getString("policy", "created").toUpperCase());
+    this.samples = Math.min(BenchmarkProperties.getInt("samples", 10000), entries / 2);
+    this.probes = Math.min(BenchmarkProperties.getInt("probes", 30000), entries / 2);
+    this.boundaryWindowNanos = TimeUnit.MILLISECONDS.toNanos(BenchmarkProperties.getLong("boundaryWindow", 20));
+    this.pollIntervalMillis = BenchmarkProperties.getLong("pollInterval", 5);
+    this.graceNanos = TimeUnit.MILLISECONDS.toNanos(BenchmarkProperties.getLong("expiryGrace", 10000));
+    this.reclaimTimeoutMillis = BenchmarkProperties.getLong("reclaimTimeout", 60000);
+
+    this.bucketCounts = distribution.allocate(entries);
+    this.bucketPolicies = new ExpiryPolicy[distribution.size()];
+    for (int bucket = 0; bucket < bucketPolicies.length; bucket++) {
+      bucketPolicies[bucket] = policy.create(new Duration(TimeUnit.MILLISECONDS, distribution.getTtl(bucket)));
+    }
+
+    //samples use even keys and probes odd keys, spread evenly over the buckets
+    this.sampleStride = Math.max(1, entries / 2 / Math.max(1, samples));
+    this.sampleExpiry = new AtomicLongArray(samples);
+    this.probeStride = Math.max(1, entries / 2 / Math.max(1, probes));
+    this.probeExpiry = new AtomicLongArray(probes);
+
+    for (int i = 0; i < probeLatency.length; i++) {
+      probeLatency[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new MixedTtlExpiryBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+
+    ExpiryPolicyServer expiryPolicyServer = new ExpiryPolicyServer(10005);
+    expiryPolicyServer.open();
+    ExpiryPolicyClient expiryPolicyClient =
+        new ExpiryPolicyClient(expiryPolicyServer.getInetAddress(), expiryPolicyServer.getPort());
+
+    try {
+      MutableConfiguration<Long, byte[]> config = new MutableConfiguration<Long, byte[]>();
+      config.setTypes(Long.class, byte[].class);
+      config.setExpiryPolicyFactory(FactoryBuilder.factoryOf(expiryPolicyClient));
+
+      long baselineHeap = HeapSupport.usedHeapAfterGc();
+      Cache<Long, byte[]> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      out.printf("Mixed TTL expiry benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("entries=%d valueSize=%d policy=%s ttls=%s%n",
+          entries, valueSize, policy.name().toLowerCase(), distribution);
+
+      Thread observer = new Thread(new ExpiryObserver(cache, expiryPolicyServer), "MixedTtlExpiryBenchmark-observer");
+      observer.setDaemon(true);
+      observer.start();
+
+      long loadStart = System.nanoTime();
+      load(cache, expiryPolicyServer);
+      long loadNanos = System.nanoTime() - loadStart;
+      loaded = true;
+
+      long loadedHeap = HeapSupport.usedHeapAfterGc();
+
+      observer.join();
+
+      out.printf("load: %d entries in %d ms (%.0f entries/s, one ExpiryPolicyClient request per entry)%n",
+          entries, TimeUnit.NANOSECONDS.toMillis(loadNanos), entries / (loadNanos / 1e9));
+      for (Boundary boundary : Boundary.values()) {
+        LatencyHistogram histogram = probeLatency[boundary.ordinal()];
+        out.printf("get %-6s expiry: %s hits=%d misses=%d%n", boundary.name().toLowerCase(),
+            histogram.summary(TimeUnit.MICROSECONDS),
+            probeHits[boundary.ordinal()], histogram.getCount() - probeHits[boundary.ordinal()]);
+      }
+      out.printf("expiry lateness: %s early=%d outstanding=%d%n",
+          lateness.summary(TimeUnit.MILLISECONDS), earlySamples, outstandingSamples);
+
+      reportHeap(out, cache, baselineHeap, loadedHeap);
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+      expiryPolicyClient.close();
+      expiryPolicyServer.close();
+    }
+  }
+
+  /**
+   * Loads the entries, bucket by bucket, switching the {@link ExpiryPolicy}
+   * used by the {@link ExpiryPolicyServer} for each bucket.
+   *
+   * @param cache              the {@link Cache} to load
+   * @param expiryPolicyServer the {@link ExpiryPolicyServer} providing expiry
+   */
+  private void load(Cache<Long, byte[]> cache, ExpiryPolicyServer expiryPolicyServer) {
+    long key = 0;
+
+    for (int bucket = 0; bucket < distribution.size(); bucket++) {
+      long ttlNanos = TimeUnit.MILLISECONDS.toNanos(distribution.getTtl(bucket));
+      synchronized (policyLock) {
+        loadingBucket = bucket;
+        expiryPolicyServer.setExpiryPolicy(bucketPolicies[bucket]);
+      }
+
+      for (int i = 0; i < bucketCounts[bucket]; i++, key++) {
+        long putStart;
+        synchronized (policyLock) {
+          putStart = System.nanoTime();
+          cache.put(key, new byte[valueSize]);
+        }
+        long expiry = putStart + ttlNanos;
+
+        long half = key / 2;
+        if (key % 2 == 0 && half % sampleStride == 0 && half / sampleStride < samples) {
+          sampleExpiry.set((int) (half / sampleStride), expiry);
+        } else if (key % 2 == 1 && half % probeStride == 0 && half / probeStride < probes) {
+          probeExpiry.set((int) (half / probeStride), expiry);
+        }
+        lastExpiry = Math.max(lastExpiry, expiry);
+      }
+    }
+  }
+
+  /**
+   * Determines the bucket of the distribution an entry was loaded in.
+   *
+   * @param key the key of the entry
+   * @return the index of the bucket
+   */
+  private int bucketOf(long key) {
+    long first = 0;
+    for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+      first += bucketCounts[bucket];
+      if (key < first) {
+        return bucket;
+      }
+    }
+    return bucketCounts.length - 1;
+  }
+
+  /**
+   * Reports the heap retained by the entries and waits for it to be reclaimed
+   * after they have all expired.
+   *
+   * @param out          the {@link PrintStream} on which to report
+   * @param cache        the {@link Cache}
+   * @param baselineHeap the used heap before the {@link Cache} was loaded
+   * @param loadedHeap   the used heap once the {@link Cache} was loaded
+   * @throws InterruptedException when interrupted waiting for reclamation
+   */
+  private void reportHeap(PrintStream out, Cache<Long, byte[]> cache, long baselineHeap, long loadedHeap)
+      throws InterruptedException {
+    long retained = Math.max(0, loadedHeap - baselineHeap);
+    out.printf("heap: baseline=%d MB loaded=%d MB (%d bytes per entry)%n",
+        baselineHeap >> 20, loadedHeap >> 20, retained / Math.max(1, entries));
+
+    //wait, without touching the cache, for the memory to be reclaimed (to within 10%)
+    long reclaimDeadline = System.currentTimeMillis() + reclaimTimeoutMillis;
+    long heap = HeapSupport.usedHeapAfterGc();
+    while (heap - baselineHeap > retained / 10 && System.currentTimeMillis() < reclaimDeadline) {
+      Thread.sleep(Math.min(1000, reclaimTimeoutMillis));
+      heap = HeapSupport.usedHeapAfterGc();
+    }
+
+    long sinceLastExpiry = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastExpiry);
+    if (heap - baselineHeap <= retained / 10) {
+      out.printf("reclaim: heap=%d MB, reclaimed %d ms after the last entry expired%n", heap >> 20, sinceLastExpiry);
+    } else {
+      out.printf("reclaim: heap=%d MB, not reclaimed %d ms after the last entry expired (expired lazily?)%n",
+          heap >> 20, sinceLastExpiry);
+    }
+
+    //iterating visits every entry, forcing implementations that expire lazily to do so
+    long visible = 0;
+    for (Iterator<Cache.Entry<Long, byte[]>> iterator = cache.iterator(); iterator.hasNext(); iterator.next()) {
+      visible++;
+    }
+    out.printf("sweep: %d entries visible after expiry, heap=%d MB%n", visible, HeapSupport.usedHeapAfterGc() >> 20);
+  }
+
+  /**
+   * Observes the sampled entries while the {@link Cache} is loaded and expires,
+   * polling with {@link Cache#containsKey(Object)} and reading probes with
+   * {@link Cache#get(Object)} as their expiry approaches.
+   */
+  private class ExpiryObserver implements Runnable {
+
+    private final Cache<Long, byte[]> cache;
+    private final ExpiryPolicyServer expiryPolicyServer;
+    private final boolean[] sampleGone = new boolean[samples];
+    private final boolean[] probeDone = new boolean[probes];
+
+    /**
+     * Constructs an {@link ExpiryObserver}.
+     *
+     * @param cache              the {@link Cache} to observe
+     * @param expiryPolicyServer the {@link ExpiryPolicyServer} providing expiry
+     */
+    ExpiryObserver(Cache<Long, byte[]> cache, ExpiryPolicyServer expiryPolicyServer) {
+      this.cache = cache;
+      this.expiryPolicyServer = expiryPolicyServer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      boolean finished = false;
+      while (!finished) {
+        long now = System.nanoTime();
+        int remaining = pollSamples(now) + readProbes(now);
+
+        finished = loaded && (remaining == 0 || now > lastExpiry + graceNanos);
+        if (!finished) {
+          try {
+            Thread.sleep(pollIntervalMillis);
+          } catch (InterruptedException e) {
+            finished = true;
+          }
+        }
+      }
+
+      for (boolean gone : sampleGone) {
+        outstandingSamples += gone ? 0 : 1;
+      }
+    }
+
+    /**
+     * Polls the sampled entries whose expiry is due.
+     *
+     * @param now the current time in nanoseconds
+     * @return the number of samples yet to expire
+     */
+    private int pollSamples(long now) {
+      int remaining = 0;
+      for (int i = 0; i < samples; i++) {
+        long expiry = sampleExpiry.get(i);
+        if (!sampleGone[i]) {
+          if (expiry != 0 && now >= expiry - boundaryWindowNanos && !cache.containsKey(i * sampleStride * 2)) {
+            sampleGone[i] = true;
+            long late = System.nanoTime() - expiry;
+            if (late < -TimeUnit.MILLISECONDS.toNanos(1)) {
+              //allow for implementations only measuring time to the millisecond
+              earlySamples++;
+            } else {
+              lateness.record(late);
+            }
+          } else {
+            remaining++;
+          }
+        }
+      }
+      return remaining;
+    }
+
+    /**
+     * Reads the probe entries whose time relative to their expiry has arrived.
+     *
+     * @param now the current time in nanoseconds
+     * @return the number of probes yet to be read
+     */
+    private int readProbes(long now) {
+      int remaining = 0;
+      for (int i = 0; i < probes; i++) {
+        long expiry = probeExpiry.get(i);
+        Boundary scheduled = Boundary.values()[i % Boundary.values().length];
+        if (!probeDone[i]) {
+          if (expiry != 0 && now >= expiry + scheduled.direction * boundaryWindowNanos) {
+            readProbe(i * probeStride * 2 + 1, expiry);
+            probeDone[i] = true;
+          } else {
+            remaining++;
+          }
+        }
+      }
+      return remaining;
+    }
+
+    /**
+     * Reads a probe entry, recording the latency by the {@link Boundary} at
+     * which it was read.  For access based policies the
+     * {@link ExpiryPolicyServer} delegates to the policy of the entry's own
+     * bucket during the read.
+     *
+     * @param key    the key of the probe
+     * @param expiry the expected expiry time of the probe in nanoseconds
+     */
+    private void readProbe(long key, long expiry) {
+      long start;
+      byte[] value;
+      long latency;
+      if (policy == Policy.CREATED) {
+        start = System.nanoTime();
+        value = cache.get(key);
+        latency = System.nanoTime() - start;
+      } else {
+        synchronized (policyLock) {
+          expiryPolicyServer.setExpiryPolicy(bucketPolicies[bucketOf(key)]);
+          start = System.nanoTime();
+          value = cache.get(key);
+          latency = System.nanoTime() - start;
+          expiryPolicyServer.setExpiryPolicy(bucketPolicies[loadingBucket]);
+        }
+      }
+
+      Boundary actual = Boundary.of(start - expiry, boundaryWindowNanos);
+      probeLatency[actual.ordinal()].record(latency);
+      probeHits[actual.ordinal()] += value == null ? 0 : 1;
+    }
+  }
+}
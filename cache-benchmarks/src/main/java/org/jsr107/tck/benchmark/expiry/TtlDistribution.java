@@ -0,0 +1,169 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.expiry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A distribution of entry time-to-live values, expressed as weighted buckets.
+ * <p/>
+ * A distribution is specified as a comma separated list of
+ * <code>milliseconds:weight</code> pairs.  For example
+ * <code>100:40,1000:30,5000:20,30000:10</code> gives 40% of entries a
+ * time-to-live of 100 milliseconds, 30% one second and so on.
+ */
+public class TtlDistribution {
+
+  /**
+   * The time-to-live of each bucket in milliseconds, longest first.
+   */
+  private final long[] ttls;
+
+  /**
+   * The relative weight of each bucket.
+   */
+  private final int[] weights;
+
+  /**
+   * Constructs a {@link TtlDistribution}.
+   *
+   * @param ttls    the time-to-live of each bucket in milliseconds
+   * @param weights the relative weight of each bucket
+   */
+  public TtlDistribution(long[] ttls, int[] weights) {
+    if (ttls.length == 0 || ttls.length != weights.length) {
+      throw new IllegalArgumentException("A TtlDistribution requires the same, non-zero, number of ttls and weights");
+    }
+
+    //order the buckets longest first so that the expiry of entries loaded last is not
+    //delayed by the time taken to load the rest
+    List<long[]> buckets = new ArrayList<long[]>();
+    for (int i = 0; i < ttls.length; i++) {
+      if (ttls[i] <= 0 || weights[i] <= 0) {
+        throw new IllegalArgumentException("TtlDistribution ttls and weights must be positive");
+      }
+      buckets.add(new long[]{ttls[i], weights[i]});
+    }
+    Collections.sort(buckets, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] bucket1, long[] bucket2) {
+        return Long.compare(bucket2[0], bucket1[0]);
+      }
+    });
+
+    this.ttls = new long[ttls.length];
+    this.weights = new int[ttls.length];
+    for (int i = 0; i < buckets.size(); i++) {
+      this.ttls[i] = buckets.get(i)[0];
+      this.weights[i] = (int) buckets.get(i)[1];
+    }
+  }
+
+  /**
+   * Parses a {@link TtlDistribution} of the form
+   * <code>milliseconds:weight,milliseconds:weight,...</code>.
+   *
+   * @param specification the specification
+   * @return the {@link TtlDistribution}
+   * @throws IllegalArgumentException when the specification is malformed
+   */
+  public static TtlDistribution parse(String specification) {
+    String[] pairs = specification.split(",");
+    long[] ttls = new long[pairs.length];
+    int[] weights = new int[pairs.length];
+
+    for (int i = 0; i < pairs.length; i++) {
+      String[] parts = pairs[i].trim().split(":");
+      try {
+        ttls[i] = Long.parseLong(parts[0].trim());
+        weights[i] = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Malformed ttl distribution " + specification, e);
+      }
+    }
+    return new TtlDistribution(ttls, weights);
+  }
+
+  /**
+   * Obtains the number of buckets.
+   *
+   * @return the number of buckets
+   */
+  public int size() {
+    return ttls.length;
+  }
+
+  /**
+   * Obtains the time-to-live of a bucket.  Buckets are ordered longest first.
+   *
+   * @param bucket the bucket
+   * @return the time-to-live in milliseconds
+   */
+  public long getTtl(int bucket) {
+    return ttls[bucket];
+  }
+
+  /**
+   * Obtains the longest time-to-live in the distribution.
+   *
+   * @return the time-to-live in milliseconds
+   */
+  public long getMaximumTtl() {
+    return ttls[0];
+  }
+
+  /**
+   * Divides a number of entries between the buckets according to their weights.
+   *
+   * @param entries the total number of entries
+   * @return the number of entries for each bucket, summing to <code>entries</code>
+   */
+  public int[] allocate(int entries) {
+    long totalWeight = 0;
+    for (int weight : weights) {
+      totalWeight += weight;
+    }
+
+    int[] counts = new int[ttls.length];
+    int allocated = 0;
+    for (int i = 0; i < ttls.length; i++) {
+      counts[i] = (int) ((long) entries * weights[i] / totalWeight);
+      allocated += counts[i];
+    }
+    //rounding leftovers go to the shortest bucket
+    counts[ttls.length - 1] += entries - allocated;
+    return counts;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < ttls.length; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append(ttls[i]).append("ms:").append(weights[i]);
+    }
+    return builder.toString();
+  }
+}
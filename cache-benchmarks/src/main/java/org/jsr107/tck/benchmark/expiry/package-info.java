@@ -0,0 +1,26 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/**
+ This package contains benchmarks of how implementations expire entries.
+
+ Expiry policies are provided to the implementation through an
+ {@link org.jsr107.tck.expiry.ExpiryPolicyClient}, delegating to the standard
+ policies in an {@link org.jsr107.tck.expiry.ExpiryPolicyServer} hosted by the
+ benchmark, exactly as the TCK does.
+ */
+package org.jsr107.tck.benchmark.expiry;
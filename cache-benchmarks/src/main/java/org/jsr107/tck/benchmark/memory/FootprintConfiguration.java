@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.memory;
+
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import java.io.Serializable;
+
+/**
+ * The {@link javax.cache.Cache} configurations whose footprint is measured,
+ * each differing from {@link #BASELINE} in one respect.
+ */
+public enum FootprintConfiguration {
+
+  /**
+   * The defaults of a {@link MutableConfiguration}: store-by-value, eternal,
+   * without statistics or listeners.
+   */
+  BASELINE {
+    @Override
+    void configure(MutableConfiguration<Object, byte[]> config) {
+    }
+  },
+
+  /**
+   * Store-by-reference.
+   */
+  BY_REFERENCE {
+    @Override
+    void configure(MutableConfiguration<Object, byte[]> config) {
+      config.setStoreByValue(false);
+    }
+  },
+
+  /**
+   * Statistics enabled.
+   */
+  STATISTICS {
+    @Override
+    void configure(MutableConfiguration<Object, byte[]> config) {
+      config.setStatisticsEnabled(true);
+    }
+  },
+
+  /**
+   * Entries expire an hour after creation.
+   */
+  CREATED_EXPIRY {
+    @Override
+    void configure(MutableConfiguration<Object, byte[]> config) {
+      config.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(Duration.ONE_HOUR));
+    }
+  },
+
+  /**
+   * Entries expire an hour after they were last accessed.
+   */
+  ACCESSED_EXPIRY {
+    @Override
+    void configure(MutableConfiguration<Object, byte[]> config) {
+      config.setExpiryPolicyFactory(AccessedExpiryPolicy.factoryOf(Duration.ONE_HOUR));
+    }
+  },
+
+  /**
+   * A listener registered for every type of event.
+   */
+  LISTENER {
+    @Override
+    void configure(MutableConfiguration<Object, byte[]> config) {
+      config.addCacheEntryListenerConfiguration(new MutableCacheEntryListenerConfiguration<Object, byte[]>(
+          FactoryBuilder.factoryOf(NoOpListener.class), null, false, false));
+    }
+  };
+
+  /**
+   * Applies the configuration.
+   *
+   * @param config the {@link MutableConfiguration} to configure
+   */
+  abstract void configure(MutableConfiguration<Object, byte[]> config);
+
+  /**
+   * A listener for every type of event that ignores them, registered
+   * in-process as its footprint doesn't depend on where events are delivered.
+   */
+  public static class NoOpListener implements CacheEntryCreatedListener<Object, byte[]>,
+      CacheEntryUpdatedListener<Object, byte[]>, CacheEntryRemovedListener<Object, byte[]>,
+      CacheEntryExpiredListener<Object, byte[]>, Serializable {
+
+    /**
+     * The serialVersionUID required for {@link java.io.Serializable}.
+     */
+    public static final long serialVersionUID = 202610181303L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCreated(Iterable<CacheEntryEvent<?, ? extends byte[]>> events) throws CacheEntryListenerException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onUpdated(Iterable<CacheEntryEvent<?, ? extends byte[]>> events) throws CacheEntryListenerException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRemoved(Iterable<CacheEntryEvent<?, ? extends byte[]>> events) throws CacheEntryListenerException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onExpired(Iterable<CacheEntryEvent<?, ? extends byte[]>> events) throws CacheEntryListenerException {
+    }
+  }
+}
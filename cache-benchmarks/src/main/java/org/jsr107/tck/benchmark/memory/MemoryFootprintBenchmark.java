@@ -0,0 +1,197 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.memory;
+
+import org.jsr107.tck.benchmark.core.KeyType;
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.HeapHistogram;
+import org.jsr107.tck.benchmark.support.HeapSupport;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the heap an implementation retains per {@link Cache} entry, and
+ * how much of it is overhead beyond the keys and values themselves, for each
+ * {@link FootprintConfiguration}.
+ * <p/>
+ * The keys and values are first held in plain arrays to measure their own
+ * size.  Then, for each {@link FootprintConfiguration} in turn, an empty
+ * {@link Cache} is loaded with equal keys and values, which only the
+ * {@link Cache} retains, and the growth of the used heap after garbage
+ * collection is attributed to it.  When the JVM supports it, class
+ * histograms of the live objects give a more precise measure, from which the
+ * overhead is calculated, and show which classes account for the growth.
+ * <p/>
+ * Run with a heap large enough for the entries and with no other activity in
+ * the JVM, as the measurement is of the whole heap.
+ */
+public class MemoryFootprintBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "MemoryFootprintBenchmark";
+
+  private final int entries;
+  private final int valueSize;
+  private final KeyType keyType;
+  private final List<FootprintConfiguration> configurations = new ArrayList<FootprintConfiguration>();
+  private final int histogramClasses;
+  private double heapPayload;
+  private double livePayload;
+
+  /**
+   * Constructs a {@link MemoryFootprintBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public MemoryFootprintBenchmark() {
+    this.entries = BenchmarkProperties.getInt("entries", 1000000);
+    this.valueSize = BenchmarkProperties.getInt("valueSize", 100);
+    this.keyType = KeyType.valueOf(BenchmarkProperties.getString("keyType", "long").toUpperCase());
+    String configurationsProperty = BenchmarkProperties.getString("configurations", null);
+    if (configurationsProperty == null) {
+      for (FootprintConfiguration configuration : FootprintConfiguration.values()) {
+        configurations.add(configuration);
+      }
+    } else {
+      for (String configuration : configurationsProperty.split(",")) {
+        configurations.add(FootprintConfiguration.valueOf(configuration.trim().toUpperCase()));
+      }
+    }
+    this.histogramClasses = BenchmarkProperties.getInt("histogramClasses", 5);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new MemoryFootprintBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    out.printf("Memory footprint benchmark of %s%n", BenchmarkCaching.describe());
+    out.printf("entries=%d keyType=%s valueSize=%d referenceSize=%d%n",
+        entries, keyType.name().toLowerCase(), valueSize, HeapSupport.referenceSize());
+
+    measurePayload(out);
+    out.printf("%-16s %14s %12s %12s %12s%n", "configuration", "retained MB", "heap/entry", "live/entry", "overhead");
+
+    try {
+      for (FootprintConfiguration configuration : configurations) {
+        long before = HeapSupport.usedHeapAfterGc();
+        HeapHistogram histogramBefore = histogramClasses > 0 ? HeapHistogram.capture() : null;
+
+        MutableConfiguration<Object, byte[]> config = new MutableConfiguration<Object, byte[]>();
+        configuration.configure(config);
+        Cache<Object, byte[]> cache = cacheManager.createCache(CACHE_NAME, config);
+        load(cache);
+
+        long retained = HeapSupport.usedHeapAfterGc() - before;
+        HeapHistogram histogramAfter = histogramBefore == null ? null : HeapHistogram.capture();
+        double heapPerEntry = (double) retained / entries;
+        double livePerEntry = histogramAfter == null
+            ? Double.NaN
+            : (double) (histogramAfter.getTotalBytes() - histogramBefore.getTotalBytes()) / entries;
+        boolean live = histogramAfter != null && !Double.isNaN(livePayload);
+        out.printf("%-16s %14.1f %12.1f %12s %12.1f%n", configuration.name().toLowerCase(),
+            retained / (1024.0 * 1024.0), heapPerEntry,
+            histogramAfter == null ? "n/a" : String.format("%.1f", livePerEntry),
+            live ? livePerEntry - livePayload : heapPerEntry - heapPayload);
+
+        if (histogramAfter != null) {
+          for (String className : histogramAfter.largestGrowth(histogramBefore, histogramClasses)) {
+            out.printf("  %-60s %10.1f bytes/entry %8.2f instances/entry%n", className,
+                (double) (histogramAfter.getBytes(className) - histogramBefore.getBytes(className)) / entries,
+                (double) (histogramAfter.getInstances(className) - histogramBefore.getInstances(className)) / entries);
+          }
+        }
+
+        cacheManager.destroyCache(CACHE_NAME);
+      }
+      out.printf("heap is the growth of the used heap after collection and live that of the class histogram; overhead is%n"
+          + "the bytes per entry beyond those of the keys and values alone%n");
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+    }
+  }
+
+  /**
+   * Measures the heap retained by the keys and values alone, both from the
+   * used heap and, when enabled and available, from class histograms, so that
+   * the overhead of each configuration is calculated from the same source as
+   * its own measurement.
+   *
+   * @param out the {@link PrintStream} on which to report the measurement
+   */
+  private void measurePayload(PrintStream out) {
+    long before = HeapSupport.usedHeapAfterGc();
+    HeapHistogram histogramBefore = histogramClasses > 0 ? HeapHistogram.capture() : null;
+    Object[] keys = new Object[entries];
+    byte[][] values = new byte[entries][];
+    for (int i = 0; i < entries; i++) {
+      keys[i] = keyType.createKey(i);
+      values[i] = new byte[valueSize];
+    }
+    long retained = HeapSupport.usedHeapAfterGc() - before;
+    HeapHistogram histogramAfter = histogramBefore == null ? null : HeapHistogram.capture();
+
+    //exclude the arrays holding them, which also keeps them reachable until measured
+    long arrays = (long) (keys.length + values.length) * HeapSupport.referenceSize();
+    heapPayload = (double) (retained - arrays) / entries;
+    livePayload = histogramAfter == null
+        ? Double.NaN
+        : (double) (histogramAfter.getTotalBytes() - histogramBefore.getTotalBytes() - arrays) / entries;
+    out.printf("keys and values alone: %.1f bytes per entry of heap, %s live%n", heapPayload,
+        histogramAfter == null ? "n/a" : String.format("%.1f", livePayload));
+  }
+
+  /**
+   * Puts every entry.
+   *
+   * @param cache the {@link Cache}
+   */
+  private void load(Cache<Object, byte[]> cache) {
+    Map<Object, byte[]> batch = new HashMap<Object, byte[]>();
+    for (long id = 0; id < entries; id++) {
+      batch.put(keyType.createKey(id), new byte[valueSize]);
+      if (batch.size() == 1000 || id == entries - 1) {
+        cache.putAll(batch);
+        batch.clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.processor;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.jsr107.tck.benchmark.support.ZipfDistribution;
+import org.jsr107.tck.processor.IncrementEntryProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Cache#invoke} when many threads increment counters with an
+ * {@link IncrementEntryProcessor}, either all on a single hot key or on keys
+ * chosen from a {@link ZipfDistribution}.
+ * <p/>
+ * After every iteration the counters in the {@link Cache} are compared with
+ * the number of increments each thread made; any lost update fails the
+ * benchmark.
+ * <p/>
+ * Run a single configuration with JMH, for example
+ * <code>java -jar benchmarks.jar HotKeyInvokeBenchmark -t 8</code>, or run
+ * {@link #main(String[])} to measure how throughput and latency scale with
+ * the number of threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotKeyInvokeBenchmark {
+
+  /**
+   * How the keys to increment are chosen.
+   */
+  public enum KeyDistribution {
+    /**
+     * Every thread increments the same key.
+     */
+    HOT,
+
+    /**
+     * Keys are drawn from a {@link ZipfDistribution}.
+     */
+    ZIPF
+  }
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "HotKeyInvokeBenchmark";
+
+  /**
+   * The {@link IncrementEntryProcessor} used for every increment.
+   */
+  private static final IncrementEntryProcessor<Long> INCREMENT = new IncrementEntryProcessor<Long>();
+
+  /**
+   * How the keys to increment are chosen.
+   */
+  @Param({"HOT", "ZIPF"})
+  public KeyDistribution distribution;
+
+  /**
+   * The number of keys from which a {@link KeyDistribution#ZIPF} key is drawn.
+   */
+  @Param({"1000"})
+  public int keys;
+
+  private CacheManager cacheManager;
+  private Cache<Long, Long> cache;
+  private ZipfDistribution zipf;
+
+  /**
+   * The {@link Incrementer} of every thread, so their counts can be verified.
+   */
+  private final Queue<Incrementer> incrementers = new ConcurrentLinkedQueue<Incrementer>();
+
+  /**
+   * Creates the {@link Cache}.
+   */
+  @Setup(Level.Trial)
+  public void createCache() {
+    cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+    config.setTypes(Long.class, Long.class);
+    cache = cacheManager.createCache(CACHE_NAME, config);
+
+    zipf = distribution == KeyDistribution.ZIPF ? new ZipfDistribution(keys, ZipfDistribution.DEFAULT_SKEW) : null;
+  }
+
+  /**
+   * Ensures that the counter of every key equals the number of times the
+   * threads incremented it.
+   *
+   * @throws IllegalStateException when an update has been lost
+   */
+  @TearDown(Level.Iteration)
+  public void verifyCounters() {
+    int size = distribution == KeyDistribution.HOT ? 1 : keys;
+    long[] expected = new long[size];
+    for (Incrementer incrementer : incrementers) {
+      for (int key = 0; key < size; key++) {
+        expected[key] += incrementer.increments[key];
+      }
+    }
+
+    for (int key = 0; key < size; key++) {
+      Long counter = cache.get((long) key);
+      long actual = counter == null ? 0 : counter;
+      if (actual != expected[key]) {
+        throw new IllegalStateException("Lost updates for key " + key + ": incremented "
+            + expected[key] + " times but the counter is " + actual);
+      }
+    }
+  }
+
+  /**
+   * Destroys the {@link Cache}.
+   */
+  @TearDown(Level.Trial)
+  public void destroyCache() {
+    cacheManager.destroyCache(CACHE_NAME);
+  }
+
+  /**
+   * The state of each benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class Incrementer {
+
+    /**
+     * The number of times the thread has incremented each key.
+     */
+    long[] increments;
+
+    private Random random;
+
+    /**
+     * Registers the {@link Incrementer} with the benchmark.
+     *
+     * @param benchmark the {@link HotKeyInvokeBenchmark}
+     */
+    @Setup(Level.Trial)
+    public void register(HotKeyInvokeBenchmark benchmark) {
+      increments = new long[benchmark.distribution == KeyDistribution.HOT ? 1 : benchmark.keys];
+      random = new Random();
+      benchmark.incrementers.add(this);
+    }
+  }
+
+  /**
+   * Increments a counter.
+   *
+   * @param incrementer the state of the calling thread
+   * @return the value of the counter after it was incremented
+   */
+  @Benchmark
+  public Long invoke(Incrementer incrementer) {
+    int key = zipf == null ? 0 : zipf.next(incrementer.random);
+    incrementer.increments[key]++;
+
+    return cache.invoke((long) key, INCREMENT);
+  }
+
+  /**
+   * Runs the benchmark with an increasing number of threads, reporting the
+   * throughput and latency percentiles of each.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    List<Integer> threadCounts = JmhSupport.getThreadCounts("threads", "1,2,4,8");
+
+    List<RunResult> results = new ArrayList<RunResult>();
+    for (int threads : threadCounts) {
+      Collection<RunResult> runs = new Runner(new OptionsBuilder()
+          .include(HotKeyInvokeBenchmark.class.getName())
+          .param("keys", BenchmarkProperties.getString("keys", "1000"))
+          .threads(threads)
+          .build()).run();
+      results.addAll(runs);
+    }
+
+    out.printf("%-6s %8s %14s %10s %10s %10s %10s%n", "keys", "threads", "ops/us", "p50 us", "p99 us", "p99.9 us", "max us");
+    for (KeyDistribution distribution : KeyDistribution.values()) {
+      for (int threads : threadCounts) {
+        Result<?> throughput = find(results, distribution, threads, Mode.Throughput);
+        Result<?> latency = find(results, distribution, threads, Mode.SampleTime);
+        if (throughput != null && latency != null) {
+          Statistics statistics = latency.getStatistics();
+          out.printf("%-6s %8d %14.3f %10.3f %10.3f %10.3f %10.3f%n", distribution.name().toLowerCase(), threads,
+              throughput.getScore(), statistics.getPercentile(50), statistics.getPercentile(99),
+              statistics.getPercentile(99.9), statistics.getMax());
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the primary {@link Result} of a run.
+   *
+   * @param results      the {@link RunResult}s
+   * @param distribution the {@link KeyDistribution} of the run
+   * @param threads      the number of threads of the run
+   * @param mode         the {@link Mode} of the run
+   * @return the {@link Result} or <code>null</code> if there was no such run
+   */
+  private static Result<?> find(List<RunResult> results, KeyDistribution distribution, int threads, Mode mode) {
+    for (RunResult result : results) {
+      BenchmarkParams params = result.getParams();
+      if (params.getMode() == mode && params.getThreads() == threads
+          && distribution.name().equals(params.getParam("distribution"))) {
+        return result.getPrimaryResult();
+      }
+    }
+    return null;
+  }
+}
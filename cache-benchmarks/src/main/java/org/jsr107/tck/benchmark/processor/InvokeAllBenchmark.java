@@ -0,0 +1,382 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.processor;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.jsr107.tck.processor.GetEntryProcessor;
+import org.jsr107.tck.processor.RemoveEntryProcessor;
+import org.jsr107.tck.processor.SetEntryProcessor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorResult;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Cache#invokeAll} with the {@link GetEntryProcessor},
+ * {@link SetEntryProcessor} and {@link RemoveEntryProcessor} over key sets of
+ * various sizes, when each thread invokes a set of keys no other thread uses
+ * ({@link KeyOverlap#DISJOINT}) and when every thread invokes the same set
+ * ({@link KeyOverlap#OVERLAPPING}).
+ * <p/>
+ * Besides the rate of {@link Cache#invokeAll} calls the benchmark reports the
+ * rate at which entries are processed.  An implementation that processes
+ * disjoint key sets in parallel processes more entries as threads are added;
+ * one that serializes bulk invocation behind a global lock does not.
+ * {@link #main(String[])} runs each configuration with an increasing number
+ * of threads and reports that scaling.
+ * <p/>
+ * The {@link RemoveEntryProcessor} is measured by its own benchmark method,
+ * {@link #invokeAllRemove}, as the entries it removed are put back before
+ * each invocation, outside of the measurement.  Keeping that per invocation
+ * setup away from {@link #invokeAll} means the {@link GetEntryProcessor} and
+ * {@link SetEntryProcessor} timings don't carry its overhead.  With
+ * overlapping key sets other threads may put entries back while an
+ * invocation is in progress, so some of the removes may find the entry
+ * absent.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class InvokeAllBenchmark {
+
+  /**
+   * The {@link EntryProcessor}s that may be invoked.
+   */
+  public enum Processor {
+    /**
+     * A {@link GetEntryProcessor}.
+     */
+    GET,
+
+    /**
+     * A {@link SetEntryProcessor}.
+     */
+    SET,
+
+    /**
+     * A {@link RemoveEntryProcessor}.
+     */
+    REMOVE;
+
+    /**
+     * Creates an {@link EntryProcessor} of this type.
+     *
+     * @return a new {@link EntryProcessor}
+     */
+    EntryProcessor<Long, Long, Long> create() {
+      switch (this) {
+        case SET:
+          return new SetEntryProcessor<Long, Long>(-1L);
+        case REMOVE:
+          return new RemoveEntryProcessor<Long, Long, Long>();
+        default:
+          return new GetEntryProcessor<Long, Long>();
+      }
+    }
+  }
+
+  /**
+   * How the key sets of the threads relate to one another.
+   */
+  public enum KeyOverlap {
+    /**
+     * Each thread has its own keys.
+     */
+    DISJOINT,
+
+    /**
+     * Every thread uses the same keys.
+     */
+    OVERLAPPING
+  }
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "InvokeAllBenchmark";
+
+  /**
+   * The number of keys passed to each {@link Cache#invokeAll} call.
+   */
+  @Param({"10", "1000", "100000", "1000000"})
+  public int keys;
+
+  /**
+   * How the key sets of the threads relate to one another.
+   */
+  @Param({"DISJOINT", "OVERLAPPING"})
+  public KeyOverlap overlap;
+
+  private CacheManager cacheManager;
+  private Cache<Long, Long> cache;
+  private EntryProcessor<Long, Long, Long> remover;
+
+  /**
+   * Creates the {@link Cache} and loads an entry for every key any thread
+   * will invoke.
+   *
+   * @param params the {@link BenchmarkParams}
+   */
+  @Setup(Level.Trial)
+  public void createCache(BenchmarkParams params) {
+    cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+    config.setTypes(Long.class, Long.class);
+    cache = cacheManager.createCache(CACHE_NAME, config);
+    remover = Processor.REMOVE.create();
+
+    long entries = overlap == KeyOverlap.DISJOINT ? (long) keys * params.getThreads() : keys;
+    Map<Long, Long> batch = new HashMap<Long, Long>();
+    for (long key = 0; key < entries; key++) {
+      batch.put(key, key);
+      if (batch.size() == 10000 || key == entries - 1) {
+        cache.putAll(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Destroys the {@link Cache}.
+   */
+  @TearDown(Level.Trial)
+  public void destroyCache() {
+    cacheManager.destroyCache(CACHE_NAME);
+  }
+
+  /**
+   * The {@link EntryProcessor} invoked by {@link #invokeAll}.
+   */
+  @State(Scope.Benchmark)
+  public static class ReadWriteProcessor {
+
+    /**
+     * The {@link EntryProcessor} to invoke.
+     */
+    @Param({"GET", "SET"})
+    public Processor processor;
+
+    private EntryProcessor<Long, Long, Long> entryProcessor;
+
+    /**
+     * Creates the {@link EntryProcessor}.
+     */
+    @Setup(Level.Trial)
+    public void createProcessor() {
+      entryProcessor = processor.create();
+    }
+  }
+
+  /**
+   * The keys a thread invokes.
+   */
+  @State(Scope.Thread)
+  public static class KeySet {
+
+    Set<Long> keys;
+    Map<Long, Long> entries;
+    InvokeAllBenchmark benchmark;
+
+    /**
+     * Chooses the keys of the thread.
+     *
+     * @param benchmark    the {@link InvokeAllBenchmark}
+     * @param threadParams the {@link ThreadParams} of the thread
+     */
+    @Setup(Level.Trial)
+    public void chooseKeys(InvokeAllBenchmark benchmark, ThreadParams threadParams) {
+      long first = benchmark.overlap == KeyOverlap.DISJOINT ? (long) benchmark.keys * threadParams.getThreadIndex() : 0;
+
+      this.benchmark = benchmark;
+      keys = new HashSet<Long>();
+      entries = new HashMap<Long, Long>();
+      for (long key = first; key < first + benchmark.keys; key++) {
+        keys.add(key);
+        entries.put(key, key);
+      }
+    }
+  }
+
+  /**
+   * The keys a thread removes, which are put back before each invocation.
+   */
+  @State(Scope.Thread)
+  public static class RemovedKeySet extends KeySet {
+
+    /**
+     * Puts back the entries the {@link RemoveEntryProcessor} removed.
+     */
+    @Setup(Level.Invocation)
+    public void restore() {
+      benchmark.cache.putAll(entries);
+    }
+  }
+
+  /**
+   * Counts the entries processed by a thread, which JMH reports as a rate
+   * alongside that of {@link Cache#invokeAll} calls.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class ProcessedEntries {
+
+    /**
+     * The number of entries processed.
+     */
+    public long entries;
+
+    /**
+     * Resets the count for each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+      entries = 0;
+    }
+  }
+
+  /**
+   * Invokes the {@link GetEntryProcessor} or {@link SetEntryProcessor}
+   * against the keys of the thread.
+   *
+   * @param processor the {@link EntryProcessor} to invoke
+   * @param keySet    the keys of the thread
+   * @param processed the count of processed entries
+   * @return the results of the invocation
+   */
+  @Benchmark
+  public Map<Long, EntryProcessorResult<Long>> invokeAll(ReadWriteProcessor processor, KeySet keySet,
+                                                         ProcessedEntries processed) {
+    Map<Long, EntryProcessorResult<Long>> results = cache.invokeAll(keySet.keys, processor.entryProcessor);
+    processed.entries += keySet.keys.size();
+
+    return results;
+  }
+
+  /**
+   * Invokes the {@link RemoveEntryProcessor} against the keys of the thread.
+   *
+   * @param keySet    the keys of the thread, restored before each invocation
+   * @param processed the count of processed entries
+   * @return the results of the invocation
+   */
+  @Benchmark
+  public Map<Long, EntryProcessorResult<Long>> invokeAllRemove(RemovedKeySet keySet, ProcessedEntries processed) {
+    Map<Long, EntryProcessorResult<Long>> results = cache.invokeAll(keySet.keys, remover);
+    processed.entries += keySet.keys.size();
+
+    return results;
+  }
+
+  /**
+   * Runs the benchmark with an increasing number of threads, reporting the
+   * rate at which entries are processed by each and how that scales compared
+   * with a single thread.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    List<Integer> threadCounts = JmhSupport.getThreadCounts("threads", "1,2,4,8");
+
+    //REMOVE is measured by its own benchmark method, the others are a parameter
+    List<String> readWrite = new ArrayList<String>();
+    boolean remove = false;
+    for (String processor : BenchmarkProperties.getString("processor", "GET,SET,REMOVE").split(",")) {
+      if (Processor.valueOf(processor.trim().toUpperCase()) == Processor.REMOVE) {
+        remove = true;
+      } else {
+        readWrite.add(processor.trim().toUpperCase());
+      }
+    }
+
+    List<RunResult> results = new ArrayList<RunResult>();
+    for (int threads : threadCounts) {
+      ChainedOptionsBuilder options = new OptionsBuilder().threads(threads);
+      if (!readWrite.isEmpty()) {
+        options.include(InvokeAllBenchmark.class.getName() + "\\.invokeAll$")
+            .param("processor", readWrite.toArray(new String[readWrite.size()]));
+      }
+      if (remove) {
+        options.include(InvokeAllBenchmark.class.getName() + "\\.invokeAllRemove$");
+      }
+      results.addAll(new Runner(JmhSupport.withParameters(options, "keys", "overlap").build()).run());
+    }
+
+    out.printf("%-6s %8s %-11s %8s %14s %14s %12s %10s%n",
+        "proc", "keys", "overlap", "threads", "invokeAll/s", "entries/s", "ns/entry", "scaling");
+    Map<String, Double> singleThreaded = new HashMap<String, Double>();
+    for (RunResult result : results) {
+      BenchmarkParams params = result.getParams();
+      String processor = params.getParam("processor") == null ? Processor.REMOVE.name() : params.getParam("processor");
+      String configuration = String.format("%-6s %8s %-11s", processor.toLowerCase(),
+          params.getParam("keys"), params.getParam("overlap").toLowerCase());
+      Result<?> entries = result.getSecondaryResults().get("entries");
+      double entryRate = entries == null ? 0 : entries.getScore();
+
+      if (params.getThreads() == threadCounts.get(0)) {
+        singleThreaded.put(configuration, entryRate / params.getThreads());
+      }
+      Double baseline = singleThreaded.get(configuration);
+
+      //each thread spends threads / entryRate seconds per entry
+      out.printf("%s %8d %14.1f %14.0f %12.1f %10.2f%n", configuration, params.getThreads(),
+          result.getPrimaryResult().getScore(), entryRate,
+          entryRate == 0 ? 0 : params.getThreads() * 1e9 / entryRate,
+          baseline == null || baseline == 0 ? 0 : entryRate / (baseline * params.getThreads()));
+    }
+    out.printf("scaling is the entry rate relative to perfect scaling of the first thread count%n");
+  }
+}
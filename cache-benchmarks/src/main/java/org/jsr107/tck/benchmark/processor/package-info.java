@@ -0,0 +1,25 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+/**
+ This package contains benchmarks of
+ {@link javax.cache.Cache#invoke(Object, javax.cache.processor.EntryProcessor, Object...)}
+ and {@link javax.cache.Cache#invokeAll(java.util.Set, javax.cache.processor.EntryProcessor, Object...)}
+ using the {@link javax.cache.processor.EntryProcessor}s of the TCK.
+
+ They are JMH benchmarks, run with <code>java -jar target/benchmarks.jar</code>.
+ */
+package org.jsr107.tck.benchmark.processor;
@@ -0,0 +1,97 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.soak;
+
+/**
+ * Detects the monotonic growth of a resource sampled over a long run.
+ * <p/>
+ * The samples are divided into a number of consecutive segments and the
+ * minimum of each is taken, so that transient peaks, such as garbage not yet
+ * collected or threads briefly serving a request, are ignored.  The resource
+ * is growing when the minimum of every segment exceeds that of the previous
+ * one and the total growth exceeds a tolerance.
+ */
+public class LeakDetector {
+
+  private final int segments;
+
+  /**
+   * Constructs a {@link LeakDetector}.
+   *
+   * @param segments the number of segments into which the samples are
+   *                 divided, at least two
+   */
+  public LeakDetector(int segments) {
+    if (segments < 2) {
+      throw new IllegalArgumentException("At least two segments are required, not " + segments);
+    }
+    this.segments = segments;
+  }
+
+  /**
+   * Determines whether there are enough samples to detect growth.
+   *
+   * @param samples the number of samples
+   * @return <code>true</code> if every segment has at least one sample
+   */
+  public boolean isSufficient(int samples) {
+    return samples >= segments;
+  }
+
+  /**
+   * Obtains the minimum of each segment of the samples.
+   *
+   * @param values the sampled values, in the order they were sampled
+   * @return the minimum of each segment
+   */
+  public long[] getSegmentMinimums(long[] values) {
+    long[] minimums = new long[segments];
+    for (int segment = 0; segment < segments; segment++) {
+      int from = (int) ((long) values.length * segment / segments);
+      int to = (int) ((long) values.length * (segment + 1) / segments);
+
+      long minimum = Long.MAX_VALUE;
+      for (int index = from; index < to; index++) {
+        minimum = Math.min(minimum, values[index]);
+      }
+      minimums[segment] = minimum;
+    }
+    return minimums;
+  }
+
+  /**
+   * Determines whether a resource grew monotonically.
+   *
+   * @param values    the sampled values, in the order they were sampled
+   * @param tolerance the total growth that is tolerated
+   * @return <code>true</code> if the resource grew in every segment by more
+   *         than the tolerance in total
+   */
+  public boolean isGrowing(long[] values, long tolerance) {
+    if (!isSufficient(values.length)) {
+      return false;
+    }
+
+    long[] minimums = getSegmentMinimums(values);
+    for (int segment = 1; segment < segments; segment++) {
+      if (minimums[segment] <= minimums[segment - 1]) {
+        return false;
+      }
+    }
+    return minimums[segments - 1] - minimums[0] > tolerance;
+  }
+}
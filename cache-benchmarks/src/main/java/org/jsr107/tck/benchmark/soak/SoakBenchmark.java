@@ -0,0 +1,362 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.soak;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.ResourceSample;
+import org.jsr107.tck.event.CacheEntryListenerClient;
+import org.jsr107.tck.event.CacheEntryListenerServer;
+import org.jsr107.tck.expiry.ExpiryPolicyClient;
+import org.jsr107.tck.expiry.ExpiryPolicyServer;
+import org.jsr107.tck.integration.CacheLoaderClient;
+import org.jsr107.tck.integration.CacheLoaderServer;
+import org.jsr107.tck.integration.CacheWriterClient;
+import org.jsr107.tck.integration.CacheWriterServer;
+import org.jsr107.tck.integration.RecordingCacheLoader;
+import org.jsr107.tck.integration.RecordingCacheWriter;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repeatedly exercises the life cycle of {@link Cache}s and their
+ * integrations for a long time, failing when the heap, threads or file
+ * descriptors held by the JVM grow monotonically.
+ * <p/>
+ * Each cycle creates a read-through, write-through {@link Cache} whose
+ * {@link javax.cache.expiry.ExpiryPolicy}, loader and writer are provided by
+ * the {@link ExpiryPolicyServer}, {@link CacheLoaderServer} and
+ * {@link CacheWriterServer} fixtures, registers a listener provided by a
+ * {@link CacheEntryListenerServer}, then puts, loads, expires and removes
+ * entries before deregistering the listener and destroying the {@link Cache}.
+ * Every few cycles the {@link CacheManager} is closed, with the {@link Cache}
+ * still open, and a new one obtained.
+ * <p/>
+ * After a warmup the heap retained after garbage collection, the number of
+ * live threads and the number of open file descriptors are sampled at a
+ * regular interval.  A {@link LeakDetector} then decides whether each grew
+ * monotonically, in which case the benchmark exits with a non-zero status.
+ */
+public class SoakBenchmark {
+
+  /**
+   * The name of the {@link Cache} created by each cycle.
+   */
+  public static final String CACHE_NAME = "SoakBenchmark";
+
+  private static final long MEGABYTE = 1024 * 1024;
+
+  private final long duration;
+  private final long warmup;
+  private final long sampleInterval;
+  private final int entries;
+  private final long ttl;
+  private final int managerCycles;
+  private final int segments;
+  private final long heapTolerance;
+  private final long threadTolerance;
+  private final long fileDescriptorTolerance;
+
+  /**
+   * Constructs a {@link SoakBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public SoakBenchmark() {
+    this.duration = BenchmarkProperties.getLong("duration", 3600);
+    this.warmup = BenchmarkProperties.getLong("warmup", 300);
+    this.sampleInterval = BenchmarkProperties.getLong("sampleInterval", 60);
+    this.entries = BenchmarkProperties.getInt("entries", 100);
+    this.ttl = BenchmarkProperties.getLong("ttl", 50);
+    this.managerCycles = Math.max(1, BenchmarkProperties.getInt("managerCycles", 10));
+    this.segments = BenchmarkProperties.getInt("segments", 4);
+    this.heapTolerance = BenchmarkProperties.getLong("heapTolerance", 16) * MEGABYTE;
+    this.threadTolerance = BenchmarkProperties.getLong("threadTolerance", 2);
+    this.fileDescriptorTolerance = BenchmarkProperties.getLong("fileDescriptorTolerance", 8);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (!new SoakBenchmark().run(System.out)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @return <code>true</code> if no resource grew monotonically
+   * @throws Exception when the benchmark fails
+   */
+  public boolean run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+
+    EventCounter eventCounter = new EventCounter();
+    ExpiryPolicyServer expiryPolicyServer =
+        new ExpiryPolicyServer(10005, new CreatedExpiryPolicy(new Duration(TimeUnit.MILLISECONDS, ttl)));
+    CacheLoaderServer<Long, Long> loaderServer = new CacheLoaderServer<Long, Long>(10000, new RecordingCacheLoader<Long>());
+    CacheWriterServer<Long, Long> writerServer =
+        new CacheWriterServer<Long, Long>(10001, new RecordingCacheWriter<Long, Long>());
+    CacheEntryListenerServer<Long, Long> listenerServer =
+        new CacheEntryListenerServer<Long, Long>(10011, Long.class, Long.class);
+    listenerServer.addCacheEventListener(eventCounter);
+
+    expiryPolicyServer.open();
+    loaderServer.open();
+    writerServer.open();
+    listenerServer.open();
+
+    ExpiryPolicyClient expiryPolicyClient =
+        new ExpiryPolicyClient(expiryPolicyServer.getInetAddress(), expiryPolicyServer.getPort());
+    CacheLoaderClient<Long, Long> loaderClient =
+        new CacheLoaderClient<Long, Long>(loaderServer.getInetAddress(), loaderServer.getPort());
+    CacheWriterClient<Long, Long> writerClient =
+        new CacheWriterClient<Long, Long>(writerServer.getInetAddress(), writerServer.getPort());
+    CacheEntryListenerClient<Long, Long> listenerClient =
+        new CacheEntryListenerClient<Long, Long>(listenerServer.getInetAddress(), listenerServer.getPort());
+
+    try {
+      MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+      config.setTypes(Long.class, Long.class);
+      config.setExpiryPolicyFactory(FactoryBuilder.factoryOf(expiryPolicyClient));
+      config.setCacheLoaderFactory(FactoryBuilder.factoryOf(loaderClient));
+      config.setReadThrough(true);
+      config.setCacheWriterFactory(FactoryBuilder.factoryOf(writerClient));
+      config.setWriteThrough(true);
+      MutableCacheEntryListenerConfiguration<Long, Long> listenerConfiguration =
+          new MutableCacheEntryListenerConfiguration<Long, Long>(FactoryBuilder.factoryOf(listenerClient), null, false, true);
+
+      out.printf("Soak benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("duration=%d s warmup=%d s sampleInterval=%d s entries=%d ttl=%d ms managerCycles=%d%n",
+          duration, warmup, sampleInterval, entries, ttl, managerCycles);
+      out.printf("%10s %10s %12s %10s %10s %12s%n", "elapsed s", "cycles", "heap MB", "threads", "fds", "events");
+
+      List<ResourceSample> samples = new ArrayList<ResourceSample>();
+      long start = System.nanoTime();
+      long sampleStart = start + TimeUnit.SECONDS.toNanos(warmup);
+      long end = sampleStart + TimeUnit.SECONDS.toNanos(duration);
+      long nextSample = sampleStart;
+      long cycles = 0;
+
+      while (System.nanoTime() < end) {
+        cacheManager = cycle(cacheManager, config, listenerConfiguration, ++cycles);
+
+        if (System.nanoTime() >= nextSample) {
+          ResourceSample sample = ResourceSample.take();
+          samples.add(sample);
+          out.printf("%10d %10d %12.1f %10d %10d %12d%n",
+              TimeUnit.NANOSECONDS.toSeconds(sample.getTime() - start), cycles,
+              (double) sample.getHeapAfterGc() / MEGABYTE, sample.getLiveThreads(), sample.getOpenFileDescriptors(),
+              eventCounter.getCount());
+          nextSample += TimeUnit.SECONDS.toNanos(sampleInterval);
+        }
+      }
+
+      return report(out, samples);
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+      listenerClient.close();
+      writerClient.close();
+      loaderClient.close();
+      expiryPolicyClient.close();
+      listenerServer.close();
+      writerServer.close();
+      loaderServer.close();
+      expiryPolicyServer.close();
+    }
+  }
+
+  /**
+   * Performs a single cycle: creates a {@link Cache}, registers a listener,
+   * puts, loads, expires and removes entries, deregisters the listener and
+   * then destroys the {@link Cache} or closes the {@link CacheManager}.
+   *
+   * @param cacheManager          the {@link CacheManager}
+   * @param config                the configuration of the {@link Cache}
+   * @param listenerConfiguration the configuration of the listener
+   * @param cycle                 the number of the cycle
+   * @return the {@link CacheManager} for the next cycle
+   * @throws InterruptedException when interrupted waiting for entries to
+   *                              expire
+   */
+  private CacheManager cycle(CacheManager cacheManager, MutableConfiguration<Long, Long> config,
+                             MutableCacheEntryListenerConfiguration<Long, Long> listenerConfiguration, long cycle)
+      throws InterruptedException {
+    Cache<Long, Long> cache = cacheManager.createCache(CACHE_NAME, config);
+    cache.registerCacheEntryListener(listenerConfiguration);
+
+    //written through to the writer, creating entries
+    for (long key = 0; key < entries; key++) {
+      cache.put(key, key);
+    }
+
+    //read through from the loader
+    Set<Long> missingKeys = new LinkedHashSet<Long>();
+    for (long key = entries; key < 2L * entries; key++) {
+      missingKeys.add(key);
+    }
+    cache.getAll(missingKeys);
+
+    //expire the entries that were put, and read them through again
+    Thread.sleep(ttl + 1);
+    for (long key = 0; key < entries; key++) {
+      cache.get(key);
+    }
+
+    //deleted through the writer
+    cache.removeAll();
+    cache.deregisterCacheEntryListener(listenerConfiguration);
+
+    if (cycle % managerCycles == 0) {
+      cacheManager.close();
+      cacheManager = BenchmarkCaching.getCacheManager();
+    }
+
+    //implementations may retain a cache beyond the manager that was closed
+    cacheManager.destroyCache(CACHE_NAME);
+    return cacheManager;
+  }
+
+  /**
+   * Reports whether each resource grew monotonically over the samples.
+   *
+   * @param out     the {@link PrintStream} on which to report
+   * @param samples the {@link ResourceSample}s
+   * @return <code>true</code> if no resource grew monotonically
+   */
+  private boolean report(PrintStream out, List<ResourceSample> samples) {
+    LeakDetector leakDetector = new LeakDetector(segments);
+    if (!leakDetector.isSufficient(samples.size())) {
+      out.printf("only %d samples were taken, at least %d are required to detect growth%n", samples.size(), segments);
+      return true;
+    }
+
+    long[] heap = new long[samples.size()];
+    long[] threads = new long[samples.size()];
+    long[] fileDescriptors = new long[samples.size()];
+    for (int index = 0; index < samples.size(); index++) {
+      ResourceSample sample = samples.get(index);
+      heap[index] = sample.getHeapAfterGc();
+      threads[index] = sample.getLiveThreads();
+      fileDescriptors[index] = sample.getOpenFileDescriptors();
+    }
+
+    out.printf("minimum of each of %d segments of %d samples:%n", segments, samples.size());
+    boolean passed = report(out, leakDetector, "heap bytes", heap, heapTolerance);
+    passed &= report(out, leakDetector, "threads", threads, threadTolerance);
+    if (fileDescriptors[0] < 0) {
+      out.printf("%-12s not available on this platform%n", "fds");
+    } else {
+      passed &= report(out, leakDetector, "fds", fileDescriptors, fileDescriptorTolerance);
+    }
+    return passed;
+  }
+
+  /**
+   * Reports whether a resource grew monotonically.
+   *
+   * @param out          the {@link PrintStream} on which to report
+   * @param leakDetector the {@link LeakDetector}
+   * @param resource     the name of the resource
+   * @param values       the sampled values
+   * @param tolerance    the growth that is tolerated
+   * @return <code>true</code> if the resource didn't grow monotonically
+   */
+  private static boolean report(PrintStream out, LeakDetector leakDetector, String resource, long[] values,
+                                long tolerance) {
+    boolean growing = leakDetector.isGrowing(values, tolerance);
+    StringBuilder minimums = new StringBuilder();
+    for (long minimum : leakDetector.getSegmentMinimums(values)) {
+      minimums.append(' ').append(minimum);
+    }
+    out.printf("%-12s%s (tolerance %d): %s%n", resource, minimums, tolerance, growing ? "LEAK" : "ok");
+    return !growing;
+  }
+
+  /**
+   * Counts the events delivered through the {@link CacheEntryListenerServer}.
+   */
+  private static class EventCounter implements CacheEntryCreatedListener<Long, Long>,
+      CacheEntryUpdatedListener<Long, Long>, CacheEntryRemovedListener<Long, Long>,
+      CacheEntryExpiredListener<Long, Long> {
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Obtains the number of events delivered.
+     *
+     * @return the number of events
+     */
+    long getCount() {
+      return count.get();
+    }
+
+    @Override
+    public void onCreated(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> cacheEntryEvents) {
+      count(cacheEntryEvents);
+    }
+
+    @Override
+    public void onUpdated(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> cacheEntryEvents) {
+      count(cacheEntryEvents);
+    }
+
+    @Override
+    public void onRemoved(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> cacheEntryEvents) {
+      count(cacheEntryEvents);
+    }
+
+    @Override
+    public void onExpired(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> cacheEntryEvents) {
+      count(cacheEntryEvents);
+    }
+
+    /**
+     * Counts events.
+     *
+     * @param cacheEntryEvents the events
+     */
+    private void count(Iterable<CacheEntryEvent<? extends Long, ? extends Long>> cacheEntryEvents) {
+      for (CacheEntryEvent<? extends Long, ? extends Long> event : cacheEntryEvents) {
+        count.incrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+/**
+ * Measures the bytes an operation allocates on the heap, using
+ * {@link HeapSupport#allocatedBytes()}.
+ * <p/>
+ * The operation is run repeatedly on the calling thread so that it is
+ * compiled, then run again while the thread's allocation is measured.  The
+ * allocation of the measuring loop itself, found by measuring an operation
+ * that does nothing, is subtracted.  Allocation by other threads on behalf of
+ * the operation isn't included.
+ */
+public final class AllocationMeter {
+
+  /**
+   * An operation that does nothing, to calibrate the measurement.
+   */
+  private static final Runnable NOTHING = new Runnable() {
+    @Override
+    public void run() {
+    }
+  };
+
+  private final int warmupIterations;
+  private final int iterations;
+
+  /**
+   * Constructs an {@link AllocationMeter}.
+   *
+   * @param warmupIterations the number of times to run an operation before
+   *                         measuring it
+   * @param iterations       the number of times to run an operation while
+   *                         measuring it
+   */
+  public AllocationMeter(int warmupIterations, int iterations) {
+    if (iterations <= 0) {
+      throw new IllegalArgumentException("An AllocationMeter requires at least one iteration");
+    }
+    this.warmupIterations = warmupIterations;
+    this.iterations = iterations;
+  }
+
+  /**
+   * Determines whether this JVM can measure allocation.
+   *
+   * @return <code>true</code> if allocation can be measured
+   */
+  public static boolean isSupported() {
+    return HeapSupport.allocatedBytes() >= 0;
+  }
+
+  /**
+   * Measures the bytes an operation allocates each time it is run.
+   *
+   * @param operation the operation
+   * @return the mean bytes allocated per run
+   * @throws IllegalStateException when this JVM can't measure allocation
+   */
+  public double bytesPerOperation(Runnable operation) {
+    if (!isSupported()) {
+      throw new IllegalStateException("This JVM can't measure the allocation of a thread");
+    }
+    return Math.max(0, measure(operation) - measure(NOTHING));
+  }
+
+  /**
+   * Runs an operation, after warming it up, measuring its allocation.
+   *
+   * @param operation the operation
+   * @return the mean bytes allocated per run, including the loop
+   */
+  private double measure(Runnable operation) {
+    for (int i = 0; i < warmupIterations; i++) {
+      operation.run();
+    }
+
+    long before = HeapSupport.allocatedBytes();
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    long after = HeapSupport.allocatedBytes();
+
+    return (double) (after - before) / iterations;
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import javax.cache.CacheException;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+
+/**
+ * Obtains the implementation being benchmarked.
+ * <p/>
+ * Benchmarks make no assumption about the implementation, resolving it with
+ * {@link Caching#getCachingProvider()}.  It is added to the classpath either
+ * directly or by building the module with the <code>implementation</code>
+ * profile, which depends on the implementation identified by the
+ * <code>implementation-groupId</code>, <code>implementation-artifactId</code>
+ * and <code>implementation-version</code> properties used by the TCK.  When
+ * several implementations are on the classpath the
+ * <code>javax.cache.spi.CachingProvider</code> system property selects one.
+ */
+public final class BenchmarkCaching {
+
+  private BenchmarkCaching() {
+    //utility class
+  }
+
+  /**
+   * Obtains the {@link CachingProvider} being benchmarked.
+   *
+   * @return the {@link CachingProvider}
+   * @throws CacheException when there isn't exactly one implementation on the
+   *                        classpath and none has been selected
+   */
+  public static CachingProvider getCachingProvider() {
+    try {
+      return Caching.getCachingProvider();
+    } catch (CacheException e) {
+      throw new CacheException("Failed to resolve the JSR107 implementation to benchmark. Add exactly one to the classpath, "
+          + "build with -P implementation -Dimplementation-groupId=... -Dimplementation-artifactId=... "
+          + "-Dimplementation-version=... or select one with -Djavax.cache.spi.CachingProvider=<class>", e);
+    }
+  }
+
+  /**
+   * Obtains the {@link CacheManager} of the {@link CachingProvider} being
+   * benchmarked.
+   * <p/>
+   * This is the default {@link CacheManager} unless the
+   * <code>cacheManagerUri</code> property names another, typically an
+   * implementation specific configuration that bounds the size of the caches
+   * the benchmarks create.
+   * <p/>
+   * Benchmarks that host TCK client/server fixtures call this before opening
+   * any server, whose threads would otherwise keep the JVM of a run alive
+   * after the implementation failed to resolve.
+   *
+   * @return the {@link CacheManager}
+   */
+  public static CacheManager getCacheManager() {
+    CachingProvider provider = getCachingProvider();
+    String uri = BenchmarkProperties.getString("cacheManagerUri", null);
+
+    return uri == null
+        ? provider.getCacheManager()
+        : provider.getCacheManager(URI.create(uri), provider.getDefaultClassLoader());
+  }
+
+  /**
+   * Describes the implementation being benchmarked, for inclusion in reports.
+   *
+   * @return the class of the {@link CachingProvider} and, when known, the
+   *         version of the implementation
+   */
+  public static String describe() {
+    Class<?> providerClass = getCachingProvider().getClass();
+    Package providerPackage = providerClass.getPackage();
+    String version = providerPackage == null ? null : providerPackage.getImplementationVersion();
+
+    return version == null ? providerClass.getName() : providerClass.getName() + " " + version;
+  }
+}
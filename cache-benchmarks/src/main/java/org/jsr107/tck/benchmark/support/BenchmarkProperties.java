@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+/**
+ * Resolves benchmark settings from system properties.
+ * <p/>
+ * Every setting is named relative to {@link #PREFIX}, so the
+ * <code>entries</code> setting is specified on the command line with
+ * <code>-Dorg.jsr107.tck.benchmark.entries=1000000</code>.
+ */
+public final class BenchmarkProperties {
+
+  /**
+   * The prefix of all benchmark system properties.
+   */
+  public static final String PREFIX = "org.jsr107.tck.benchmark.";
+
+  private BenchmarkProperties() {
+    //utility class
+  }
+
+  /**
+   * Obtains a setting as a {@link String}.
+   *
+   * @param name         the name of the setting (without the {@link #PREFIX})
+   * @param defaultValue the value to use when the setting is not specified
+   * @return the value of the setting
+   */
+  public static String getString(String name, String defaultValue) {
+    String value = System.getProperty(PREFIX + name);
+    return value == null || value.trim().length() == 0 ? defaultValue : value.trim();
+  }
+
+  /**
+   * Obtains a setting as an <code>int</code>.
+   *
+   * @param name         the name of the setting (without the {@link #PREFIX})
+   * @param defaultValue the value to use when the setting is not specified
+   * @return the value of the setting
+   * @throws IllegalArgumentException when the setting is not a number or is
+   *                                  out of the range of an <code>int</code>
+   */
+  public static int getInt(String name, int defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The benchmark setting " + PREFIX + name
+          + " must be a number from " + Integer.MIN_VALUE + " to " + Integer.MAX_VALUE + " but was " + value, e);
+    }
+  }
+
+  /**
+   * Obtains a setting as a <code>long</code>.
+   *
+   * @param name         the name of the setting (without the {@link #PREFIX})
+   * @param defaultValue the value to use when the setting is not specified
+   * @return the value of the setting
+   * @throws IllegalArgumentException when the setting is not a number
+   */
+  public static long getLong(String name, long defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The benchmark setting " + PREFIX + name + " must be a number but was " + value, e);
+    }
+  }
+
+  /**
+   * Obtains a setting as a <code>double</code>.
+   *
+   * @param name         the name of the setting (without the {@link #PREFIX})
+   * @param defaultValue the value to use when the setting is not specified
+   * @return the value of the setting
+   * @throws IllegalArgumentException when the setting is not a number
+   */
+  public static double getDouble(String name, double defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The benchmark setting " + PREFIX + name + " must be a number but was " + value, e);
+    }
+  }
+
+  /**
+   * Obtains a setting as a <code>boolean</code>.
+   *
+   * @param name         the name of the setting (without the {@link #PREFIX})
+   * @param defaultValue the value to use when the setting is not specified
+   * @return the value of the setting
+   */
+  public static boolean getBoolean(String name, boolean defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+}
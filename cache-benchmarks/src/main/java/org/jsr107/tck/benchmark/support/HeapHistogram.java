@@ -0,0 +1,138 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A histogram of the live objects on the heap by class, as reported by the
+ * HotSpot <code>GC.class_histogram</code> diagnostic command.
+ */
+public final class HeapHistogram {
+
+  /**
+   * The name of the HotSpot diagnostic command MBean.
+   */
+  private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+
+  private final Map<String, Long> instances = new HashMap<String, Long>();
+  private final Map<String, Long> bytes = new HashMap<String, Long>();
+
+  private HeapHistogram() {
+  }
+
+  /**
+   * Captures a {@link HeapHistogram} of the live objects, which collects
+   * garbage first.
+   *
+   * @return the {@link HeapHistogram}, or <code>null</code> when the JVM
+   *         doesn't provide the diagnostic command
+   */
+  public static HeapHistogram capture() {
+    String output;
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      output = (String) server.invoke(new ObjectName(DIAGNOSTIC_COMMAND), "gcClassHistogram",
+          new Object[]{new String[0]}, new String[]{String[].class.getName()});
+    } catch (JMException e) {
+      return null;
+    }
+
+    //lines are of the form "   1:        123456        7890123  java.lang.String"
+    HeapHistogram histogram = new HeapHistogram();
+    for (String line : output.split("\n")) {
+      String[] columns = line.trim().split("\\s+");
+      if (columns.length >= 4 && columns[0].endsWith(":")) {
+        try {
+          histogram.instances.put(columns[3], Long.parseLong(columns[1]));
+          histogram.bytes.put(columns[3], Long.parseLong(columns[2]));
+        } catch (NumberFormatException e) {
+          //not a histogram line
+        }
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Obtains the number of live instances of a class.
+   *
+   * @param className the name of the class as reported by the JVM
+   * @return the number of instances
+   */
+  public long getInstances(String className) {
+    Long count = instances.get(className);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Obtains the number of bytes used by the live instances of a class.
+   *
+   * @param className the name of the class as reported by the JVM
+   * @return the number of bytes
+   */
+  public long getBytes(String className) {
+    Long count = bytes.get(className);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Obtains the number of bytes used by all live objects.
+   *
+   * @return the number of bytes
+   */
+  public long getTotalBytes() {
+    long total = 0;
+    for (long classBytes : bytes.values()) {
+      total += classBytes;
+    }
+    return total;
+  }
+
+  /**
+   * Determines the classes whose instances use the most additional heap
+   * compared with an earlier {@link HeapHistogram}.
+   *
+   * @param before the earlier {@link HeapHistogram}
+   * @param limit  the maximum number of classes
+   * @return the names of the classes, the largest growth first
+   */
+  public List<String> largestGrowth(final HeapHistogram before, int limit) {
+    Set<String> classNames = new HashSet<String>(bytes.keySet());
+    classNames.addAll(before.bytes.keySet());
+
+    List<String> sorted = new ArrayList<String>(classNames);
+    Collections.sort(sorted, new Comparator<String>() {
+      @Override
+      public int compare(String first, String second) {
+        return Long.compare(getBytes(second) - before.getBytes(second), getBytes(first) - before.getBytes(first));
+      }
+    });
+    return sorted.subList(0, Math.min(limit, sorted.size()));
+  }
+}
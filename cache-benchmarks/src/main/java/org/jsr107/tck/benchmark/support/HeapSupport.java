@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the amount of heap retained by live objects and allocated by
+ * threads.
+ */
+public final class HeapSupport {
+
+  /**
+   * The maximum number of collections to request when waiting for the
+   * used heap to settle.
+   */
+  private static final int MAX_COLLECTIONS = 10;
+
+  private HeapSupport() {
+    //utility class
+  }
+
+  /**
+   * Requests garbage collections until the used heap stops shrinking and
+   * returns the amount used.
+   * <p/>
+   * As {@link System#gc()} is only a request, the result is an approximation
+   * of the retained heap.  It is accurate enough to compare heap usage before
+   * and after loading or expiring large numbers of entries.
+   *
+   * @return the used heap in bytes after collection
+   */
+  public static long usedHeapAfterGc() {
+    MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < MAX_COLLECTIONS; i++) {
+      memoryMXBean.gc();
+      long usedNow = memoryMXBean.getHeapMemoryUsage().getUsed();
+      if (usedNow >= used) {
+        return used;
+      }
+      used = usedNow;
+    }
+    return used;
+  }
+
+  /**
+   * Obtains the total number of bytes the calling thread has allocated on the
+   * heap, when the JVM provides the HotSpot
+   * {@link com.sun.management.ThreadMXBean} extension and has allocation
+   * measurement enabled.
+   * <p/>
+   * The difference between two calls is the allocation of the code executed
+   * between them by the calling thread, excluding allocation by other threads
+   * on its behalf.
+   *
+   * @return the allocated bytes or <code>-1</code> when allocation can't be
+   *         measured
+   */
+  public static long allocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (hotSpotThreadMXBean.isThreadAllocatedMemorySupported() && hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+        return hotSpotThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Determines the size of an object reference on the heap, using the
+   * {@link HotSpotDiagnosticMXBean} to find whether references are
+   * compressed.
+   *
+   * @return the size of a reference in bytes
+   */
+  public static int referenceSize() {
+    String dataModel = System.getProperty("sun.arch.data.model");
+    if ("32".equals(dataModel)) {
+      return 4;
+    }
+
+    HotSpotDiagnosticMXBean diagnosticMXBean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+    if (diagnosticMXBean != null) {
+      try {
+        return Boolean.parseBoolean(diagnosticMXBean.getVMOption("UseCompressedOops").getValue()) ? 4 : 8;
+      } catch (IllegalArgumentException e) {
+        //the option doesn't exist on this JVM
+      }
+    }
+    return 8;
+  }
+}
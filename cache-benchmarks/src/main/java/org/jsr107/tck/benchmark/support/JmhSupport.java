@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for the <code>main</code> methods of JMH benchmarks, which run the
+ * benchmarks programmatically and summarize their results.
+ */
+public final class JmhSupport {
+
+  private JmhSupport() {
+    //utility class
+  }
+
+  /**
+   * Passes benchmark settings that name JMH parameters on to JMH, so that
+   * <code>-Dorg.jsr107.tck.benchmark.size=1000,1000000</code> restricts the
+   * <code>size</code> parameter to those values.
+   *
+   * @param options    the {@link ChainedOptionsBuilder} of the run
+   * @param parameters the names of the parameters
+   * @return the {@link ChainedOptionsBuilder}
+   */
+  public static ChainedOptionsBuilder withParameters(ChainedOptionsBuilder options, String... parameters) {
+    for (String parameter : parameters) {
+      String values = BenchmarkProperties.getString(parameter, null);
+      if (values != null) {
+        options.param(parameter, values.split(","));
+      }
+    }
+    return options;
+  }
+
+  /**
+   * Obtains the thread counts to run a benchmark with from a benchmark setting.
+   *
+   * @param name         the name of the setting
+   * @param defaultValue the comma separated thread counts to use when the
+   *                     setting is not specified
+   * @return the thread counts
+   */
+  public static List<Integer> getThreadCounts(String name, String defaultValue) {
+    List<Integer> threadCounts = new ArrayList<Integer>();
+    for (String threads : BenchmarkProperties.getString(name, defaultValue).split(",")) {
+      threadCounts.add(Integer.parseInt(threads.trim()));
+    }
+    return threadCounts;
+  }
+
+  /**
+   * Finds the normalized allocation rate reported by the {@link GCProfiler}.
+   *
+   * @param result the {@link RunResult} of a benchmark run with the profiler
+   * @return the bytes allocated per operation, or <code>NaN</code> when the
+   *         profiler wasn't used or couldn't measure it
+   */
+  public static double getAllocatedPerOperation(RunResult result) {
+    //JMH declares the secondary results with the raw Result type, so look them up by name
+    for (String name : result.getSecondaryResults().keySet()) {
+      if (name.endsWith("gc.alloc.rate.norm")) {
+        Result<?> allocation = result.getSecondaryResults().get(name);
+        return allocation.getScore();
+      }
+    }
+    return Double.NaN;
+  }
+
+  /**
+   * Obtains the simple name of the benchmark method of a run.
+   *
+   * @param result the {@link RunResult}
+   * @return the name of the method
+   */
+  public static String getMethodName(RunResult result) {
+    String benchmark = result.getParams().getBenchmark();
+    return benchmark.substring(benchmark.lastIndexOf('.') + 1);
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A histogram of latencies, in nanoseconds, from which percentiles can be
+ * calculated.
+ * <p/>
+ * Values are counted in buckets whose width grows with the magnitude of the
+ * value, keeping the relative error of any reported value below 2% while
+ * using a fixed amount of memory regardless of how many values are recorded.
+ * <p/>
+ * Note: {@link LatencyHistogram}s are not thread-safe.  Each thread should
+ * record into its own {@link LatencyHistogram}, which can then be combined
+ * using {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+  /**
+   * The number of bits of each value that are counted precisely.
+   */
+  private static final int SUB_BUCKET_BITS = 6;
+
+  /**
+   * The number of buckets for each power of two.
+   */
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The number of buckets required to cover all positive <code>long</code>s.
+   */
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS);
+
+  /**
+   * The number of values recorded in each bucket.
+   */
+  private final long[] counts = new long[BUCKET_COUNT];
+
+  /**
+   * The number of values recorded.
+   */
+  private long count;
+
+  /**
+   * The sum of the values recorded.
+   */
+  private long sum;
+
+  /**
+   * The smallest value recorded.
+   */
+  private long min = Long.MAX_VALUE;
+
+  /**
+   * The largest value recorded.
+   */
+  private long max;
+
+  /**
+   * Records a latency.  Negative latencies are recorded as zero.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = nanos < 0 ? 0 : nanos;
+
+    counts[indexOf(value)]++;
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Adds all of the latencies recorded by another {@link LatencyHistogram}
+   * to this {@link LatencyHistogram}.
+   *
+   * @param other the {@link LatencyHistogram} to add
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Discards all recorded latencies.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = 0;
+    }
+    count = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  /**
+   * Obtains the number of latencies recorded.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Obtains the smallest latency recorded.
+   *
+   * @return the smallest latency in nanoseconds, or zero if none were recorded
+   */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  /**
+   * Obtains the largest latency recorded.
+   *
+   * @return the largest latency in nanoseconds
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Obtains the mean of the latencies recorded.
+   *
+   * @return the mean latency in nanoseconds, or zero if none were recorded
+   */
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * Obtains the latency at or below which the specified percentage of
+   * recorded latencies fall.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency in nanoseconds, or zero if none were recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100 but was " + percentile);
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, highestValueIn(i));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Summarizes the recorded latencies in the specified {@link TimeUnit}.
+   *
+   * @param unit the {@link TimeUnit} in which to report latencies
+   * @return a summary of the form
+   *         <code>count=.. mean=.. p50=.. p99=.. p99.9=.. max=..</code>
+   */
+  public String summary(TimeUnit unit) {
+    return String.format("count=%d mean=%.1f p50=%.1f p99=%.1f p99.9=%.1f max=%.1f (%s)",
+        count,
+        convert(getMean(), unit),
+        convert(getValueAtPercentile(50), unit),
+        convert(getValueAtPercentile(99), unit),
+        convert(getValueAtPercentile(99.9), unit),
+        convert(max, unit),
+        unit.name().toLowerCase());
+  }
+
+  /**
+   * Converts a value in nanoseconds to the specified {@link TimeUnit},
+   * retaining fractions.
+   *
+   * @param nanos the value in nanoseconds
+   * @param unit  the {@link TimeUnit} to convert to
+   * @return the converted value
+   */
+  public static double convert(double nanos, TimeUnit unit) {
+    return nanos / unit.toNanos(1);
+  }
+
+  /**
+   * Determines the bucket in which a value is counted.
+   *
+   * @param value a non-negative value
+   * @return the index of the bucket
+   */
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * Determines the largest value counted in a bucket.
+   *
+   * @param index the index of the bucket
+   * @return the largest value
+   */
+  private static long highestValueIn(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+    int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+    return ((long) (SUB_BUCKET_COUNT + subBucket) << shift) + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * The resources held by the JVM at an instant: the heap retained after
+ * garbage collection, the number of live threads and the number of open file
+ * descriptors.
+ */
+public final class ResourceSample {
+
+  private final long time;
+  private final long heapAfterGc;
+  private final int liveThreads;
+  private final long openFileDescriptors;
+
+  /**
+   * Constructs a {@link ResourceSample}.
+   *
+   * @param time                the {@link System#nanoTime()} of the sample
+   * @param heapAfterGc         the used heap in bytes after collection
+   * @param liveThreads         the number of live threads
+   * @param openFileDescriptors the number of open file descriptors, or
+   *                            <code>-1</code> when unknown
+   */
+  public ResourceSample(long time, long heapAfterGc, int liveThreads, long openFileDescriptors) {
+    this.time = time;
+    this.heapAfterGc = heapAfterGc;
+    this.liveThreads = liveThreads;
+    this.openFileDescriptors = openFileDescriptors;
+  }
+
+  /**
+   * Samples the resources currently held by the JVM, collecting garbage
+   * first.
+   *
+   * @return a {@link ResourceSample}
+   */
+  public static ResourceSample take() {
+    long heapAfterGc = HeapSupport.usedHeapAfterGc();
+    int liveThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+    return new ResourceSample(System.nanoTime(), heapAfterGc, liveThreads, openFileDescriptors());
+  }
+
+  /**
+   * Obtains the number of file descriptors the JVM has open, when the
+   * operating system is a Unix and the JVM provides the HotSpot
+   * {@link com.sun.management.UnixOperatingSystemMXBean} extension.
+   *
+   * @return the number of open file descriptors, or <code>-1</code> when
+   *         unknown
+   */
+  public static long openFileDescriptors() {
+    OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+    if (operatingSystemMXBean instanceof com.sun.management.UnixOperatingSystemMXBean) {
+      return ((com.sun.management.UnixOperatingSystemMXBean) operatingSystemMXBean).getOpenFileDescriptorCount();
+    }
+    return -1;
+  }
+
+  /**
+   * Obtains the time of the sample.
+   *
+   * @return the {@link System#nanoTime()} of the sample
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Obtains the heap retained after garbage collection.
+   *
+   * @return the used heap in bytes
+   */
+  public long getHeapAfterGc() {
+    return heapAfterGc;
+  }
+
+  /**
+   * Obtains the number of live threads.
+   *
+   * @return the number of threads
+   */
+  public int getLiveThreads() {
+    return liveThreads;
+  }
+
+  /**
+   * Obtains the number of open file descriptors.
+   *
+   * @return the number of file descriptors, or <code>-1</code> when unknown
+   */
+  public long getOpenFileDescriptors() {
+    return openFileDescriptors;
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.support;
+
+import java.util.Random;
+
+/**
+ * Draws integers from <code>[0, items)</code> following a Zipf distribution,
+ * in which <code>0</code> is the most popular item, <code>1</code> the next
+ * most popular and so on.
+ * <p/>
+ * Uses the method of Gray et al, "Quickly Generating Billion-Record Synthetic
+ * Databases", which draws each item in constant time once the distribution
+ * has been constructed in time proportional to the number of items.
+ * <p/>
+ * A {@link ZipfDistribution} is immutable and may be shared between threads,
+ * each of which should supply its own {@link Random}.
+ */
+public final class ZipfDistribution {
+
+  /**
+   * The skew commonly used by benchmarks such as YCSB.
+   */
+  public static final double DEFAULT_SKEW = 0.99;
+
+  private final int items;
+  private final double skew;
+  private final double alpha;
+  private final double zetaN;
+  private final double eta;
+  private final double halfPowSkew;
+
+  /**
+   * Constructs a {@link ZipfDistribution}.
+   *
+   * @param items the number of items
+   * @param skew  the skew of the distribution, being greater than zero and
+   *              not one, where larger values are more skewed
+   */
+  public ZipfDistribution(int items, double skew) {
+    if (items < 1) {
+      throw new IllegalArgumentException("A ZipfDistribution requires at least one item");
+    }
+    if (skew <= 0 || skew == 1) {
+      throw new IllegalArgumentException("The skew of a ZipfDistribution must be positive and not one but was " + skew);
+    }
+
+    this.items = items;
+    this.skew = skew;
+    this.alpha = 1 / (1 - skew);
+    this.zetaN = zeta(items, skew);
+    this.eta = (1 - Math.pow(2.0 / items, 1 - skew)) / (1 - zeta(2, skew) / zetaN);
+    this.halfPowSkew = 1 + Math.pow(0.5, skew);
+  }
+
+  /**
+   * Obtains the number of items.
+   *
+   * @return the number of items
+   */
+  public int getItems() {
+    return items;
+  }
+
+  /**
+   * Obtains the skew of the distribution.
+   *
+   * @return the skew
+   */
+  public double getSkew() {
+    return skew;
+  }
+
+  /**
+   * Draws the next item.
+   *
+   * @param random the {@link Random} from which to draw
+   * @return an item in <code>[0, items)</code>
+   */
+  public int next(Random random) {
+    double u = random.nextDouble();
+    double uz = u * zetaN;
+
+    if (uz < 1) {
+      return 0;
+    } else if (uz < halfPowSkew) {
+      return Math.min(1, items - 1);
+    } else {
+      return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+  }
+
+  /**
+   * Calculates the generalized harmonic number of order <code>skew</code>.
+   *
+   * @param n    the number of terms
+   * @param skew the skew
+   * @return the sum of <code>1 / i^skew</code> for <code>i</code> in
+   *         <code>[1, n]</code>
+   */
+  private static double zeta(long n, double skew) {
+    double sum = 0;
+    for (long i = 1; i <= n; i++) {
+      sum += 1 / Math.pow(i, skew);
+    }
+    return sum;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return "zipf(" + items + ", " + skew + ")";
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.trace;
+
+import javax.cache.integration.CacheLoader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link CacheLoader} that simulates a backend, taking a configurable time
+ * to load each request and counting the requests and keys it loads.
+ * <p/>
+ * Each request takes the latency plus a random jitter up to the configured
+ * amount, whether it is for one key or many.
+ */
+public class SimulatedBackendLoader implements CacheLoader<Long, byte[]> {
+
+  private final long latencyNanos;
+  private final long jitterNanos;
+  private final int valueSize;
+  private final Random random = new Random(42);
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong keys = new AtomicLong();
+
+  /**
+   * Constructs a {@link SimulatedBackendLoader}.
+   *
+   * @param latency   the minimum time each request takes
+   * @param jitter    the maximum time added to the latency of each request
+   * @param unit      the {@link TimeUnit} of the latency and jitter
+   * @param valueSize the size in bytes of the values loaded
+   */
+  public SimulatedBackendLoader(long latency, long jitter, TimeUnit unit, int valueSize) {
+    this.latencyNanos = unit.toNanos(latency);
+    this.jitterNanos = unit.toNanos(jitter);
+    this.valueSize = valueSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public byte[] load(Long key) {
+    calls.incrementAndGet();
+    keys.incrementAndGet();
+    simulateLatency();
+    return new byte[valueSize];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<Long, byte[]> loadAll(Iterable<? extends Long> keysToLoad) {
+    calls.incrementAndGet();
+    Map<Long, byte[]> loaded = new HashMap<Long, byte[]>();
+    for (Long key : keysToLoad) {
+      loaded.put(key, new byte[valueSize]);
+    }
+    keys.addAndGet(loaded.size());
+    simulateLatency();
+    return loaded;
+  }
+
+  /**
+   * Obtains the number of requests made of the backend.
+   *
+   * @return the number of calls to {@link #load(Long)} and
+   *         {@link #loadAll(Iterable)}
+   */
+  public long getCallCount() {
+    return calls.get();
+  }
+
+  /**
+   * Obtains the number of keys loaded from the backend.
+   *
+   * @return the number of keys
+   */
+  public long getKeyCount() {
+    return keys.get();
+  }
+
+  /**
+   * Waits for the simulated latency of a request.
+   */
+  private void simulateLatency() {
+    long jitter;
+    synchronized (random) {
+      jitter = jitterNanos == 0 ? 0 : (long) (random.nextDouble() * jitterNanos);
+    }
+
+    long deadline = System.nanoTime() + latencyNanos + jitter;
+    for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
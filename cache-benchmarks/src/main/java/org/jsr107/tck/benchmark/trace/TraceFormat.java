@@ -0,0 +1,58 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.trace;
+
+/**
+ * The formats of key access traces a {@link TraceReader} can read.
+ */
+public enum TraceFormat {
+
+  /**
+   * One access per line, the key being the first token on the line, separated
+   * by whitespace or commas.  Numeric keys are used as they are and others are
+   * hashed.  Blank lines and lines starting with <code>#</code> are ignored.
+   */
+  TEXT,
+
+  /**
+   * A sequence of big-endian 64-bit keys.
+   */
+  BINARY,
+
+  /**
+   * A sequence of big-endian unsigned 32-bit keys.
+   */
+  BINARY32;
+
+  /**
+   * Determines the {@link TraceFormat} of a file from its name, files ending
+   * in <code>.bin</code> or <code>.bin32</code> being binary and others text.
+   *
+   * @param fileName the name of the file
+   * @return the {@link TraceFormat}
+   */
+  public static TraceFormat forFileName(String fileName) {
+    String name = fileName.toLowerCase();
+    if (name.endsWith(".bin32")) {
+      return BINARY32;
+    } else if (name.endsWith(".bin")) {
+      return BINARY;
+    } else {
+      return TEXT;
+    }
+  }
+}
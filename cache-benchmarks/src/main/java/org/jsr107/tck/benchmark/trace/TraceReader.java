@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the keys of a key access trace, in order, from a file in a
+ * {@link TraceFormat}.
+ */
+public class TraceReader implements Closeable {
+
+  private final TraceFormat format;
+  private final BufferedReader reader;
+  private final DataInputStream input;
+
+  /**
+   * The next key, valid when {@link #hasNext} is <code>true</code>.
+   */
+  private long next;
+  private boolean hasNext;
+
+  /**
+   * Opens a {@link TraceReader}.
+   *
+   * @param file   the trace file
+   * @param format the {@link TraceFormat} of the file
+   * @throws IOException when the file can't be opened
+   */
+  public TraceReader(File file, TraceFormat format) throws IOException {
+    this.format = format;
+    if (format == TraceFormat.TEXT) {
+      this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName("UTF-8")));
+      this.input = null;
+    } else {
+      this.reader = null;
+      this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+    }
+    advance();
+  }
+
+  /**
+   * Determines whether there are more keys in the trace.
+   *
+   * @return <code>true</code> if {@link #next()} will return a key
+   */
+  public boolean hasNext() {
+    return hasNext;
+  }
+
+  /**
+   * Obtains the next key in the trace.
+   *
+   * @return the key
+   * @throws IOException when the trace can't be read
+   * @throws NoSuchElementException when the trace has ended
+   */
+  public long next() throws IOException {
+    if (!hasNext) {
+      throw new NoSuchElementException("The trace has ended");
+    }
+    long key = next;
+    advance();
+    return key;
+  }
+
+  /**
+   * Reads the key following the current one.
+   *
+   * @throws IOException when the trace can't be read
+   */
+  private void advance() throws IOException {
+    hasNext = false;
+    if (format == TraceFormat.TEXT) {
+      String line = reader.readLine();
+      while (line != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) {
+          next = parse(line.split("[\\s,]+", 2)[0]);
+          hasNext = true;
+          return;
+        }
+        line = reader.readLine();
+      }
+    } else {
+      try {
+        next = format == TraceFormat.BINARY ? input.readLong() : input.readInt() & 0xFFFFFFFFL;
+        hasNext = true;
+      } catch (EOFException e) {
+        //the end of the trace
+      }
+    }
+  }
+
+  /**
+   * Parses a key from a text trace, hashing keys that aren't numbers.
+   *
+   * @param token the key as it appears in the trace
+   * @return the key
+   */
+  private static long parse(String token) {
+    try {
+      return Long.parseLong(token);
+    } catch (NumberFormatException e) {
+      long hash = 1125899906842597L;
+      for (int i = 0; i < token.length(); i++) {
+        hash = 31 * hash + token.charAt(i);
+      }
+      return hash;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+    } else {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.trace;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+import org.jsr107.tck.integration.CacheLoaderClient;
+import org.jsr107.tck.integration.CacheLoaderServer;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recorded key access trace against a read-through {@link Cache},
+ * reporting the hit ratio over time, the rate of calls to the backend and the
+ * end-to-end latency of each access.
+ * <p/>
+ * Each key in the trace is read in order with {@link Cache#get(Object)}.  The
+ * {@link Cache} loads misses through a {@link CacheLoaderClient} from a
+ * {@link SimulatedBackendLoader}, so an access is a hit exactly when the
+ * backend isn't called.  The specification has no standard way to bound the
+ * size of a {@link Cache}, so the eviction being compared is whatever the
+ * implementation applies to the {@link Cache}, typically configured through
+ * the <code>cacheManagerUri</code> property.
+ * <p/>
+ * When the implementation's configuration already defines a {@link Cache}
+ * with the <code>cacheName</code>, it is used as it is, and left in place,
+ * reading cache-aside: each miss is loaded directly from the
+ * {@link SimulatedBackendLoader} and put, as the benchmark can't give it a
+ * {@link javax.cache.integration.CacheLoader}.  A miss then costs a get, a
+ * load and a put rather than a read-through, so its latencies aren't
+ * comparable with those of a created {@link Cache}, and the report says
+ * which was used.  Otherwise a read-through {@link Cache} is created for the
+ * run and destroyed after it.
+ */
+public class TraceReplayBenchmark {
+
+  private final File trace;
+  private final TraceFormat format;
+  private final String cacheName;
+  private final long warmupRequests;
+  private final long limit;
+  private final long window;
+  private final int valueSize;
+  private final long loaderLatency;
+  private final long loaderJitter;
+
+  /**
+   * Constructs a {@link TraceReplayBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public TraceReplayBenchmark() {
+    String traceProperty = BenchmarkProperties.getString("trace", null);
+    if (traceProperty == null) {
+      throw new IllegalArgumentException("Set " + BenchmarkProperties.PREFIX + "trace to the trace file to replay");
+    }
+    this.trace = new File(traceProperty);
+    String formatProperty = BenchmarkProperties.getString("format", null);
+    this.format = formatProperty == null
+        ? TraceFormat.forFileName(trace.getName())
+        : TraceFormat.valueOf(formatProperty.toUpperCase());
+    this.cacheName = BenchmarkProperties.getString("cacheName", "TraceReplayBenchmark");
+    this.warmupRequests = BenchmarkProperties.getLong("warmupRequests", 0);
+    this.limit = BenchmarkProperties.getLong("limit", Long.MAX_VALUE);
+    this.window = BenchmarkProperties.getLong("window", 100000);
+    this.valueSize = BenchmarkProperties.getInt("valueSize", 64);
+    this.loaderLatency = BenchmarkProperties.getLong("loaderLatency", 1000);
+    this.loaderJitter = BenchmarkProperties.getLong("loaderJitter", 0);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new TraceReplayBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+    Cache<Long, byte[]> cache = getExistingCache(cacheManager);
+    boolean created = cache == null;
+
+    SimulatedBackendLoader backend =
+        new SimulatedBackendLoader(loaderLatency, loaderJitter, TimeUnit.MICROSECONDS, valueSize);
+    CacheLoaderServer<Long, byte[]> cacheLoaderServer = null;
+    CacheLoaderClient<Long, byte[]> cacheLoaderClient = null;
+
+    TraceReader reader = new TraceReader(trace, format);
+    try {
+      if (created) {
+        cacheLoaderServer = new CacheLoaderServer<Long, byte[]>(10000, backend);
+        cacheLoaderServer.open();
+        cacheLoaderClient =
+            new CacheLoaderClient<Long, byte[]>(cacheLoaderServer.getInetAddress(), cacheLoaderServer.getPort());
+
+        MutableConfiguration<Long, byte[]> config = new MutableConfiguration<Long, byte[]>();
+        config.setTypes(Long.class, byte[].class);
+        config.setReadThrough(true);
+        config.setCacheLoaderFactory(FactoryBuilder.factoryOf(cacheLoaderClient));
+        cache = cacheManager.createCache(cacheName, config);
+      }
+
+      out.printf("Trace replay benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("trace=%s format=%s warmupRequests=%d valueSize=%d loaderLatency=%d us loaderJitter=%d us%n",
+          trace, format.name().toLowerCase(), warmupRequests, valueSize, loaderLatency, loaderJitter);
+      if (created) {
+        out.printf("cache %s: created, reading through a CacheLoader to the simulated backend%n", cacheName);
+      } else {
+        out.printf("cache %s: defined by the implementation's configuration and read cache-aside, so a miss is a get,%n"
+            + "a direct backend load and a put rather than a read-through; its latencies aren't comparable with a%n"
+            + "read-through run%n", cacheName);
+      }
+
+      long warmedUp = 0;
+      while (warmedUp < warmupRequests && reader.hasNext()) {
+        read(cache, backend, reader.next(), created);
+        warmedUp++;
+      }
+      if (warmupRequests > 0) {
+        out.printf("warmup: %d requests, %d backend calls%n", warmedUp, backend.getCallCount());
+      }
+
+      out.printf("%12s %10s %10s %12s  %s%n", "requests", "hit ratio", "cumulative", "backend/s", "latency");
+      LatencyHistogram hitLatency = new LatencyHistogram();
+      LatencyHistogram missLatency = new LatencyHistogram();
+      LatencyHistogram windowLatency = new LatencyHistogram();
+      long requests = 0;
+      long hits = 0;
+      long windowHits = 0;
+      long start = System.nanoTime();
+      long windowStart = start;
+      long windowCalls = backend.getCallCount();
+      long startCalls = windowCalls;
+
+      while (requests < limit && reader.hasNext()) {
+        long key = reader.next();
+        long calls = backend.getCallCount();
+
+        long accessStart = System.nanoTime();
+        read(cache, backend, key, created);
+        long latency = System.nanoTime() - accessStart;
+
+        windowLatency.record(latency);
+        if (backend.getCallCount() == calls) {
+          hits++;
+          windowHits++;
+          hitLatency.record(latency);
+        } else {
+          missLatency.record(latency);
+        }
+        requests++;
+
+        if (requests % window == 0 || !reader.hasNext() || requests == limit) {
+          long now = System.nanoTime();
+          long count = windowLatency.getCount();
+          out.printf("%12d %10.4f %10.4f %12.0f  %s%n", requests, (double) windowHits / count, (double) hits / requests,
+              (backend.getCallCount() - windowCalls) / ((now - windowStart) / 1e9),
+              windowLatency.summary(TimeUnit.MICROSECONDS));
+          windowLatency.reset();
+          windowHits = 0;
+          windowStart = now;
+          windowCalls = backend.getCallCount();
+        }
+      }
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      long backendCalls = backend.getCallCount() - startCalls;
+      out.printf("replayed %d requests in %.1f s (%.0f requests/s)%n", requests, seconds, requests / seconds);
+      out.printf("hit ratio: %.4f, backend calls: %d (%.0f/s, %.4f per request)%n",
+          requests == 0 ? 0 : (double) hits / requests, backendCalls, backendCalls / seconds,
+          requests == 0 ? 0 : (double) backendCalls / requests);
+      out.printf("hit latency: %s%n", hitLatency.summary(TimeUnit.MICROSECONDS));
+      out.printf("miss latency: %s%n", missLatency.summary(TimeUnit.MICROSECONDS));
+      out.printf("entries cached at end: %d%n", count(cache));
+    } finally {
+      reader.close();
+      if (created) {
+        cacheManager.destroyCache(cacheName);
+      }
+      if (cacheLoaderClient != null) {
+        cacheLoaderClient.close();
+      }
+      if (cacheLoaderServer != null) {
+        cacheLoaderServer.close();
+      }
+    }
+  }
+
+  /**
+   * Obtains the {@link Cache} named <code>cacheName</code> when the
+   * implementation's configuration already defines it.  An untyped
+   * {@link Cache} is used as it is, while one configured with specific types
+   * must have the {@link Long} keys and <code>byte[]</code> values replayed.
+   *
+   * @param cacheManager the {@link CacheManager}
+   * @return the {@link Cache}, or <code>null</code> if there is none
+   * @throws IllegalArgumentException when the {@link Cache} is configured
+   *                                  with other types
+   */
+  @SuppressWarnings("unchecked")
+  private Cache<Long, byte[]> getExistingCache(CacheManager cacheManager) {
+    try {
+      return (Cache<Long, byte[]>) (Cache<?, ?>) cacheManager.getCache(cacheName);
+    } catch (IllegalArgumentException e) {
+      //the cache is configured with specific types, so it can only be obtained with them
+      try {
+        return cacheManager.getCache(cacheName, Long.class, byte[].class);
+      } catch (ClassCastException mismatch) {
+        throw new IllegalArgumentException("The cache " + cacheName + " is configured with types other than the "
+            + "Long keys and byte[] values replayed", mismatch);
+      }
+    }
+  }
+
+  /**
+   * Reads a key, loading it from the backend when the {@link Cache} doesn't
+   * read through to it itself.
+   *
+   * @param cache       the {@link Cache}
+   * @param backend     the {@link SimulatedBackendLoader}
+   * @param key         the key
+   * @param readThrough whether the {@link Cache} reads through to the backend
+   */
+  private static void read(Cache<Long, byte[]> cache, SimulatedBackendLoader backend, long key, boolean readThrough) {
+    if (cache.get(key) == null && !readThrough) {
+      cache.put(key, backend.load(key));
+    }
+  }
+
+  /**
+   * Counts the entries in a {@link Cache}.
+   *
+   * @param cache the {@link Cache}
+   * @return the number of entries
+   */
+  private static long count(Cache<Long, byte[]> cache) {
+    long entries = 0;
+    for (Iterator<Cache.Entry<Long, byte[]>> iterator = cache.iterator(); iterator.hasNext(); iterator.next()) {
+      entries++;
+    }
+    return entries;
+  }
+}
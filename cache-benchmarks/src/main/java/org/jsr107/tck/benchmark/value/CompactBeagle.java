@@ -0,0 +1,54 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.value;
+
+import domain.Beagle;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * A {@link Beagle} that remains {@link java.io.Serializable} but writes the
+ * state it inherits from {@link domain.Dog}, which default serialization
+ * would lose, as packed primitives.
+ */
+public class CompactBeagle extends Beagle {
+
+  /**
+   * The serialVersionUID required for {@link java.io.Serializable}.
+   */
+  public static final long serialVersionUID = 202610181212L;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CompactBeagle getThis() {
+    return this;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    DogSerialization.write(this, out);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    DogSerialization.read(this, in);
+  }
+}
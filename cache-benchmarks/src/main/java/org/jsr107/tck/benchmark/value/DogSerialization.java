@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.value;
+
+import domain.Dog;
+import domain.Identifier;
+import domain.Sex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Hand-written serialization of the state of a {@link Dog}, which isn't
+ * {@link java.io.Serializable} itself, so that its {@link java.io.Serializable}
+ * subclasses can preserve that state compactly.
+ */
+final class DogSerialization {
+
+  private DogSerialization() {
+    //utility class
+  }
+
+  /**
+   * Writes the state of a {@link Dog}.
+   *
+   * @param dog the {@link Dog}
+   * @param out the {@link DataOutput} to which to write
+   * @throws IOException when writing fails
+   */
+  static void write(Dog dog, DataOutput out) throws IOException {
+    writeString(dog.getName() == null ? null : dog.getName().toString(), out);
+    writeString(dog.getColor(), out);
+    out.writeInt(dog.getWeight());
+    out.writeLong(dog.getLengthInCm());
+    out.writeLong(dog.getHeight());
+    out.writeByte(dog.getSex() == null ? -1 : dog.getSex().ordinal());
+    out.writeBoolean(dog.isNeutered());
+  }
+
+  /**
+   * Reads the state of a {@link Dog} written by {@link #write(Dog, DataOutput)}.
+   *
+   * @param dog the {@link Dog} whose state to set
+   * @param in  the {@link DataInput} from which to read
+   * @throws IOException when reading fails
+   */
+  static void read(Dog dog, DataInput in) throws IOException {
+    String name = readString(in);
+    dog.name(name == null ? null : new Identifier(name))
+        .color(readString(in))
+        .weight(in.readInt())
+        .length(in.readLong())
+        .height(in.readLong());
+
+    byte sex = in.readByte();
+    dog.sex(sex < 0 ? null : Sex.values()[sex])
+        .neutered(in.readBoolean());
+  }
+
+  private static void writeString(String string, DataOutput out) throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
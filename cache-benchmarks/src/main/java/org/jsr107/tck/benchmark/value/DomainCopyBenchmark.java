@@ -0,0 +1,253 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.value;
+
+import domain.Identifier;
+import domain.Identifier2;
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of copying the test domain, using {@link Identifier}s as
+ * keys and each {@link DomainValue} as values, in a {@link Cache} that stores
+ * entries by value.
+ * <p/>
+ * {@link #roundTrip()} serializes and deserializes a value as a copier based
+ * on Java serialization does, isolating the cost of the copy from that of the
+ * {@link Cache}, while {@link #put()} and {@link #get()} measure the
+ * {@link Cache}.  {@link #main(String[])} first reports the serialized size of
+ * each value and whether it survives a copy intact, and then runs the
+ * benchmarks.
+ * <p/>
+ * {@link Identifier2} isn't {@link java.io.Serializable}, so it can only be
+ * used in a {@link Cache} that stores entries by reference and is reported
+ * as such.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DomainCopyBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "DomainCopyBenchmark";
+
+  /**
+   * The number of entries, which are used in turn.
+   */
+  private static final int ENTRIES = 1024;
+
+  /**
+   * The kind of value to copy.
+   */
+  @Param({"BEAGLE", "EXTERNALIZABLE_BEAGLE", "COMPACT_BEAGLE",
+      "ROUGH_COATED_COLLIE", "EXTERNALIZABLE_ROUGH_COATED_COLLIE", "BLOG"})
+  public DomainValue value;
+
+  private CacheManager cacheManager;
+  private Cache<Identifier, Object> cache;
+  private Identifier[] keys;
+  private Object[] values;
+  private int next;
+
+  /**
+   * Creates and loads the {@link Cache}.
+   */
+  @Setup(Level.Trial)
+  public void createCache() {
+    cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    MutableConfiguration<Identifier, Object> config = new MutableConfiguration<Identifier, Object>();
+    config.setTypes(Identifier.class, Object.class);
+    config.setStoreByValue(true);
+    cache = cacheManager.createCache(CACHE_NAME, config);
+
+    keys = new Identifier[ENTRIES];
+    values = new Object[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      keys[i] = new Identifier("key-" + i);
+      values[i] = value.create(i);
+      cache.put(keys[i], values[i]);
+    }
+  }
+
+  /**
+   * Destroys the {@link Cache}.
+   */
+  @TearDown(Level.Trial)
+  public void destroyCache() {
+    cacheManager.destroyCache(CACHE_NAME);
+  }
+
+  private int nextIndex() {
+    next = (next + 1) % ENTRIES;
+    return next;
+  }
+
+  /**
+   * Copies a value with Java serialization.
+   *
+   * @return the copy
+   * @throws Exception when the value can't be copied
+   */
+  @Benchmark
+  public Object roundTrip() throws Exception {
+    return copy(values[nextIndex()]);
+  }
+
+  /**
+   * Puts a value.
+   */
+  @Benchmark
+  public void put() {
+    int index = nextIndex();
+    cache.put(keys[index], values[index]);
+  }
+
+  /**
+   * Gets a value.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public Object get() {
+    return cache.get(keys[nextIndex()]);
+  }
+
+  /**
+   * Copies an object by serializing and deserializing it.
+   *
+   * @param object the object to copy
+   * @return the copy
+   * @throws IOException            when the object can't be serialized
+   * @throws ClassNotFoundException when the copy can't be deserialized
+   */
+  static Object copy(Object object) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialize(object)));
+    try {
+      return ois.readObject();
+    } finally {
+      ois.close();
+    }
+  }
+
+  /**
+   * Serializes an object.
+   *
+   * @param object the object to serialize
+   * @return the serialized form
+   * @throws IOException when the object can't be serialized
+   */
+  static byte[] serialize(Object object) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    try {
+      oos.writeObject(object);
+    } finally {
+      oos.close();
+    }
+    return bos.toByteArray();
+  }
+
+  /**
+   * Reports the serialized size of each key and value and whether a copy is
+   * equal to the original, then runs the benchmarks.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+
+    out.printf("%-36s %-15s %10s %8s%n", "type", "serialization", "bytes", "intact");
+    report(out, "Identifier (key)", "serializable", new Identifier("key-1"));
+    report(out, "Identifier2 (key)", "serializable", new Identifier2("key-1"));
+    for (DomainValue domainValue : DomainValue.values()) {
+      report(out, domainValue.name().toLowerCase(), domainValue.getSerialization(), domainValue.create(1));
+    }
+
+    new Runner(new OptionsBuilder().include(DomainCopyBenchmark.class.getName()).build()).run();
+  }
+
+  /**
+   * Determines whether a copy is equal to the original, using
+   * {@link Object#equals(Object)} when the class overrides it and otherwise
+   * comparing the serialized forms.
+   *
+   * @param original the original
+   * @param copy     the copy
+   * @return <code>true</code> if the copy is equal to the original
+   * @throws Exception when the objects can't be compared
+   */
+  private static boolean isIntact(Object original, Object copy) throws Exception {
+    if (original.getClass().getMethod("equals", Object.class).getDeclaringClass() != Object.class) {
+      return original.equals(copy);
+    } else {
+      return Arrays.equals(serialize(original), serialize(copy));
+    }
+  }
+
+  /**
+   * Reports the serialized size of an object and whether a copy is equal to
+   * the original.
+   *
+   * @param out           the {@link PrintStream} on which to report
+   * @param name          the name of the object
+   * @param serialization how the object is serialized
+   * @param object        the object
+   * @throws Exception when the object can't be copied
+   */
+  private static void report(PrintStream out, String name, String serialization, Object object) throws Exception {
+    try {
+      out.printf("%-36s %-15s %10d %8s%n", name, serialization, serialize(object).length, isIntact(object, copy(object)));
+    } catch (NotSerializableException e) {
+      out.printf("%-36s %-15s %10s %8s%n", name, "none", "-", "-");
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.value;
+
+import domain.Beagle;
+import domain.Blog;
+import domain.Dog;
+import domain.Identifier;
+import domain.RoughCoatedCollie;
+import domain.Sex;
+
+/**
+ * The values from the test domain, and variants of them that serialize
+ * differently, that are copied by the {@link DomainCopyBenchmark}.
+ */
+public enum DomainValue {
+
+  /**
+   * A {@link Beagle} using default serialization, which loses the state it
+   * inherits from {@link Dog} as that isn't {@link java.io.Serializable}.
+   */
+  BEAGLE("serializable") {
+    @Override
+    Object create(int index) {
+      return populate(new Beagle(), index);
+    }
+  },
+
+  /**
+   * An {@link ExternalizableBeagle}.
+   */
+  EXTERNALIZABLE_BEAGLE("externalizable") {
+    @Override
+    Object create(int index) {
+      return populate(new ExternalizableBeagle(), index);
+    }
+  },
+
+  /**
+   * A {@link CompactBeagle}.
+   */
+  COMPACT_BEAGLE("compact") {
+    @Override
+    Object create(int index) {
+      return populate(new CompactBeagle(), index);
+    }
+  },
+
+  /**
+   * A {@link RoughCoatedCollie} using default serialization, which loses the
+   * state it inherits from {@link Dog}.
+   */
+  ROUGH_COATED_COLLIE("serializable") {
+    @Override
+    Object create(int index) {
+      return populate(new RoughCoatedCollie(), index);
+    }
+  },
+
+  /**
+   * An {@link ExternalizableRoughCoatedCollie}.
+   */
+  EXTERNALIZABLE_ROUGH_COATED_COLLIE("externalizable") {
+    @Override
+    Object create(int index) {
+      return populate(new ExternalizableRoughCoatedCollie(), index);
+    }
+  },
+
+  /**
+   * A {@link Blog} using default serialization.
+   */
+  BLOG("serializable") {
+    @Override
+    Object create(int index) {
+      StringBuilder body = new StringBuilder();
+      while (body.length() < 1000) {
+        body.append("The quick brown fox jumps over the lazy dog. ");
+      }
+      return new Blog("Entry " + index, body.toString());
+    }
+  };
+
+  private final String serialization;
+
+  DomainValue(String serialization) {
+    this.serialization = serialization;
+  }
+
+  /**
+   * Obtains how the value is serialized.
+   *
+   * @return <code>serializable</code>, <code>externalizable</code> or
+   *         <code>compact</code>
+   */
+  public String getSerialization() {
+    return serialization;
+  }
+
+  /**
+   * Creates a value.
+   *
+   * @param index distinguishes the value from others of the same kind
+   * @return a new value
+   */
+  abstract Object create(int index);
+
+  /**
+   * Gives a {@link Dog} typical state.
+   *
+   * @param dog   the {@link Dog}
+   * @param index distinguishes the {@link Dog} from others
+   * @return the {@link Dog}
+   */
+  private static Dog populate(Dog dog, int index) {
+    return dog.name(new Identifier("dog-" + index))
+        .color("tricolour")
+        .weight(12)
+        .length(80)
+        .height(38)
+        .sex(index % 2 == 0 ? Sex.FEMALE : Sex.MALE)
+        .neutered(true);
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.value;
+
+import domain.Beagle;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * A {@link Beagle} that is {@link Externalizable}, writing all of its state
+ * without the class descriptors of its superclasses.
+ */
+public class ExternalizableBeagle extends Beagle implements Externalizable {
+
+  /**
+   * The serialVersionUID required for {@link java.io.Serializable}.
+   */
+  public static final long serialVersionUID = 202610181210L;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ExternalizableBeagle getThis() {
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    DogSerialization.write(this, out);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void readExternal(ObjectInput in) throws IOException {
+    DogSerialization.read(this, in);
+  }
+}
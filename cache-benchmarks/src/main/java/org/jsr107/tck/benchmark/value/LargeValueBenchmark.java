@@ -0,0 +1,275 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.value;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.JmhSupport;
+import org.jsr107.tck.processor.SetEntryProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Cache#get}, {@link Cache#put}, {@link Cache#getAndPut} and
+ * {@link Cache#invoke} with a {@link SetEntryProcessor} on values from 1 KB
+ * to 16 MB, with the {@link Cache} storing entries by value and by
+ * reference.
+ * <p/>
+ * Values are ASCII {@link String}s, so a value of <code>valueSize</code>
+ * bytes is <code>valueSize</code> characters long and serializes to about
+ * <code>valueSize</code> bytes.  Run with the JMH <code>gc</code> profiler to
+ * see the bytes allocated per operation; {@link #main(String[])} does so and
+ * reports the allocation as a multiple of the serialized value, being an
+ * estimate of how many times each operation copied the value.  On JVMs
+ * without compact strings each copy of a {@link String} allocates two bytes
+ * per character, counting as two copies.
+ * <p/>
+ * The {@link SetEntryProcessor} sets a value created before the benchmark
+ * and allocates nothing of its own, so the allocation of
+ * <code>invoke</code> is that of the {@link Cache}, including the copies of
+ * the processor and its value, and is comparable with that of
+ * <code>put</code> and <code>get</code>.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LargeValueBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "LargeValueBenchmark";
+
+  /**
+   * The size of each value in bytes.
+   */
+  @Param({"1024", "65536", "1048576", "16777216"})
+  public int valueSize;
+
+  /**
+   * Whether the {@link Cache} stores entries by value.
+   */
+  @Param({"true", "false"})
+  public boolean storeByValue;
+
+  /**
+   * The number of entries, which are used in turn.
+   */
+  @Param({"8"})
+  public int entries;
+
+  private CacheManager cacheManager;
+  private Cache<Long, String> cache;
+  private String value;
+  private SetEntryProcessor<Long, String> processor;
+
+  /**
+   * Creates and loads the {@link Cache}.
+   */
+  @Setup(Level.Trial)
+  public void createCache() {
+    cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    MutableConfiguration<Long, String> config = new MutableConfiguration<Long, String>();
+    config.setTypes(Long.class, String.class);
+    config.setStoreByValue(storeByValue);
+    cache = cacheManager.createCache(CACHE_NAME, config);
+
+    value = createValue(valueSize);
+    //the processor sets the precomputed value, so that it doesn't allocate a value itself
+    processor = new SetEntryProcessor<Long, String>(value);
+
+    for (long key = 0; key < entries; key++) {
+      cache.put(key, value);
+    }
+  }
+
+  /**
+   * Destroys the {@link Cache}.
+   */
+  @TearDown(Level.Trial)
+  public void destroyCache() {
+    cacheManager.destroyCache(CACHE_NAME);
+  }
+
+  /**
+   * Chooses the entries used by a thread, one after another.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private long next;
+    private int entries;
+
+    /**
+     * Initializes the {@link Cursor}.
+     *
+     * @param benchmark the {@link LargeValueBenchmark}
+     */
+    @Setup(Level.Trial)
+    public void setUp(LargeValueBenchmark benchmark) {
+      entries = benchmark.entries;
+    }
+
+    /**
+     * Obtains the key of the next entry.
+     *
+     * @return a key
+     */
+    long nextKey() {
+      long key = next;
+      next = (next + 1) % entries;
+      return key;
+    }
+  }
+
+  /**
+   * Gets a value.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return the value
+   */
+  @Benchmark
+  public String get(Cursor cursor) {
+    return cache.get(cursor.nextKey());
+  }
+
+  /**
+   * Puts a value.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   */
+  @Benchmark
+  public void put(Cursor cursor) {
+    cache.put(cursor.nextKey(), value);
+  }
+
+  /**
+   * Puts a value, returning the value it replaced.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return the previous value
+   */
+  @Benchmark
+  public String getAndPut(Cursor cursor) {
+    return cache.getAndPut(cursor.nextKey(), value);
+  }
+
+  /**
+   * Sets a value with an entry processor.
+   *
+   * @param cursor the {@link Cursor} of the thread
+   * @return the value that was set
+   */
+  @Benchmark
+  public String invoke(Cursor cursor) {
+    return cache.invoke(cursor.nextKey(), processor);
+  }
+
+  /**
+   * Creates an ASCII value.
+   *
+   * @param size the length of the value
+   * @return the value
+   */
+  static String createValue(int size) {
+    char[] characters = new char[size];
+    for (int i = 0; i < size; i++) {
+      characters[i] = (char) ('a' + i % 26);
+    }
+    return new String(characters);
+  }
+
+  /**
+   * Determines the serialized size of a value.
+   *
+   * @param value the value
+   * @return the number of bytes
+   * @throws IOException when the value can't be serialized
+   */
+  static long serializedSize(Object value) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(value);
+    oos.close();
+    return bos.size();
+  }
+
+  /**
+   * Runs the benchmark with the JMH <code>gc</code> profiler, reporting the
+   * latency and allocation of each operation and the number of times it
+   * copied the value.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    PrintStream out = System.out;
+    ChainedOptionsBuilder options = new OptionsBuilder()
+        .include(LargeValueBenchmark.class.getName() + "." + BenchmarkProperties.getString("operations", ".*"))
+        .addProfiler(GCProfiler.class);
+    Collection<RunResult> results =
+        new Runner(JmhSupport.withParameters(options, "valueSize", "storeByValue", "entries").build()).run();
+
+    out.printf("%-10s %10s %-9s %12s %12s %12s %16s %8s%n",
+        "operation", "valueSize", "byValue", "p50 us", "p99 us", "max us", "alloc B/op", "copies");
+    for (RunResult result : results) {
+      BenchmarkParams params = result.getParams();
+      int valueSize = Integer.parseInt(params.getParam("valueSize"));
+      Statistics latency = result.getPrimaryResult().getStatistics();
+      double allocated = JmhSupport.getAllocatedPerOperation(result);
+
+      out.printf("%-10s %10d %-9s %12.1f %12.1f %12.1f %16.0f %8.2f%n",
+          JmhSupport.getMethodName(result), valueSize, params.getParam("storeByValue"),
+          latency.getPercentile(50), latency.getPercentile(99), latency.getMax(),
+          allocated, allocated / serializedSize(createValue(valueSize)));
+    }
+    out.printf("copies is the allocation per operation as a multiple of the serialized value%n");
+  }
+}
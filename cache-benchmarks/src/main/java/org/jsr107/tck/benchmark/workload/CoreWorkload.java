@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+/**
+ * The core workloads of the Yahoo! Cloud Serving Benchmark that can be
+ * expressed with the {@link javax.cache.Cache} API.
+ * <p/>
+ * Workload E, short range scans, is omitted as a {@link javax.cache.Cache} has
+ * no ordered scan.
+ */
+public enum CoreWorkload {
+
+  /**
+   * Update heavy: half reads and half updates, such as a session store.
+   */
+  A("read=0.5,update=0.5", KeyDistribution.ZIPFIAN),
+
+  /**
+   * Read mostly: 95% reads, such as photo tagging.
+   */
+  B("read=0.95,update=0.05", KeyDistribution.ZIPFIAN),
+
+  /**
+   * Read only, such as a user profile cache.
+   */
+  C("read=1", KeyDistribution.ZIPFIAN),
+
+  /**
+   * Read latest: 95% reads of mostly recent inserts, such as status updates.
+   */
+  D("read=0.95,insert=0.05", KeyDistribution.LATEST),
+
+  /**
+   * Read-modify-write: half reads and half read-modify-writes, such as a user
+   * database.
+   */
+  F("read=0.5,read_modify_write=0.5", KeyDistribution.ZIPFIAN);
+
+  private final String mix;
+  private final KeyDistribution distribution;
+
+  CoreWorkload(String mix, KeyDistribution distribution) {
+    this.mix = mix;
+    this.distribution = distribution;
+  }
+
+  /**
+   * Obtains the {@link OperationMix} of the workload.
+   *
+   * @return the {@link OperationMix}
+   */
+  public OperationMix<Operation> getMix() {
+    return OperationMix.parse(mix);
+  }
+
+  /**
+   * Obtains the {@link KeyDistribution} of the workload.
+   *
+   * @return the {@link KeyDistribution}
+   */
+  public KeyDistribution getDistribution() {
+    return distribution;
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+import org.jsr107.tck.benchmark.support.ZipfDistribution;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the keys of existing records according to a {@link KeyDistribution}.
+ * <p/>
+ * Records are numbered from zero and the number of records grows as a workload
+ * inserts them, so choices are made over the records inserted so far.  A
+ * {@link KeyChooser} is safe to share between threads provided each uses its
+ * own {@link Random}.
+ */
+public final class KeyChooser {
+
+  /**
+   * The FNV-1a offset basis, used to scatter Zipfian ranks across the keys.
+   */
+  private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+  /**
+   * The FNV-1a prime.
+   */
+  private static final long FNV_PRIME = 0x100000001B3L;
+
+  private final KeyDistribution distribution;
+  private final AtomicLong records;
+  private final ZipfDistribution zipf;
+  private final double hotSetFraction;
+  private final double hotOperationFraction;
+
+  /**
+   * Constructs a {@link KeyChooser}.
+   *
+   * @param distribution         the {@link KeyDistribution}
+   * @param records              the number of records inserted so far, which
+   *                             the workload increments as it inserts
+   * @param skew                 the skew of the Zipfian distributions
+   * @param hotSetFraction       the fraction of records that are hot, for
+   *                             {@link KeyDistribution#HOTSPOT}
+   * @param hotOperationFraction the fraction of operations that go to hot
+   *                             records, for {@link KeyDistribution#HOTSPOT}
+   */
+  public KeyChooser(KeyDistribution distribution, AtomicLong records, double skew,
+                    double hotSetFraction, double hotOperationFraction) {
+    if (hotSetFraction <= 0 || hotSetFraction >= 1 || hotOperationFraction < 0 || hotOperationFraction > 1) {
+      throw new IllegalArgumentException("Invalid hotspot fractions " + hotSetFraction + " and " + hotOperationFraction);
+    }
+    this.distribution = distribution;
+    this.records = records;
+    this.hotSetFraction = hotSetFraction;
+    this.hotOperationFraction = hotOperationFraction;
+
+    //the zipfian distributions are computed over the initial records; inserts extend the key space beyond
+    //them only for LATEST, which chooses by recency
+    this.zipf = distribution == KeyDistribution.ZIPFIAN || distribution == KeyDistribution.LATEST
+        ? new ZipfDistribution((int) Math.min(Integer.MAX_VALUE, Math.max(1, records.get())), skew)
+        : null;
+  }
+
+  /**
+   * Chooses the key of an existing record.
+   *
+   * @param random the {@link Random} from which to choose
+   * @return a key between zero and the number of records inserted so far
+   */
+  public long next(Random random) {
+    long count = records.get();
+    switch (distribution) {
+      case UNIFORM:
+        return uniform(random, 0, count);
+
+      case ZIPFIAN:
+        return scatter(zipf.next(random)) % Math.min(count, zipf.getItems());
+
+      case LATEST:
+        return Math.max(0, count - 1 - zipf.next(random));
+
+      default:
+        long hotRecords = Math.max(1, (long) (count * hotSetFraction));
+        return random.nextDouble() < hotOperationFraction || hotRecords >= count
+            ? uniform(random, 0, hotRecords)
+            : uniform(random, hotRecords, count);
+    }
+  }
+
+  /**
+   * Obtains the {@link KeyDistribution}.
+   *
+   * @return the {@link KeyDistribution}
+   */
+  public KeyDistribution getDistribution() {
+    return distribution;
+  }
+
+  /**
+   * Chooses a number uniformly from a range.
+   *
+   * @param random the {@link Random} from which to choose
+   * @param from   the inclusive lower bound
+   * @param to     the exclusive upper bound
+   * @return a number in the range
+   */
+  private static long uniform(Random random, long from, long to) {
+    return from + (long) (random.nextDouble() * (to - from));
+  }
+
+  /**
+   * Scatters a Zipfian rank across the key space by hashing it, so that the
+   * popular records aren't neighbours in an implementation that orders or
+   * partitions its keys.
+   *
+   * @param rank the rank
+   * @return a non-negative hash of the rank
+   */
+  private static long scatter(long rank) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < 8; i++) {
+      hash ^= rank & 0xFF;
+      hash *= FNV_PRIME;
+      rank >>= 8;
+    }
+    return hash & Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+/**
+ * The distributions from which a workload chooses the keys of existing
+ * records.
+ *
+ * @see KeyChooser
+ */
+public enum KeyDistribution {
+
+  /**
+   * Every record is equally likely to be chosen.
+   */
+  UNIFORM,
+
+  /**
+   * Records are chosen with a Zipfian distribution, with the popular records
+   * scattered across the key space rather than clustered at its start.
+   */
+  ZIPFIAN,
+
+  /**
+   * The most recently inserted records are the most popular, following a
+   * Zipfian distribution of recency.
+   */
+  LATEST,
+
+  /**
+   * A fraction of the operations go to a fraction of the records, each chosen
+   * uniformly, with the rest going to the other records.
+   */
+  HOTSPOT
+}
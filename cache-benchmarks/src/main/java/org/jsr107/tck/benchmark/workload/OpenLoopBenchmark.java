@@ -0,0 +1,419 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+import org.jsr107.tck.integration.CacheLoaderClient;
+import org.jsr107.tck.integration.CacheLoaderServer;
+import org.jsr107.tck.integration.CacheWriterClient;
+import org.jsr107.tck.integration.CacheWriterServer;
+import org.jsr107.tck.integration.RecordingCacheLoader;
+import org.jsr107.tck.integration.RecordingCacheWriter;
+import org.jsr107.tck.processor.IncrementEntryProcessor;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link Cache} open loop, issuing operations at a fixed target rate
+ * regardless of how long each takes, and reports latency percentiles
+ * corrected for coordinated omission.
+ * <p/>
+ * A closed loop benchmark waits for each operation before issuing the next,
+ * so when an implementation stalls it simply issues fewer operations and the
+ * stall is recorded once rather than for every operation that would have
+ * been delayed by it.  Here each thread follows a schedule of intended start
+ * times and the latency of an operation is measured from its intended start,
+ * so a thread that falls behind records the time the operations it issues
+ * late spent waiting.  The time from the actual start, the service time, is
+ * reported alongside for comparison.
+ * <p/>
+ * The {@link Cache} reads through to a {@link RecordingCacheLoader} and
+ * writes through to a {@link RecordingCacheWriter}, both reached through the
+ * TCK client/server fixtures.
+ */
+public class OpenLoopBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "OpenLoopBenchmark";
+
+  /**
+   * How long before an intended start time a waiting thread stops parking and
+   * spins, as parking may oversleep.
+   */
+  private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  /**
+   * The operations the benchmark issues.
+   */
+  public enum OpenLoopOperation {
+    GET, GET_ALL, PUT, PUT_ALL, REMOVE, REPLACE, INVOKE
+  }
+
+  private final OperationMix<OpenLoopOperation> mix;
+  private final long rate;
+  private final int threads;
+  private final int entries;
+  private final int batchSize;
+  private final long warmup;
+  private final long duration;
+  private final long drainTimeout;
+
+  /**
+   * Constructs an {@link OpenLoopBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public OpenLoopBenchmark() {
+    this.mix = OperationMix.parse(OpenLoopOperation.class, BenchmarkProperties.getString("mix",
+        "get=0.6,get_all=0.05,put=0.15,put_all=0.05,remove=0.05,replace=0.05,invoke=0.05"));
+    this.rate = BenchmarkProperties.getLong("rate", 10000);
+    this.threads = BenchmarkProperties.getInt("threads", 4);
+    this.entries = BenchmarkProperties.getInt("entries", 100000);
+    this.batchSize = Math.min(BenchmarkProperties.getInt("batchSize", 10), entries);
+    this.warmup = BenchmarkProperties.getLong("warmup", 10);
+    this.duration = BenchmarkProperties.getLong("duration", 60);
+    this.drainTimeout = BenchmarkProperties.getLong("drainTimeout", 10);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new OpenLoopBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    RecordingCacheLoader<Long> recordingCacheLoader = new RecordingCacheLoader<Long>();
+    CacheLoaderServer<Long, Long> cacheLoaderServer = new CacheLoaderServer<Long, Long>(10000, recordingCacheLoader);
+    cacheLoaderServer.open();
+    CacheLoaderClient<Long, Long> cacheLoaderClient =
+        new CacheLoaderClient<Long, Long>(cacheLoaderServer.getInetAddress(), cacheLoaderServer.getPort());
+
+    RecordingCacheWriter<Long, Long> recordingCacheWriter = new RecordingCacheWriter<Long, Long>();
+    CacheWriterServer<Long, Long> cacheWriterServer = new CacheWriterServer<Long, Long>(10001, recordingCacheWriter);
+    cacheWriterServer.open();
+    CacheWriterClient<Long, Long> cacheWriterClient =
+        new CacheWriterClient<Long, Long>(cacheWriterServer.getInetAddress(), cacheWriterServer.getPort());
+
+    try {
+      MutableConfiguration<Long, Long> config = new MutableConfiguration<Long, Long>();
+      config.setTypes(Long.class, Long.class);
+      config.setReadThrough(true);
+      config.setCacheLoaderFactory(FactoryBuilder.factoryOf(cacheLoaderClient));
+      config.setWriteThrough(true);
+      config.setCacheWriterFactory(FactoryBuilder.factoryOf(cacheWriterClient));
+      Cache<Long, Long> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      out.printf("Open loop benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("rate=%d ops/s threads=%d mix=%s entries=%d batchSize=%d warmup=%d s duration=%d s%n",
+          rate, threads, mix, entries, batchSize, warmup, duration);
+
+      Map<Long, Long> batch = new HashMap<Long, Long>();
+      for (long key = 0; key < entries; key++) {
+        batch.put(key, key);
+        if (batch.size() == 1000 || key == entries - 1) {
+          cache.putAll(batch);
+          batch.clear();
+        }
+      }
+      long loads = recordingCacheLoader.getLoadCount();
+      long writes = recordingCacheWriter.getWriteCount();
+      long deletes = recordingCacheWriter.getDeleteCount();
+
+      long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+      long measureStart = start + TimeUnit.SECONDS.toNanos(warmup);
+      long end = measureStart + TimeUnit.SECONDS.toNanos(duration);
+      long interval = (long) (threads * 1e9 / rate);
+
+      List<Driver> drivers = new ArrayList<Driver>();
+      List<Thread> driverThreads = new ArrayList<Thread>();
+      for (int i = 0; i < threads; i++) {
+        Driver driver = new Driver(cache, i, start + interval * i / threads, interval, measureStart, end,
+            end + TimeUnit.SECONDS.toNanos(drainTimeout));
+        Thread thread = new Thread(driver, "OpenLoopBenchmark-driver-" + i);
+        thread.setDaemon(true);
+        drivers.add(driver);
+        driverThreads.add(thread);
+        thread.start();
+      }
+      //drivers stop issuing operations at the deadline, so any still running well after it are stuck in an operation
+      long stuckAfter = System.currentTimeMillis()
+          + TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()) + 2 * TimeUnit.SECONDS.toMillis(drainTimeout);
+      int stuck = 0;
+      for (Thread thread : driverThreads) {
+        thread.join(Math.max(1, stuckAfter - System.currentTimeMillis()));
+        if (thread.isAlive()) {
+          stuck++;
+        }
+      }
+      if (stuck > 0) {
+        throw new IllegalStateException(stuck + " of " + threads + " drivers are still waiting for an operation "
+            + drainTimeout + " s after the deadline; the implementation may have deadlocked");
+      }
+      for (Driver driver : drivers) {
+        if (driver.failure != null) {
+          throw new IllegalStateException("An operation failed", driver.failure);
+        }
+      }
+
+      Map<OpenLoopOperation, LatencyHistogram> latencies = histograms();
+      Map<OpenLoopOperation, LatencyHistogram> serviceTimes = histograms();
+      LatencyHistogram overall = new LatencyHistogram();
+      long unissued = 0;
+      long maxLag = 0;
+      for (Driver driver : drivers) {
+        for (OpenLoopOperation operation : OpenLoopOperation.values()) {
+          latencies.get(operation).add(driver.latencies.get(operation));
+          serviceTimes.get(operation).add(driver.serviceTimes.get(operation));
+          overall.add(driver.latencies.get(operation));
+        }
+        unissued += driver.unissued;
+        maxLag = Math.max(maxLag, driver.maxLag);
+      }
+
+      out.printf("achieved %.0f of %d ops/s, %d scheduled operations not issued, maximum schedule lag %.1f ms%n",
+          overall.getCount() / (double) duration, rate, unissued, maxLag / 1e6);
+      out.printf("backend: %d loads, %d writes, %d deletes%n", recordingCacheLoader.getLoadCount() - loads,
+          recordingCacheWriter.getWriteCount() - writes, recordingCacheWriter.getDeleteCount() - deletes);
+      out.printf("%-10s %10s %-8s %10s %10s %10s %10s %10s%n",
+          "operation", "count", "latency", "p50", "p99", "p99.9", "p99.99", "max");
+      for (OpenLoopOperation operation : OpenLoopOperation.values()) {
+        if (mix.includes(operation)) {
+          LatencyHistogram latency = latencies.get(operation);
+          out.printf("%-10s %10d %-8s %s%n", operation.name().toLowerCase(), latency.getCount(), "response",
+              percentiles(latency));
+          out.printf("%-10s %10s %-8s %s%n", "", "", "service", percentiles(serviceTimes.get(operation)));
+        }
+      }
+      out.printf("%-10s %10d %-8s %s%n", "overall", overall.getCount(), "response", percentiles(overall));
+      out.printf("latencies in microseconds; response time is measured from the intended start, service time from the "
+          + "actual start%n");
+      if (unissued > 0) {
+        out.printf("the implementation could not sustain the target rate, so response times depend on the run length%n");
+      }
+    } finally {
+      cacheManager.destroyCache(CACHE_NAME);
+      cacheLoaderClient.close();
+      cacheLoaderServer.close();
+      cacheWriterClient.close();
+      cacheWriterServer.close();
+    }
+  }
+
+  /**
+   * Creates a {@link LatencyHistogram} for each {@link OpenLoopOperation}.
+   *
+   * @return the {@link LatencyHistogram}s by {@link OpenLoopOperation}
+   */
+  private static Map<OpenLoopOperation, LatencyHistogram> histograms() {
+    Map<OpenLoopOperation, LatencyHistogram> histograms =
+        new EnumMap<OpenLoopOperation, LatencyHistogram>(OpenLoopOperation.class);
+    for (OpenLoopOperation operation : OpenLoopOperation.values()) {
+      histograms.put(operation, new LatencyHistogram());
+    }
+    return histograms;
+  }
+
+  /**
+   * Formats the reported percentiles of a {@link LatencyHistogram}.
+   *
+   * @param latency the {@link LatencyHistogram}
+   * @return the percentiles in microseconds
+   */
+  private static String percentiles(LatencyHistogram latency) {
+    return String.format("%10.1f %10.1f %10.1f %10.1f %10.1f",
+        LatencyHistogram.convert(latency.getValueAtPercentile(50), TimeUnit.MICROSECONDS),
+        LatencyHistogram.convert(latency.getValueAtPercentile(99), TimeUnit.MICROSECONDS),
+        LatencyHistogram.convert(latency.getValueAtPercentile(99.9), TimeUnit.MICROSECONDS),
+        LatencyHistogram.convert(latency.getValueAtPercentile(99.99), TimeUnit.MICROSECONDS),
+        LatencyHistogram.convert(latency.getMax(), TimeUnit.MICROSECONDS));
+  }
+
+  /**
+   * Issues operations on a fixed schedule, recording the latency of those
+   * scheduled during the measurement period.
+   */
+  private class Driver implements Runnable {
+
+    private final Cache<Long, Long> cache;
+    private final Random random;
+    private final long first;
+    private final long interval;
+    private final long measureStart;
+    private final long end;
+    private final long deadline;
+
+    private final IncrementEntryProcessor<Long> incrementEntryProcessor = new IncrementEntryProcessor<Long>(1);
+    private final Map<OpenLoopOperation, LatencyHistogram> latencies = histograms();
+    private final Map<OpenLoopOperation, LatencyHistogram> serviceTimes = histograms();
+
+    /**
+     * The number of operations scheduled before the end of the measurement
+     * period that weren't issued before the deadline.
+     */
+    private long unissued;
+
+    /**
+     * The longest an operation started after its intended start time.
+     */
+    private long maxLag;
+
+    /**
+     * The exception that stopped the {@link Driver}, if any.
+     */
+    private RuntimeException failure;
+
+    /**
+     * Constructs a {@link Driver}.
+     *
+     * @param cache        the {@link Cache} to operate on
+     * @param seed         the seed for choosing operations and keys
+     * @param first        the intended start time of the first operation
+     * @param interval     the time between intended start times
+     * @param measureStart the time from which operations are measured
+     * @param end          the time from which no operations are scheduled
+     * @param deadline     the time after which a driver that has fallen
+     *                     behind stops issuing operations
+     */
+    Driver(Cache<Long, Long> cache, long seed, long first, long interval, long measureStart, long end, long deadline) {
+      this.cache = cache;
+      this.random = new Random(seed);
+      this.first = first;
+      this.interval = interval;
+      this.measureStart = measureStart;
+      this.end = end;
+      this.deadline = deadline;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      try {
+        drive();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+
+    /**
+     * Issues the scheduled operations.
+     */
+    private void drive() {
+      //batches iterate in key order, so implementations that lock each key of a batch in turn lock them in the same
+      //order on every thread
+      Set<Long> sortedKeys = new TreeSet<Long>();
+      Set<Long> keys = new LinkedHashSet<Long>();
+      Map<Long, Long> batch = new LinkedHashMap<Long, Long>();
+
+      for (long intended = first; intended < end; intended += interval) {
+        long now = System.nanoTime();
+        if (now >= deadline) {
+          //only the operations scheduled in the measurement period count, even if the driver is still in the warmup
+          long unmeasured = intended < measureStart ? (measureStart - intended + interval - 1) / interval : 0;
+          unissued += Math.max(0, (end - intended + interval - 1) / interval - unmeasured);
+          return;
+        }
+        while (now < intended) {
+          if (intended - now > SPIN_NANOS) {
+            LockSupport.parkNanos(intended - now - SPIN_NANOS);
+          }
+          now = System.nanoTime();
+        }
+
+        OpenLoopOperation operation = mix.next(random);
+        long key = random.nextInt(entries);
+        if (operation == OpenLoopOperation.GET_ALL || operation == OpenLoopOperation.PUT_ALL) {
+          sortedKeys.clear();
+          while (sortedKeys.size() < batchSize) {
+            sortedKeys.add((long) random.nextInt(entries));
+          }
+          keys.clear();
+          batch.clear();
+          for (Long batchKey : sortedKeys) {
+            keys.add(batchKey);
+            batch.put(batchKey, batchKey);
+          }
+        }
+
+        long start = System.nanoTime();
+        switch (operation) {
+          case GET:
+            cache.get(key);
+            break;
+          case GET_ALL:
+            cache.getAll(keys);
+            break;
+          case PUT:
+            cache.put(key, key);
+            break;
+          case PUT_ALL:
+            cache.putAll(batch);
+            break;
+          case REMOVE:
+            cache.remove(key);
+            break;
+          case REPLACE:
+            cache.replace(key, key);
+            break;
+          default:
+            cache.invoke(key, incrementEntryProcessor);
+            break;
+        }
+        long finish = System.nanoTime();
+
+        if (intended >= measureStart) {
+          latencies.get(operation).record(finish - intended);
+          serviceTimes.get(operation).record(finish - start);
+          maxLag = Math.max(maxLag, start - intended);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+/**
+ * The operations a workload performs against a {@link javax.cache.Cache}.
+ */
+public enum Operation {
+
+  /**
+   * Gets the value of an existing record.
+   */
+  READ,
+
+  /**
+   * Puts a new value for an existing record.
+   */
+  UPDATE,
+
+  /**
+   * Puts a new record.
+   */
+  INSERT,
+
+  /**
+   * Gets the value of an existing record and then puts a new value for it.
+   */
+  READ_MODIFY_WRITE
+}
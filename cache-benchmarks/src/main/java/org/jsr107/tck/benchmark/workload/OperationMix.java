@@ -0,0 +1,152 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+import java.util.Random;
+
+/**
+ * The proportion of each operation in a workload.
+ *
+ * @param <O> the type of the operations, such as {@link Operation}
+ */
+public final class OperationMix<O extends Enum<O>> {
+
+  private final O[] operations;
+
+  /**
+   * The cumulative proportions, indexed by operation ordinal.
+   */
+  private final double[] cumulative;
+
+  private final double[] proportions;
+
+  private OperationMix(O[] operations, double[] proportions) {
+    this.operations = operations;
+    this.proportions = proportions;
+    this.cumulative = new double[operations.length];
+
+    double total = 0;
+    for (O operation : operations) {
+      total += proportions[operation.ordinal()];
+      cumulative[operation.ordinal()] = total;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("An OperationMix requires at least one operation");
+    }
+    for (int i = 0; i < cumulative.length; i++) {
+      cumulative[i] /= total;
+    }
+  }
+
+  /**
+   * Parses an {@link OperationMix} of {@link Operation}s.
+   *
+   * @param mix the mix to parse
+   * @return a new {@link OperationMix}
+   * @throws IllegalArgumentException when the mix is malformed
+   * @see #parse(Class, String)
+   */
+  public static OperationMix<Operation> parse(String mix) {
+    return parse(Operation.class, mix);
+  }
+
+  /**
+   * Parses an {@link OperationMix} of the form
+   * <code>read=0.95,update=0.05</code>, where the names are those of the
+   * operations, ignoring case and underscores, and the proportions are
+   * relative to their total.
+   *
+   * @param operationClass the type of the operations
+   * @param mix            the mix to parse
+   * @param <O>            the type of the operations
+   * @return a new {@link OperationMix}
+   * @throws IllegalArgumentException when the mix is malformed
+   */
+  public static <O extends Enum<O>> OperationMix<O> parse(Class<O> operationClass, String mix) {
+    O[] operations = operationClass.getEnumConstants();
+    double[] proportions = new double[operations.length];
+    for (String part : mix.split(",")) {
+      String[] nameAndProportion = part.split("=");
+      if (nameAndProportion.length != 2) {
+        throw new IllegalArgumentException("Expected operation=proportion but found " + part + " in " + mix);
+      }
+
+      O operation = null;
+      for (O candidate : operations) {
+        if (candidate.name().replace("_", "").equalsIgnoreCase(nameAndProportion[0].trim().replace("_", ""))) {
+          operation = candidate;
+        }
+      }
+      if (operation == null) {
+        throw new IllegalArgumentException("Unknown operation " + nameAndProportion[0] + " in " + mix);
+      }
+
+      try {
+        proportions[operation.ordinal()] = Double.parseDouble(nameAndProportion[1].trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid proportion " + nameAndProportion[1] + " in " + mix, e);
+      }
+    }
+    return new OperationMix<O>(operations, proportions);
+  }
+
+  /**
+   * Chooses the next operation.
+   *
+   * @param random the {@link Random} from which to choose
+   * @return an operation
+   */
+  public O next(Random random) {
+    double value = random.nextDouble();
+    for (O operation : operations) {
+      if (value < cumulative[operation.ordinal()]) {
+        return operation;
+      }
+    }
+    return operations[operations.length - 1];
+  }
+
+  /**
+   * Determines whether the mix includes an operation.
+   *
+   * @param operation the operation
+   * @return <code>true</code> if the operation is performed
+   */
+  public boolean includes(O operation) {
+    return proportions[operation.ordinal()] > 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    double previous = 0;
+    for (O operation : operations) {
+      double proportion = cumulative[operation.ordinal()] - previous;
+      previous = cumulative[operation.ordinal()];
+      if (proportions[operation.ordinal()] > 0) {
+        if (builder.length() > 0) {
+          builder.append(',');
+        }
+        builder.append(operation.name().toLowerCase()).append('=').append(String.format("%.2f", proportion));
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+import org.jsr107.tck.benchmark.support.ZipfDistribution;
+
+import java.util.Random;
+
+/**
+ * The distribution of the sizes of the values a workload writes.
+ */
+public final class ValueSizeDistribution {
+
+  /**
+   * The shapes of {@link ValueSizeDistribution}s.
+   */
+  private enum Shape {
+    CONSTANT, UNIFORM, ZIPFIAN
+  }
+
+  private final Shape shape;
+  private final int min;
+  private final int max;
+  private final ZipfDistribution zipf;
+
+  private ValueSizeDistribution(Shape shape, int min, int max) {
+    if (min < 0 || max < min) {
+      throw new IllegalArgumentException("Invalid value sizes " + min + " to " + max);
+    }
+    this.shape = shape;
+    this.min = min;
+    this.max = max;
+    this.zipf = shape == Shape.ZIPFIAN ? new ZipfDistribution(max - min + 1, ZipfDistribution.DEFAULT_SKEW) : null;
+  }
+
+  /**
+   * Parses a {@link ValueSizeDistribution} of the form
+   * <code>constant:size</code>, <code>uniform:min:max</code> or
+   * <code>zipfian:min:max</code>, in bytes.  Zipfian sizes favour the
+   * smallest.  A single number is a constant size.
+   *
+   * @param distribution the distribution to parse
+   * @return a new {@link ValueSizeDistribution}
+   * @throws IllegalArgumentException when the distribution is malformed
+   */
+  public static ValueSizeDistribution parse(String distribution) {
+    String[] parts = distribution.split(":");
+    try {
+      if (parts.length == 1) {
+        int size = Integer.parseInt(parts[0].trim());
+        return new ValueSizeDistribution(Shape.CONSTANT, size, size);
+      }
+
+      Shape shape = Shape.valueOf(parts[0].trim().toUpperCase());
+      if (shape == Shape.CONSTANT && parts.length == 2) {
+        int size = Integer.parseInt(parts[1].trim());
+        return new ValueSizeDistribution(shape, size, size);
+      } else if (shape != Shape.CONSTANT && parts.length == 3) {
+        return new ValueSizeDistribution(shape, Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim()));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value size distribution " + distribution, e);
+    }
+    throw new IllegalArgumentException("Invalid value size distribution " + distribution);
+  }
+
+  /**
+   * Chooses the size of a value.
+   *
+   * @param random the {@link Random} from which to choose
+   * @return a size in bytes
+   */
+  public int next(Random random) {
+    switch (shape) {
+      case CONSTANT:
+        return min;
+      case UNIFORM:
+        return min + random.nextInt(max - min + 1);
+      default:
+        return min + zipf.next(random);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return shape == Shape.CONSTANT ? "constant:" + min : shape.name().toLowerCase() + ":" + min + ":" + max;
+  }
+}
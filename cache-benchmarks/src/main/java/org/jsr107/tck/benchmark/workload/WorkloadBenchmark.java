@@ -0,0 +1,300 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.benchmark.workload;
+
+import org.jsr107.tck.benchmark.support.BenchmarkCaching;
+import org.jsr107.tck.benchmark.support.BenchmarkProperties;
+import org.jsr107.tck.benchmark.support.LatencyHistogram;
+import org.jsr107.tck.benchmark.support.ZipfDistribution;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a {@link Cache} with a configurable workload in the style of the
+ * Yahoo! Cloud Serving Benchmark, reporting the throughput and the latency
+ * percentiles of each {@link Operation}.
+ * <p/>
+ * A number of records are loaded and then a number of threads perform
+ * {@link Operation}s, chosen according to an {@link OperationMix}, against
+ * keys chosen according to a {@link KeyDistribution}, writing values with
+ * sizes chosen according to a {@link ValueSizeDistribution}.  The mix and
+ * distribution default to those of a {@link CoreWorkload}.  Operations are
+ * issued back to back for a warmup period and then measured for a fixed
+ * duration.
+ */
+public class WorkloadBenchmark {
+
+  /**
+   * The name of the {@link Cache} used by the benchmark.
+   */
+  public static final String CACHE_NAME = "WorkloadBenchmark";
+
+  private final CoreWorkload workload;
+  private final OperationMix<Operation> mix;
+  private final KeyDistribution distribution;
+  private final ValueSizeDistribution valueSizes;
+  private final int recordCount;
+  private final int threads;
+  private final long warmup;
+  private final long duration;
+  private final double skew;
+  private final double hotSetFraction;
+  private final double hotOperationFraction;
+
+  /**
+   * The number of records inserted so far, which are numbered from zero.
+   */
+  private final AtomicLong records = new AtomicLong();
+
+  /**
+   * The key of the next record to insert.
+   */
+  private final AtomicLong nextInsert = new AtomicLong();
+
+  private volatile boolean running;
+  private volatile boolean measuring;
+
+  /**
+   * Constructs a {@link WorkloadBenchmark} configured by
+   * {@link BenchmarkProperties}.
+   */
+  public WorkloadBenchmark() {
+    this.workload = CoreWorkload.valueOf(BenchmarkProperties.getString("workload", "a").toUpperCase());
+    String mixProperty = BenchmarkProperties.getString("mix", null);
+    this.mix = mixProperty == null ? workload.getMix() : OperationMix.parse(mixProperty);
+    String distributionProperty = BenchmarkProperties.getString("distribution", null);
+    this.distribution = distributionProperty == null
+        ? workload.getDistribution()
+        : KeyDistribution.valueOf(distributionProperty.toUpperCase());
+    this.valueSizes = ValueSizeDistribution.parse(BenchmarkProperties.getString("valueSize", "constant:1000"));
+    this.recordCount = BenchmarkProperties.getInt("records", 100000);
+    this.threads = BenchmarkProperties.getInt("threads", Runtime.getRuntime().availableProcessors());
+    this.warmup = BenchmarkProperties.getLong("warmup", 10);
+    this.duration = BenchmarkProperties.getLong("duration", 30);
+    this.skew = BenchmarkProperties.getDouble("skew", ZipfDistribution.DEFAULT_SKEW);
+    this.hotSetFraction = BenchmarkProperties.getDouble("hotSetFraction", 0.2);
+    this.hotOperationFraction = BenchmarkProperties.getDouble("hotOperationFraction", 0.8);
+  }
+
+  /**
+   * Runs the benchmark, reporting to standard out.
+   *
+   * @param args not used
+   * @throws Exception when the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    new WorkloadBenchmark().run(System.out);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param out the {@link PrintStream} on which to report the results
+   * @throws Exception when the benchmark fails
+   */
+  public void run(PrintStream out) throws Exception {
+    CacheManager cacheManager = BenchmarkCaching.getCacheManager();
+    cacheManager.destroyCache(CACHE_NAME);
+
+    try {
+      MutableConfiguration<Long, byte[]> config = new MutableConfiguration<Long, byte[]>();
+      config.setTypes(Long.class, byte[].class);
+      Cache<Long, byte[]> cache = cacheManager.createCache(CACHE_NAME, config);
+
+      out.printf("Workload benchmark of %s%n", BenchmarkCaching.describe());
+      out.printf("workload=%s mix=%s distribution=%s records=%d valueSize=%s threads=%d warmup=%d s duration=%d s%n",
+          workload.name().toLowerCase(), mix, distribution.name().toLowerCase(), recordCount, valueSizes,
+          threads, warmup, duration);
+
+      long loadStart = System.nanoTime();
+      load(cache);
+      out.printf("load: %d records in %d ms%n", recordCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart));
+
+      KeyChooser keyChooser = new KeyChooser(distribution, records, skew, hotSetFraction, hotOperationFraction);
+
+      running = true;
+      List<Worker> workers = new ArrayList<Worker>();
+      List<Thread> workerThreads = new ArrayList<Thread>();
+      for (int i = 0; i < threads; i++) {
+        Worker worker = new Worker(cache, keyChooser, i);
+        Thread thread = new Thread(worker, "WorkloadBenchmark-worker-" + i);
+        thread.setDaemon(true);
+        workers.add(worker);
+        workerThreads.add(thread);
+        thread.start();
+      }
+
+      Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+      measuring = true;
+      long start = System.nanoTime();
+      Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+      measuring = false;
+      long elapsed = System.nanoTime() - start;
+
+      running = false;
+      for (Thread thread : workerThreads) {
+        thread.join();
+      }
+
+      Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+      LatencyHistogram overall = new LatencyHistogram();
+      long misses = 0;
+      for (Operation operation : Operation.values()) {
+        latencies.put(operation, new LatencyHistogram());
+      }
+      for (Worker worker : workers) {
+        for (Operation operation : Operation.values()) {
+          latencies.get(operation).add(worker.latencies.get(operation));
+          overall.add(worker.latencies.get(operation));
+        }
+        misses += worker.misses;
+      }
+
+      double seconds = elapsed / 1e9;
+      out.printf("%-18s %12s %12s  %s%n", "operation", "count", "ops/s", "latency");
+      for (Operation operation : Operation.values()) {
+        if (mix.includes(operation)) {
+          LatencyHistogram latency = latencies.get(operation);
+          out.printf("%-18s %12d %12.0f  %s%n", operation.name().toLowerCase(), latency.getCount(),
+              latency.getCount() / seconds, latency.summary(TimeUnit.MICROSECONDS));
+        }
+      }
+      out.printf("%-18s %12d %12.0f  %s%n", "overall", overall.getCount(), overall.getCount() / seconds,
+          overall.summary(TimeUnit.MICROSECONDS));
+      out.printf("read misses: %d, records at end: %d%n", misses, records.get());
+    } finally {
+      running = false;
+      cacheManager.destroyCache(CACHE_NAME);
+    }
+  }
+
+  /**
+   * Puts the initial records.
+   *
+   * @param cache the {@link Cache}
+   */
+  private void load(Cache<Long, byte[]> cache) {
+    Random random = new Random(42);
+    Map<Long, byte[]> batch = new HashMap<Long, byte[]>();
+    for (long key = 0; key < recordCount; key++) {
+      batch.put(key, new byte[valueSizes.next(random)]);
+      if (batch.size() == 1000 || key == recordCount - 1) {
+        cache.putAll(batch);
+        batch.clear();
+      }
+    }
+    records.set(recordCount);
+    nextInsert.set(recordCount);
+  }
+
+  /**
+   * Performs {@link Operation}s until the benchmark stops, recording the
+   * latency of those performed while measuring.
+   */
+  private class Worker implements Runnable {
+
+    private final Cache<Long, byte[]> cache;
+    private final KeyChooser keyChooser;
+    private final Random random;
+    private final Map<Operation, LatencyHistogram> latencies =
+        new EnumMap<Operation, LatencyHistogram>(Operation.class);
+
+    /**
+     * The number of reads that found no value, counted while measuring.
+     */
+    private long misses;
+
+    /**
+     * Constructs a {@link Worker}.
+     *
+     * @param cache      the {@link Cache} to operate on
+     * @param keyChooser the {@link KeyChooser} for existing records
+     * @param seed       the seed for choosing operations, keys and value sizes
+     */
+    Worker(Cache<Long, byte[]> cache, KeyChooser keyChooser, long seed) {
+      this.cache = cache;
+      this.keyChooser = keyChooser;
+      this.random = new Random(seed);
+      for (Operation operation : Operation.values()) {
+        latencies.put(operation, new LatencyHistogram());
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      while (running) {
+        Operation operation = mix.next(random);
+        long key;
+        byte[] value = null;
+        if (operation == Operation.INSERT) {
+          key = nextInsert.getAndIncrement();
+          value = new byte[valueSizes.next(random)];
+        } else {
+          key = keyChooser.next(random);
+          if (operation != Operation.READ) {
+            value = new byte[valueSizes.next(random)];
+          }
+        }
+
+        boolean hit = true;
+        long start = System.nanoTime();
+        switch (operation) {
+          case READ:
+            hit = cache.get(key) != null;
+            break;
+          case UPDATE:
+            cache.put(key, value);
+            break;
+          case INSERT:
+            cache.put(key, value);
+            break;
+          default:
+            hit = cache.get(key) != null;
+            cache.put(key, value);
+            break;
+        }
+        long latency = System.nanoTime() - start;
+
+        if (operation == Operation.INSERT) {
+          //concurrent inserts may complete out of order, so a read of the latest records may briefly miss
+          records.incrementAndGet();
+        }
+
+        if (measuring) {
+          latencies.get(operation).record(latency);
+          if (!hit) {
+            misses++;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.concurrency;
+
+import org.jsr107.tck.processor.IncrementEntryProcessor;
+
+import javax.cache.Cache;
+
+/**
+ * The {@link Cache} operations that may be recorded in a {@link History},
+ * each with the sequential specification of its effect on a single entry.
+ * <p/>
+ * An entry is modelled by its value, <code>null</code> when it isn't present.
+ * Each operation takes a value and, for
+ * {@link #REPLACE}, a new value as arguments.
+ */
+public enum CacheOperationType {
+
+  /**
+   * {@link Cache#get(Object)}.
+   */
+  GET {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      return cache.get(key);
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return state;
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return state;
+    }
+  },
+
+  /**
+   * {@link Cache#put(Object, Object)}, which has no result.
+   */
+  PUT {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      cache.put(key, value);
+      return null;
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return null;
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return value;
+    }
+  },
+
+  /**
+   * {@link Cache#getAndPut(Object, Object)}.
+   */
+  GET_AND_PUT {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      return cache.getAndPut(key, value);
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return state;
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return value;
+    }
+  },
+
+  /**
+   * {@link Cache#putIfAbsent(Object, Object)}.
+   */
+  PUT_IF_ABSENT {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      return cache.putIfAbsent(key, value);
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return state == null;
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return state == null ? value : state;
+    }
+  },
+
+  /**
+   * {@link Cache#replace(Object, Object, Object)}, replacing the value with
+   * the new value when it equals the value.
+   */
+  REPLACE {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      return cache.replace(key, value, newValue);
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return state != null && state == value;
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return state != null && state == value ? Long.valueOf(newValue) : state;
+    }
+  },
+
+  /**
+   * {@link Cache#getAndRemove(Object)}.
+   */
+  GET_AND_REMOVE {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      return cache.getAndRemove(key);
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return state;
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return null;
+    }
+  },
+
+  /**
+   * {@link Cache#invoke} with an {@link IncrementEntryProcessor} that adds
+   * the value, creating the entry when it isn't present, and returns the new
+   * value.
+   */
+  INVOKE {
+    @Override
+    <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue) {
+      return cache.invoke(key, new IncrementEntryProcessor<K>(value));
+    }
+
+    @Override
+    Object getResult(Long state, long value, long newValue) {
+      return getState(state, value, newValue);
+    }
+
+    @Override
+    Long getState(Long state, long value, long newValue) {
+      return state == null ? value : state + value;
+    }
+  };
+
+  /**
+   * Performs the operation on a {@link Cache}.
+   *
+   * @param cache    the {@link Cache}
+   * @param key      the key of the entry
+   * @param value    the value argument
+   * @param newValue the new value argument
+   * @param <K>      the type of keys
+   * @return the result of the operation
+   */
+  abstract <K> Object perform(Cache<K, Long> cache, K key, long value, long newValue);
+
+  /**
+   * Determines the result the operation has, according to its sequential
+   * specification, when it takes effect on an entry.
+   *
+   * @param state    the value of the entry, or <code>null</code> when absent
+   * @param value    the value argument
+   * @param newValue the new value argument
+   * @return the result
+   */
+  abstract Object getResult(Long state, long value, long newValue);
+
+  /**
+   * Determines the value of an entry after the operation takes effect on it,
+   * according to its sequential specification.
+   *
+   * @param state    the value of the entry, or <code>null</code> when absent
+   * @param value    the value argument
+   * @param newValue the new value argument
+   * @return the new value, or <code>null</code> when the entry is absent
+   */
+  abstract Long getState(Long state, long value, long newValue);
+}
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.concurrency;
+
+import javax.cache.Cache;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A history of {@link Cache} operations performed concurrently by a number of
+ * threads, which may be checked with a {@link LinearizabilityChecker}.
+ */
+public class History {
+
+  private final ConcurrentLinkedQueue<RecordedOperation> operations = new ConcurrentLinkedQueue<RecordedOperation>();
+
+  /**
+   * Performs an operation on a {@link Cache}, recording it together with its
+   * result and the times of its invocation and response.
+   *
+   * @param cache    the {@link Cache}
+   * @param thread   the number of the thread performing the operation
+   * @param type     the {@link CacheOperationType}
+   * @param key      the key of the entry
+   * @param value    the value argument
+   * @param newValue the new value argument
+   * @param <K>      the type of keys
+   * @return the result of the operation
+   */
+  public <K> Object perform(Cache<K, Long> cache, int thread, CacheOperationType type, K key, long value, long newValue) {
+    long invocationTime = System.nanoTime();
+    Object result = type.perform(cache, key, value, newValue);
+    long responseTime = System.nanoTime();
+
+    operations.add(new RecordedOperation(thread, key, type, value, newValue, result, invocationTime, responseTime));
+    return result;
+  }
+
+  /**
+   * Records an operation.
+   *
+   * @param operation the {@link RecordedOperation}
+   */
+  public void record(RecordedOperation operation) {
+    operations.add(operation);
+  }
+
+  /**
+   * Obtains the recorded operations.
+   *
+   * @return a copy of the {@link RecordedOperation}s
+   */
+  public List<RecordedOperation> getOperations() {
+    return new ArrayList<RecordedOperation>(operations);
+  }
+}
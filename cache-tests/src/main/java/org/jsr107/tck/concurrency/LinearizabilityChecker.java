@@ -0,0 +1,290 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.concurrency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that a {@link History} of {@link javax.cache.Cache} operations is
+ * linearizable with respect to the sequential specifications of the
+ * {@link CacheOperationType}s.
+ * <p/>
+ * A history is linearizable when every operation can be assigned an instant
+ * between its invocation and response such that performing the operations
+ * one at a time in that order, starting from an empty
+ * {@link javax.cache.Cache}, produces the results that were observed.  As
+ * each operation involves a single entry, the history of each key is checked
+ * on its own.  The search for an order is that of Wing and Gong, with the
+ * configurations already explored remembered as proposed by Lowe.
+ */
+public class LinearizabilityChecker {
+
+  /**
+   * The default maximum number of configurations explored for a key.
+   */
+  public static final int DEFAULT_MAX_CONFIGURATIONS = 1000000;
+
+  private final int maxConfigurations;
+
+  /**
+   * Constructs a {@link LinearizabilityChecker} that explores up to
+   * {@link #DEFAULT_MAX_CONFIGURATIONS} configurations for each key.
+   */
+  public LinearizabilityChecker() {
+    this(DEFAULT_MAX_CONFIGURATIONS);
+  }
+
+  /**
+   * Constructs a {@link LinearizabilityChecker}.
+   *
+   * @param maxConfigurations the maximum number of configurations explored
+   *                          for each key before giving up
+   */
+  public LinearizabilityChecker(int maxConfigurations) {
+    this.maxConfigurations = maxConfigurations;
+  }
+
+  /**
+   * Checks that a {@link History} is linearizable.
+   *
+   * @param history the {@link History}
+   * @return <code>null</code> if the {@link History} is linearizable, otherwise
+   *         a description of why it isn't
+   * @throws IllegalStateException when the history of a key is too complex to
+   *                               check within the maximum number of
+   *                               configurations
+   */
+  public String check(History history) {
+    return check(history.getOperations());
+  }
+
+  /**
+   * Checks that a list of {@link RecordedOperation}s is linearizable.
+   *
+   * @param operations the {@link RecordedOperation}s
+   * @return <code>null</code> if the operations are linearizable, otherwise
+   *         a description of why they aren't
+   * @throws IllegalStateException when the history of a key is too complex to
+   *                               check within the maximum number of
+   *                               configurations
+   */
+  public String check(List<RecordedOperation> operations) {
+    Map<Object, List<RecordedOperation>> operationsByKey = new LinkedHashMap<Object, List<RecordedOperation>>();
+    for (RecordedOperation operation : operations) {
+      List<RecordedOperation> keyOperations = operationsByKey.get(operation.getKey());
+      if (keyOperations == null) {
+        keyOperations = new ArrayList<RecordedOperation>();
+        operationsByKey.put(operation.getKey(), keyOperations);
+      }
+      keyOperations.add(operation);
+    }
+
+    for (Map.Entry<Object, List<RecordedOperation>> entry : operationsByKey.entrySet()) {
+      String violation = checkKey(entry.getKey(), entry.getValue());
+      if (violation != null) {
+        return violation;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks that the operations on a single key are linearizable.
+   *
+   * @param key        the key
+   * @param operations the {@link RecordedOperation}s on the key
+   * @return <code>null</code> if the operations are linearizable, otherwise
+   *         a description of why they aren't
+   */
+  private String checkKey(Object key, List<RecordedOperation> operations) {
+    List<RecordedOperation> sorted = new ArrayList<RecordedOperation>(operations);
+    Collections.sort(sorted, new Comparator<RecordedOperation>() {
+      @Override
+      public int compare(RecordedOperation first, RecordedOperation second) {
+        return Long.compare(first.getInvocationTime(), second.getInvocationTime());
+      }
+    });
+
+    int count = sorted.size();
+    BitSet linearized = new BitSet(count);
+    Long state = null;
+    Set<Configuration> explored = new HashSet<Configuration>();
+    Deque<Frame> stack = new ArrayDeque<Frame>();
+    stack.push(new Frame(-1, null, getCandidates(sorted, linearized)));
+
+    //the configuration that linearized the most operations, to explain a violation
+    int deepest = 0;
+    Long deepestState = null;
+    int[] deepestCandidates = stack.peek().candidates;
+
+    while (!stack.isEmpty()) {
+      if (stack.size() - 1 == count) {
+        return null;
+      }
+
+      Frame frame = stack.peek();
+      if (frame.next < frame.candidates.length) {
+        int index = frame.candidates[frame.next++];
+        RecordedOperation operation = sorted.get(index);
+        if (!operation.isConsistentWith(state)) {
+          continue;
+        }
+
+        Long newState = operation.apply(state);
+        linearized.set(index);
+        if (!explored.add(new Configuration((BitSet) linearized.clone(), newState))) {
+          linearized.clear(index);
+          continue;
+        }
+        if (explored.size() > maxConfigurations) {
+          throw new IllegalStateException("The history of key " + key + " is too complex to check within "
+              + maxConfigurations + " configurations");
+        }
+
+        stack.push(new Frame(index, state, getCandidates(sorted, linearized)));
+        state = newState;
+        if (stack.size() - 1 > deepest) {
+          deepest = stack.size() - 1;
+          deepestState = state;
+          deepestCandidates = stack.peek().candidates;
+        }
+      } else {
+        stack.pop();
+        if (frame.operation >= 0) {
+          linearized.clear(frame.operation);
+          state = frame.previousState;
+        }
+      }
+    }
+
+    StringBuilder violation = new StringBuilder();
+    violation.append("The operations on key ").append(key).append(" are not linearizable: at best ").append(deepest)
+        .append(" of ").append(count).append(" can take effect, leaving the value ").append(deepestState)
+        .append(", after which none of these can:");
+    for (int index : deepestCandidates) {
+      violation.append("\n  ").append(sorted.get(index));
+    }
+    return violation.toString();
+  }
+
+  /**
+   * Determines the operations that may take effect next: those yet to take
+   * effect that were invoked before any of the others responded.
+   *
+   * @param sorted     the operations sorted by invocation time
+   * @param linearized the operations that have taken effect
+   * @return the indexes of the candidate operations
+   */
+  private static int[] getCandidates(List<RecordedOperation> sorted, BitSet linearized) {
+    long earliestResponse = Long.MAX_VALUE;
+    for (int index = linearized.nextClearBit(0); index < sorted.size(); index = linearized.nextClearBit(index + 1)) {
+      RecordedOperation operation = sorted.get(index);
+      if (operation.getInvocationTime() > earliestResponse) {
+        break;
+      }
+      earliestResponse = Math.min(earliestResponse, operation.getResponseTime());
+    }
+
+    int[] candidates = new int[sorted.size() - linearized.cardinality()];
+    int size = 0;
+    for (int index = linearized.nextClearBit(0); index < sorted.size(); index = linearized.nextClearBit(index + 1)) {
+      if (sorted.get(index).getInvocationTime() > earliestResponse) {
+        break;
+      }
+      candidates[size++] = index;
+    }
+    int[] result = new int[size];
+    System.arraycopy(candidates, 0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * A point in the search: the operation that took effect to reach it and
+   * the operations that may take effect next.
+   */
+  private static class Frame {
+    private final int operation;
+    private final Long previousState;
+    private final int[] candidates;
+    private int next;
+
+    /**
+     * Constructs a {@link Frame}.
+     *
+     * @param operation     the index of the operation that took effect, or
+     *                      <code>-1</code> for the start of the search
+     * @param previousState the value before the operation took effect
+     * @param candidates    the indexes of the operations that may take effect
+     *                      next
+     */
+    Frame(int operation, Long previousState, int[] candidates) {
+      this.operation = operation;
+      this.previousState = previousState;
+      this.candidates = candidates;
+    }
+  }
+
+  /**
+   * A configuration of the search: the operations that have taken effect and
+   * the resulting value.
+   */
+  private static class Configuration {
+    private final BitSet linearized;
+    private final Long state;
+
+    /**
+     * Constructs a {@link Configuration}.
+     *
+     * @param linearized the operations that have taken effect
+     * @param state      the resulting value, or <code>null</code> when absent
+     */
+    Configuration(BitSet linearized, Long state) {
+      this.linearized = linearized;
+      this.state = state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof Configuration)) {
+        return false;
+      }
+      Configuration other = (Configuration) object;
+      return linearized.equals(other.linearized) && (state == null ? other.state == null : state.equals(other.state));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return linearized.hashCode() * 31 + (state == null ? 0 : state.hashCode());
+    }
+  }
+}
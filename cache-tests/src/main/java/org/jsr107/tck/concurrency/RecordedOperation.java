@@ -0,0 +1,154 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.concurrency;
+
+/**
+ * A {@link javax.cache.Cache} operation recorded in a {@link History}: what a
+ * thread performed, the result it observed and when it invoked the operation
+ * and received the response.
+ */
+public final class RecordedOperation {
+
+  private final int thread;
+  private final Object key;
+  private final CacheOperationType type;
+  private final long value;
+  private final long newValue;
+  private final Object result;
+  private final long invocationTime;
+  private final long responseTime;
+
+  /**
+   * Constructs a {@link RecordedOperation}.
+   *
+   * @param thread         the number of the thread that performed the operation
+   * @param key            the key of the entry
+   * @param type           the {@link CacheOperationType}
+   * @param value          the value argument
+   * @param newValue       the new value argument
+   * @param result         the result the thread observed
+   * @param invocationTime the {@link System#nanoTime()} before the operation
+   *                       was invoked
+   * @param responseTime   the {@link System#nanoTime()} after the operation
+   *                       responded
+   */
+  public RecordedOperation(int thread, Object key, CacheOperationType type, long value, long newValue,
+                           Object result, long invocationTime, long responseTime) {
+    this.thread = thread;
+    this.key = key;
+    this.type = type;
+    this.value = value;
+    this.newValue = newValue;
+    this.result = result;
+    this.invocationTime = invocationTime;
+    this.responseTime = responseTime;
+  }
+
+  /**
+   * Obtains the number of the thread that performed the operation.
+   *
+   * @return the thread number
+   */
+  public int getThread() {
+    return thread;
+  }
+
+  /**
+   * Obtains the key of the entry operated on.
+   *
+   * @return the key
+   */
+  public Object getKey() {
+    return key;
+  }
+
+  /**
+   * Obtains the {@link CacheOperationType}.
+   *
+   * @return the {@link CacheOperationType}
+   */
+  public CacheOperationType getType() {
+    return type;
+  }
+
+  /**
+   * Obtains the result the thread observed.
+   *
+   * @return the result
+   */
+  public Object getResult() {
+    return result;
+  }
+
+  /**
+   * Obtains the time the operation was invoked.
+   *
+   * @return the {@link System#nanoTime()} before the invocation
+   */
+  public long getInvocationTime() {
+    return invocationTime;
+  }
+
+  /**
+   * Obtains the time the operation responded.
+   *
+   * @return the {@link System#nanoTime()} after the response
+   */
+  public long getResponseTime() {
+    return responseTime;
+  }
+
+  /**
+   * Determines whether the observed result is the one the sequential
+   * specification requires when the operation takes effect on an entry.
+   *
+   * @param state the value of the entry, or <code>null</code> when absent
+   * @return <code>true</code> if the operation may take effect on the entry
+   */
+  boolean isConsistentWith(Long state) {
+    Object expected = type.getResult(state, value, newValue);
+    return expected == null ? result == null : expected.equals(result);
+  }
+
+  /**
+   * Determines the value of the entry after the operation takes effect.
+   *
+   * @param state the value of the entry, or <code>null</code> when absent
+   * @return the new value, or <code>null</code> when the entry is absent
+   */
+  Long apply(Long state) {
+    return type.getState(state, value, newValue);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("thread ").append(thread).append(": ").append(type.name().toLowerCase()).append('(').append(key);
+    if (type == CacheOperationType.PUT || type == CacheOperationType.GET_AND_PUT
+        || type == CacheOperationType.PUT_IF_ABSENT || type == CacheOperationType.INVOKE) {
+      builder.append(", ").append(value);
+    } else if (type == CacheOperationType.REPLACE) {
+      builder.append(", ").append(value).append(", ").append(newValue);
+    }
+    builder.append(") = ").append(type == CacheOperationType.PUT ? "void" : result);
+    builder.append(" [").append(invocationTime).append(", ").append(responseTime).append(']');
+    return builder.toString();
+  }
+}
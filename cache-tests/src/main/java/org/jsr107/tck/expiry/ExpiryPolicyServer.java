@@ -25,6 +25,7 @@ import javax.cache.expiry.ExpiryPolicy;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  *
@@ -57,6 +58,12 @@ public class ExpiryPolicyServer extends Server {
    */
   private ExpiryPolicy expiryPolicy;
 
+  /**
+   * The number of requests handled for each {@link EntryOperation}, indexed
+   * by ordinal.
+   */
+  private final AtomicLongArray invocationCounts = new AtomicLongArray(EntryOperation.values().length);
+
   /**
    * Constructs an {@link ExpiryPolicyServer} (without a {@link ExpiryPolicy} to
    * which client requests will be delegated).
@@ -93,6 +100,31 @@ public class ExpiryPolicyServer extends Server {
     this.expiryPolicy = expiryPolicy;
   }
 
+  /**
+   * Obtains the number of requests for the specified {@link EntryOperation}
+   * the {@link ExpiryPolicyServer} has handled since it was constructed or
+   * {@link #resetInvocationCounts()} was last called.
+   * <p/>
+   * Requests are counted whether or not an {@link ExpiryPolicy} has been set
+   * and whether or not it throws an exception.
+   *
+   * @param entryOperation the {@link EntryOperation}
+   * @return the number of requests
+   */
+  public long getInvocationCount(EntryOperation entryOperation) {
+    return invocationCounts.get(entryOperation.ordinal());
+  }
+
+  /**
+   * Resets the number of requests handled for every {@link EntryOperation}
+   * to zero.
+   */
+  public void resetInvocationCounts() {
+    for (EntryOperation entryOperation : EntryOperation.values()) {
+      invocationCounts.set(entryOperation.ordinal(), 0);
+    }
+  }
+
   /**
    * The {@link OperationHandler} for a {@link ExpiryPolicy} operation.
    */
@@ -106,11 +138,12 @@ public class ExpiryPolicyServer extends Server {
     public void onProcess(ObjectInputStream ois,
                           ObjectOutputStream oos) throws IOException, ClassNotFoundException {
 
+      EntryOperation entryOperation = EntryOperation.valueOf((String)ois.readObject());
+      invocationCounts.incrementAndGet(entryOperation.ordinal());
+
       if (expiryPolicy == null) {
         throw new NullPointerException("The ExpiryPolicy for the ExpiryPolicyServer has not be set");
       } else {
-        EntryOperation entryOperation = EntryOperation.valueOf((String)ois.readObject());
-
         try {
           Duration duration;
           switch (entryOperation) {
@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.processor;
+
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
+import java.io.Serializable;
+
+/**
+ * An {@link EntryProcessor} to increment a counter held as the value of an
+ * entry, creating the counter when the entry doesn't exist.
+ *
+ * @param <K> key type
+ */
+public class IncrementEntryProcessor<K> implements EntryProcessor<K, Long, Long>, Serializable {
+
+  /**
+   * The serialVersionUID required for {@link java.io.Serializable}.
+   */
+  public static final long serialVersionUID = 202610181200L;
+
+  /**
+   * The amount by which to increment the counter.
+   */
+  private final long delta;
+
+  /**
+   * Constructs an {@link IncrementEntryProcessor} that increments by one.
+   */
+  public IncrementEntryProcessor() {
+    this(1);
+  }
+
+  /**
+   * Constructs an {@link IncrementEntryProcessor}.
+   *
+   * @param delta the amount by which to increment the counter
+   */
+  public IncrementEntryProcessor(long delta) {
+    this.delta = delta;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return the value of the counter after it was incremented
+   */
+  @Override
+  public Long process(MutableEntry<K, Long> entry, Object... arguments) {
+    long value = entry.exists() ? entry.getValue() + delta : delta;
+    entry.setValue(value);
+
+    return value;
+  }
+
+  /**
+   * Obtains the amount by which the counter is incremented.
+   *
+   * @return the amount
+   */
+  public long getDelta() {
+    return delta;
+  }
+}
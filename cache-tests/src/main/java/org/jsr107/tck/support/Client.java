@@ -37,6 +37,12 @@ import java.net.Socket;
  */
 public class Client implements AutoCloseable {
 
+  /**
+   * The number of {@link Operation}s after which the object streams of a
+   * connection are reset, so that they don't retain every object written.
+   */
+  static final int RESET_INTERVAL = 1000;
+
   /**
    * The port on which the {@link Server} is running.
    */
@@ -63,6 +69,11 @@ public class Client implements AutoCloseable {
    */
   private ObjectInputStream ois;
 
+  /**
+   * The number of {@link Operation}s invoked.
+   */
+  private long exchanges;
+
   /**
    * Constructs a {@link Client} that will auto connect to a {@link Server}
    * on the specified port.
@@ -81,6 +92,8 @@ public class Client implements AutoCloseable {
     } catch (IOException ioe) {
         throw new IOException("Client failed to connect to server at " + address + ":" + port, ioe);
     }
+    //operations are small request/response exchanges, so don't delay sending them
+    this.socket.setTcpNoDelay(true);
     this.oos = new ObjectOutputStream(socket.getOutputStream());
     this.ois = new ObjectInputStream(socket.getInputStream());
   }
@@ -97,6 +110,10 @@ public class Client implements AutoCloseable {
       throw new IllegalStateException("Can't execute an operation as the Client is disconnected");
     } else {
       try {
+        //periodically forget the objects written, which the streams would otherwise retain while connected
+        if (++exchanges % RESET_INTERVAL == 0) {
+          oos.reset();
+        }
         oos.writeObject(operation.getType());
         return operation.onInvoke(ois, oos);
       } catch (RuntimeException e) {
@@ -251,8 +251,12 @@ public class Server implements AutoCloseable {
     public void run() {
 
       try {
+        //responses are small, so don't delay sending them
+        socket.setTcpNoDelay(true);
+
         ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
         ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+        long exchanges = 0;
 
         while (true) {
           try {
@@ -262,6 +266,11 @@ public class Server implements AutoCloseable {
             if (handler != null) {
               handler.onProcess(ois, oos);
             }
+
+            //periodically forget the objects written, which the streams would otherwise retain while connected
+            if (++exchanges % Client.RESET_INTERVAL == 0) {
+              oos.reset();
+            }
           } catch (ClassNotFoundException e) {
             e.printStackTrace();
           }
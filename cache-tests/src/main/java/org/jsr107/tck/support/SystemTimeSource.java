@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TimeSource} based on the wall clock, used when an implementation
+ * does not provide a {@link TimeSource} of its own.  Advancing time simply
+ * sleeps the calling thread.
+ */
+public final class SystemTimeSource implements TimeSource {
+
+  /**
+   * The shared {@link SystemTimeSource}.
+   */
+  public static final SystemTimeSource INSTANCE = new SystemTimeSource();
+
+  private SystemTimeSource() {
+    //use the INSTANCE
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void advance(long amount, TimeUnit unit) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + unit.toMillis(amount);
+    long remaining = unit.toMillis(amount);
+
+    //sleep may return early, so keep going until the deadline has passed
+    while (remaining > 0) {
+      Thread.sleep(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isVirtual() {
+    return false;
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of time that the TCK uses to let {@link javax.cache.expiry.Duration}s
+ * elapse when testing expiry.
+ * <p/>
+ * By default the TCK uses the {@link SystemTimeSource}, which simply sleeps.
+ * Implementations that can base expiry on a controllable clock may optionally
+ * return their own {@link TimeSource} from
+ * {@link javax.cache.CacheManager#unwrap(Class)}, in which case the TCK will
+ * advance that clock instead, allowing expiry to be tested deterministically
+ * and without waiting on the wall clock.
+ *
+ * @see SystemTimeSource
+ */
+public interface TimeSource {
+
+  /**
+   * Obtains the current time, in milliseconds, as seen by the implementation
+   * when calculating expiry.
+   *
+   * @return the current time in milliseconds
+   */
+  long currentTimeMillis();
+
+  /**
+   * Advances the time seen by the implementation by at least the specified
+   * amount.
+   *
+   * @param amount the amount of time to advance
+   * @param unit   the {@link TimeUnit} of the amount
+   * @throws InterruptedException when interrupted while waiting for time to pass
+   */
+  void advance(long amount, TimeUnit unit) throws InterruptedException;
+
+  /**
+   * Determines if the {@link TimeSource} is independent of the wall clock, in
+   * which case advancing it is effectively instantaneous.
+   *
+   * @return <code>true</code> if the {@link TimeSource} is virtual
+   */
+  boolean isVirtual();
+}
@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.annotation;
+
+import domain.Blog;
+import manager.BlogManager;
+import manager.CountingBlogManagerImpl;
+import org.jsr107.tck.testutil.ConcurrentRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Calls a {@link javax.cache.annotation.CacheResult} method for the same
+ * uncached title from many threads at once, ensuring that every caller gets
+ * the entry and that, once cached, the method no longer runs.
+ * <p/>
+ * The specification doesn't require concurrent misses to be coalesced, so
+ * the method may run for any number of the callers.
+ */
+public class InterceptionStampedeTest extends AbstractInterceptionTest {
+
+  private static final int THREADS = 16;
+
+  private static final String TITLE = "stampede";
+
+  private BlogManager blogManager;
+
+  @Before
+  public void before() {
+    blogManager = getBeanByType(CountingBlogManagerImpl.class);
+    blogManager.clearCache();
+    blogManager.createEntry(new Blog(TITLE, "body"));
+    CountingBlogManagerImpl.resetInvocationCounts();
+
+    //widen the window in which callers miss concurrently
+    CountingBlogManagerImpl.setLatency(50, TimeUnit.MILLISECONDS);
+  }
+
+  @After
+  public void after() {
+    CountingBlogManagerImpl.setLatency(0, TimeUnit.MILLISECONDS);
+    blogManager.clearCache();
+  }
+
+  @Test
+  public void test_AT_CacheResult_ConcurrentMisses() throws Exception {
+    List<Blog> results = ConcurrentRunner.callConcurrently(THREADS, new Callable<Blog>() {
+      @Override
+      public Blog call() {
+        return blogManager.getEntryCached(TITLE);
+      }
+    });
+
+    assertStampede(results);
+  }
+
+  @Test
+  public void test_AT_CacheResult_UsingAt_CacheKeyParam_ConcurrentMisses() throws Exception {
+    List<Blog> results = ConcurrentRunner.callConcurrently(THREADS, new Callable<Blog>() {
+      @Override
+      public Blog call() {
+        return blogManager.getEntryCached(Thread.currentThread().getName(), TITLE, "random");
+      }
+    });
+
+    assertStampede(results);
+  }
+
+  /**
+   * Asserts that every caller got the entry, that the method ran at least
+   * once and at most once per caller, and that the entry is then cached.
+   *
+   * @param results the entries the callers got
+   */
+  private void assertStampede(List<Blog> results) {
+    for (Blog blog : results) {
+      assertEquals(TITLE, blog.getTitle());
+      assertEquals("body", blog.getBody());
+    }
+
+    long invocations = CountingBlogManagerImpl.getInvocationCount(TITLE);
+    assertTrue("invocations: " + invocations, invocations >= 1 && invocations <= THREADS);
+
+    blogManager.getEntryCached(TITLE);
+    assertEquals(invocations, CountingBlogManagerImpl.getInvocationCount(TITLE));
+  }
+}
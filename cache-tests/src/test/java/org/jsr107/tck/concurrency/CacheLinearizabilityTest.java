@@ -0,0 +1,127 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.concurrency;
+
+import org.jsr107.tck.testutil.CacheTestSupport;
+import org.jsr107.tck.testutil.ConcurrentRunner;
+import org.jsr107.tck.testutil.ExcludeListExcluder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.cache.configuration.MutableConfiguration;
+import java.util.Random;
+
+import static org.junit.Assert.assertNull;
+
+/**
+ * Ensures that the single entry operations of a {@link javax.cache.Cache}
+ * are linearizable when performed concurrently by a number of threads.
+ * <p/>
+ * Each thread performs random operations on a few keys, with values drawn
+ * from a small range so that conditional operations often succeed, and the
+ * recorded {@link History} is then checked with a
+ * {@link LinearizabilityChecker}.
+ */
+public class CacheLinearizabilityTest extends CacheTestSupport<Integer, Long> {
+
+  /**
+   * Rule used to exclude tests
+   */
+  @Rule
+  public ExcludeListExcluder rule = new ExcludeListExcluder(CacheLinearizabilityTest.class);
+
+  private static final int THREADS = 8;
+
+  private static final int OPERATIONS = 250;
+
+  private static final int VALUES = 4;
+
+  @Override
+  protected MutableConfiguration<Integer, Long> newMutableConfiguration() {
+    return new MutableConfiguration<Integer, Long>().setTypes(Integer.class, Long.class);
+  }
+
+  /**
+   * Performs every type of operation on a single key from many threads.
+   */
+  @Test
+  public void mixedOperationsOnHotKeyAreLinearizable() throws Exception {
+    assertLinearizable(perform(1, CacheOperationType.values()));
+  }
+
+  /**
+   * Performs every type of operation on a few keys from many threads.
+   */
+  @Test
+  public void mixedOperationsOnFewKeysAreLinearizable() throws Exception {
+    assertLinearizable(perform(4, CacheOperationType.values()));
+  }
+
+  /**
+   * Performs only the atomic read-modify-write operations on a single key
+   * from many threads.
+   */
+  @Test
+  public void conditionalOperationsOnHotKeyAreLinearizable() throws Exception {
+    assertLinearizable(perform(1, new CacheOperationType[]{
+        CacheOperationType.PUT_IF_ABSENT, CacheOperationType.REPLACE,
+        CacheOperationType.GET_AND_REMOVE, CacheOperationType.GET_AND_PUT}));
+  }
+
+  /**
+   * Performs only reads and increments on a single key from many threads.
+   */
+  @Test
+  public void incrementsOnHotKeyAreLinearizable() throws Exception {
+    assertLinearizable(perform(1, new CacheOperationType[]{CacheOperationType.GET, CacheOperationType.INVOKE}));
+  }
+
+  /**
+   * Asserts that a {@link History} is linearizable.
+   *
+   * @param history the {@link History}
+   */
+  private void assertLinearizable(History history) {
+    assertNull(new LinearizabilityChecker().check(history));
+  }
+
+  /**
+   * Performs {@link #OPERATIONS} random operations on each of
+   * {@link #THREADS} threads, all of which start together, failing if they
+   * don't finish within {@link ConcurrentRunner#TIMEOUT_SECONDS}.
+   *
+   * @param keys  the number of keys to operate on
+   * @param types the {@link CacheOperationType}s to choose from
+   * @return the recorded {@link History}
+   */
+  private History perform(final int keys, final CacheOperationType[] types) throws Exception {
+    final History history = new History();
+    ConcurrentRunner.callConcurrently(THREADS, new ConcurrentRunner.ThreadTask<Void>() {
+      @Override
+      public Void call(int thread) {
+        Random random = new Random(thread);
+        for (int iteration = 0; iteration < OPERATIONS; iteration++) {
+          CacheOperationType type = types[random.nextInt(types.length)];
+          history.perform(cache, thread, type, random.nextInt(keys),
+              random.nextInt(VALUES), random.nextInt(VALUES));
+        }
+        return null;
+      }
+    });
+    return history;
+  }
+}
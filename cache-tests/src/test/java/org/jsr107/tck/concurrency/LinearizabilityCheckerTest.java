@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.concurrency;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jsr107.tck.concurrency.CacheOperationType.GET;
+import static org.jsr107.tck.concurrency.CacheOperationType.GET_AND_PUT;
+import static org.jsr107.tck.concurrency.CacheOperationType.GET_AND_REMOVE;
+import static org.jsr107.tck.concurrency.CacheOperationType.INVOKE;
+import static org.jsr107.tck.concurrency.CacheOperationType.PUT;
+import static org.jsr107.tck.concurrency.CacheOperationType.PUT_IF_ABSENT;
+import static org.jsr107.tck.concurrency.CacheOperationType.REPLACE;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the {@link LinearizabilityChecker}, using hand built
+ * histories.
+ */
+public class LinearizabilityCheckerTest {
+
+  private final LinearizabilityChecker checker = new LinearizabilityChecker();
+
+  private final List<RecordedOperation> operations = new ArrayList<RecordedOperation>();
+
+  @Test
+  public void emptyHistoryIsLinearizable() {
+    assertNull(checker.check(operations));
+  }
+
+  @Test
+  public void sequentialHistoryIsLinearizable() {
+    record(0, GET, 0, 0, null, 0, 1);
+    record(0, PUT, 1, 0, null, 2, 3);
+    record(0, GET_AND_PUT, 2, 0, 1L, 4, 5);
+    record(0, PUT_IF_ABSENT, 3, 0, false, 6, 7);
+    record(0, REPLACE, 2, 4, true, 8, 9);
+    record(0, REPLACE, 2, 5, false, 10, 11);
+    record(0, INVOKE, 3, 0, 7L, 12, 13);
+    record(0, GET_AND_REMOVE, 0, 0, 7L, 14, 15);
+    record(0, PUT_IF_ABSENT, 8, 0, true, 16, 17);
+    record(0, GET, 0, 0, 8L, 18, 19);
+
+    assertNull(checker.check(operations));
+  }
+
+  @Test
+  public void overlappingOperationsMayTakeEffectInEitherOrder() {
+    //the get responds after the put was invoked, so may observe it
+    record(0, PUT, 1, 0, null, 0, 10);
+    record(1, GET, 0, 0, 1L, 2, 5);
+    record(2, GET, 0, 0, null, 1, 3);
+
+    assertNull(checker.check(operations));
+  }
+
+  @Test
+  public void concurrentIncrementsAreLinearizable() {
+    record(0, INVOKE, 1, 0, 2L, 0, 10);
+    record(1, INVOKE, 1, 0, 1L, 1, 9);
+    record(2, INVOKE, 1, 0, 3L, 2, 8);
+    record(3, GET, 0, 0, 3L, 11, 12);
+
+    assertNull(checker.check(operations));
+  }
+
+  @Test
+  public void keysAreCheckedIndependently() {
+    record(0, PUT, 1, 0, null, 0, 1);
+    record(1, "other", PUT, 2, 0, null, 0, 1);
+    record(0, GET, 0, 0, 1L, 2, 3);
+    record(1, "other", GET, 0, 0, 2L, 2, 3);
+
+    assertNull(checker.check(operations));
+  }
+
+  @Test
+  public void staleReadIsNotLinearizable() {
+    record(0, PUT, 1, 0, null, 0, 1);
+    record(0, PUT, 2, 0, null, 2, 3);
+    record(1, GET, 0, 0, 1L, 4, 5);
+
+    String violation = checker.check(operations);
+    assertNotNull(violation);
+    assertTrue(violation, violation.contains("get(key) = 1"));
+  }
+
+  @Test
+  public void lostUpdateIsNotLinearizable() {
+    //two overlapping increments that both observed the same value
+    record(0, INVOKE, 1, 0, 1L, 0, 10);
+    record(1, INVOKE, 1, 0, 1L, 1, 9);
+
+    assertNotNull(checker.check(operations));
+  }
+
+  @Test
+  public void doubleSuccessfulPutIfAbsentIsNotLinearizable() {
+    record(0, PUT_IF_ABSENT, 1, 0, true, 0, 10);
+    record(1, PUT_IF_ABSENT, 2, 0, true, 1, 9);
+
+    assertNotNull(checker.check(operations));
+  }
+
+  @Test
+  public void replaceOfRemovedValueIsNotLinearizable() {
+    record(0, PUT, 1, 0, null, 0, 1);
+    record(0, GET_AND_REMOVE, 0, 0, 1L, 2, 3);
+    record(1, REPLACE, 1, 2, true, 4, 5);
+
+    assertNotNull(checker.check(operations));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void tooComplexHistoryIsReported() {
+    //many overlapping puts of distinct values leave many orders to explore
+    for (int thread = 0; thread < 20; thread++) {
+      record(thread, PUT, thread, 0, null, thread, 100);
+    }
+    record(0, GET, 0, 0, -1L, 101, 102);
+
+    new LinearizabilityChecker(1000).check(operations);
+  }
+
+  private void record(int thread, CacheOperationType type, long value, long newValue, Object result,
+                      long invocationTime, long responseTime) {
+    record(thread, "key", type, value, newValue, result, invocationTime, responseTime);
+  }
+
+  private void record(int thread, Object key, CacheOperationType type, long value, long newValue, Object result,
+                      long invocationTime, long responseTime) {
+    operations.add(new RecordedOperation(thread, key, type, value, newValue, result, invocationTime, responseTime));
+  }
+}
@@ -26,6 +26,7 @@ import org.jsr107.tck.processor.AssertNotPresentEntryProcessor;
 import org.jsr107.tck.processor.CombineEntryProcessor;
 import org.jsr107.tck.processor.GetEntryProcessor;
 import org.jsr107.tck.processor.SetEntryProcessor;
+import org.jsr107.tck.support.TimeSource;
 import org.jsr107.tck.testutil.CacheTestSupport;
 import org.jsr107.tck.testutil.ExcludeListExcluder;
 import org.junit.After;
@@ -68,6 +69,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Unit Tests for expiring cache entries with {@link javax.cache.expiry.ExpiryPolicy}s.
@@ -152,7 +154,7 @@ public class CacheExpiryTest extends CacheTestSupport<Integer, Integer> {
       cache.put(i, i+100);
     }
     //should work with all implementations
-    Thread.sleep(50);
+    getTimeSource().advance(50, TimeUnit.MILLISECONDS);
     cache.removeAll();
 
     assertEquals(100L, lookupManagementAttribute(cache, CacheStatistics, "CachePuts"));
@@ -182,6 +184,35 @@ public class CacheExpiryTest extends CacheTestSupport<Integer, Integer> {
     assertEquals(100L, lookupManagementAttribute(cache, CacheStatistics, "CacheRemovals"));
   }
 
+  /**
+   * Ensure that entries created with a long {@link Duration} expire once that
+   * {@link Duration} has elapsed.  As waiting a day on the wall clock is not
+   * practical, this is only checked when the implementation provides a virtual
+   * {@link TimeSource}.
+   */
+  @Test
+  public void expire_whenCreatedDurationElapsed() throws Exception {
+    TimeSource timeSource = getTimeSource();
+    assumeTrue(timeSource.isVirtual());
+
+    ExpiryPolicy policy = new CreatedExpiryPolicy(Duration.ONE_DAY);
+    expiryPolicyServer.setExpiryPolicy(policy);
+
+    MutableConfiguration<Integer, Integer> config = new MutableConfiguration<>();
+    config.setExpiryPolicyFactory(FactoryBuilder.factoryOf(expiryPolicyClient));
+    Cache<Integer, Integer> cache = getCacheManager().createCache(getTestCacheName(), config);
+
+    cache.put(1, 1);
+
+    timeSource.advance(23, TimeUnit.HOURS);
+    assertTrue(cache.containsKey(1));
+    assertEquals((Integer) 1, cache.get(1));
+
+    timeSource.advance(2, TimeUnit.HOURS);
+    assertFalse(cache.containsKey(1));
+    assertNull(cache.get(1));
+  }
+
 
   /**
    * Assert "The minimum allowed TimeUnit is TimeUnit.MILLISECONDS.
@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.expiry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.cache.expiry.AccessedExpiryPolicy;
+import javax.cache.expiry.Duration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.jsr107.tck.expiry.ExpiryPolicyServer.EntryOperation.ACCESSED;
+import static org.jsr107.tck.expiry.ExpiryPolicyServer.EntryOperation.CREATION;
+import static org.jsr107.tck.expiry.ExpiryPolicyServer.EntryOperation.UPDATED;
+
+/**
+ * Functional Tests for the {@link ExpiryPolicyClient} and
+ * {@link ExpiryPolicyServer} classes.
+ */
+public class ExpiryPolicyClientServerTest {
+
+  /**
+   * Ensure that the {@link ExpiryPolicyServer} counts each request made by an
+   * {@link ExpiryPolicyClient}, per {@link ExpiryPolicyServer.EntryOperation}.
+   */
+  @Test
+  public void shouldCountInvocationsFromClient() throws Exception {
+
+    ExpiryPolicyServer server = new ExpiryPolicyServer(10005, new AccessedExpiryPolicy(Duration.ONE_HOUR));
+
+    try {
+      server.open();
+
+      ExpiryPolicyClient client = new ExpiryPolicyClient(server.getInetAddress(), server.getPort());
+
+      Assert.assertThat(client.getExpiryForCreation(), is(Duration.ONE_HOUR));
+      Assert.assertThat(client.getExpiryForAccess(), is(Duration.ONE_HOUR));
+      Assert.assertThat(client.getExpiryForAccess(), is(Duration.ONE_HOUR));
+      Assert.assertThat(client.getExpiryForUpdate(), is((Duration) null));
+
+      Assert.assertThat(server.getInvocationCount(CREATION), is(1L));
+      Assert.assertThat(server.getInvocationCount(ACCESSED), is(2L));
+      Assert.assertThat(server.getInvocationCount(UPDATED), is(1L));
+
+      server.resetInvocationCounts();
+
+      Assert.assertThat(server.getInvocationCount(CREATION), is(0L));
+      Assert.assertThat(server.getInvocationCount(ACCESSED), is(0L));
+      Assert.assertThat(server.getInvocationCount(UPDATED), is(0L));
+
+      client.getExpiryForAccess();
+
+      Assert.assertThat(server.getInvocationCount(ACCESSED), is(1L));
+
+      client.close();
+    } finally {
+      server.close();
+    }
+  }
+}
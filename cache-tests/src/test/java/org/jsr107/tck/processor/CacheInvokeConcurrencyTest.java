@@ -0,0 +1,137 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.processor;
+
+import org.jsr107.tck.testutil.CacheTestSupport;
+import org.jsr107.tck.testutil.ConcurrentRunner;
+import org.jsr107.tck.testutil.ExcludeListExcluder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.cache.configuration.MutableConfiguration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Ensures that {@link javax.cache.Cache#invoke} is atomic when the same
+ * entries are invoked concurrently by a number of threads.
+ */
+public class CacheInvokeConcurrencyTest extends CacheTestSupport<Integer, Long> {
+
+  /**
+   * Rule used to exclude tests
+   */
+  @Rule
+  public ExcludeListExcluder rule = new ExcludeListExcluder(CacheInvokeConcurrencyTest.class);
+
+  private static final int THREADS = 8;
+
+  private static final int INCREMENTS = 1000;
+
+  @Override
+  protected MutableConfiguration<Integer, Long> newMutableConfiguration() {
+    return new MutableConfiguration<Integer, Long>().setTypes(Integer.class, Long.class);
+  }
+
+  /**
+   * Increments a single key from many threads, checking that no update is
+   * lost and that every invocation observed a distinct counter value.
+   */
+  @Test
+  public void incrementHotKeyConcurrently() throws Exception {
+    final AtomicIntegerArray observed = new AtomicIntegerArray(THREADS * INCREMENTS + 1);
+
+    runConcurrently(new IncrementTask() {
+      @Override
+      public void increment(int thread, int iteration) {
+        long value = cache.invoke(1, new IncrementEntryProcessor<Integer>());
+        observed.incrementAndGet((int) value);
+      }
+    });
+
+    assertEquals(Long.valueOf(THREADS * INCREMENTS), cache.get(1));
+    for (int value = 1; value <= THREADS * INCREMENTS; value++) {
+      assertEquals("counter value " + value, 1, observed.get(value));
+    }
+  }
+
+  /**
+   * Increments a small set of keys from many threads, favouring some keys
+   * over others, checking that no update to any key is lost.
+   */
+  @Test
+  public void incrementSkewedKeysConcurrently() throws Exception {
+    final int keys = 16;
+    final long[][] expected = new long[THREADS][keys];
+
+    runConcurrently(new IncrementTask() {
+      private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+          return new Random();
+        }
+      };
+
+      @Override
+      public void increment(int thread, int iteration) {
+        //square the uniform value so low keys are chosen more often
+        double uniform = random.get().nextDouble();
+        int key = (int) (uniform * uniform * keys);
+        long delta = 1 + iteration % 3;
+
+        cache.invoke(key, new IncrementEntryProcessor<Integer>(delta));
+        expected[thread][key] += delta;
+      }
+    });
+
+    for (int key = 0; key < keys; key++) {
+      long total = 0;
+      for (int thread = 0; thread < THREADS; thread++) {
+        total += expected[thread][key];
+      }
+      assertEquals("key " + key, total, cache.containsKey(key) ? (long) cache.get(key) : 0);
+    }
+  }
+
+  /**
+   * An increment performed by each thread on each iteration.
+   */
+  private interface IncrementTask {
+    void increment(int thread, int iteration);
+  }
+
+  /**
+   * Runs an {@link IncrementTask} {@link #INCREMENTS} times on each of
+   * {@link #THREADS} threads, all of which start together, failing if they
+   * don't finish within {@link ConcurrentRunner#TIMEOUT_SECONDS}.
+   *
+   * @param task the {@link IncrementTask}
+   */
+  private void runConcurrently(final IncrementTask task) throws Exception {
+    ConcurrentRunner.callConcurrently(THREADS, new ConcurrentRunner.ThreadTask<Void>() {
+      @Override
+      public Void call(int thread) {
+        for (int iteration = 0; iteration < INCREMENTS; iteration++) {
+          task.increment(thread, iteration);
+        }
+        return null;
+      }
+    });
+  }
+}
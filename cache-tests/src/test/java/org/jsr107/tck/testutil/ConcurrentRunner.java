@@ -0,0 +1,172 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jsr107.tck.testutil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Runs a task on a number of threads that all start together, for tests of
+ * concurrent behaviour.
+ * <p/>
+ * The threads must finish within {@link #TIMEOUT_SECONDS}, otherwise the
+ * test fails, reporting where a thread was stuck, rather than hanging the
+ * build.  The threads are daemons and are interrupted once the run ends, so
+ * a thread that never returns doesn't prevent the JVM from exiting.
+ */
+public final class ConcurrentRunner {
+
+  /**
+   * The seconds in which all the threads of a run must finish.
+   */
+  public static final long TIMEOUT_SECONDS = 60;
+
+  private ConcurrentRunner() {
+    //utility class
+  }
+
+  /**
+   * A task that is told which of the threads runs it.
+   *
+   * @param <T> the type of the result of the task
+   */
+  public interface ThreadTask<T> {
+
+    /**
+     * Performs the task.
+     *
+     * @param thread the index of the thread, from zero
+     * @return the result of the task
+     * @throws Exception when the task fails
+     */
+    T call(int thread) throws Exception;
+  }
+
+  /**
+   * Calls a task on a number of threads, all of which start together.
+   *
+   * @param threads the number of threads
+   * @param task    the task
+   * @param <T>     the type of the result of the task
+   * @return the result of each thread, in the order of the threads
+   * @throws Exception the first failure of a thread
+   */
+  public static <T> List<T> callConcurrently(int threads, final Callable<T> task) throws Exception {
+    return callConcurrently(threads, new ThreadTask<T>() {
+      @Override
+      public T call(int thread) throws Exception {
+        return task.call();
+      }
+    });
+  }
+
+  /**
+   * Calls a task on a number of threads, all of which start together,
+   * telling each which thread it is.
+   *
+   * @param threads the number of threads
+   * @param task    the {@link ThreadTask}
+   * @param <T>     the type of the result of the task
+   * @return the result of each thread, in the order of the threads
+   * @throws Exception the first failure of a thread
+   */
+  public static <T> List<T> callConcurrently(int threads, final ThreadTask<T> task) throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    final AtomicReferenceArray<Thread> workers = new AtomicReferenceArray<Thread>(threads);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger created = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread worker = new Thread(runnable, "concurrent-runner-" + created.getAndIncrement());
+        worker.setDaemon(true);
+        return worker;
+      }
+    });
+
+    List<Future<T>> futures = new ArrayList<Future<T>>();
+    try {
+      for (int thread = 0; thread < threads; thread++) {
+        final int id = thread;
+        futures.add(executorService.submit(new Callable<T>() {
+          @Override
+          public T call() throws Exception {
+            workers.set(id, Thread.currentThread());
+            barrier.await();
+            return task.call(id);
+          }
+        }));
+      }
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+      List<T> results = new ArrayList<T>();
+      for (int thread = 0; thread < threads; thread++) {
+        try {
+          results.add(futures.get(thread).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+          fail("Thread " + thread + " of " + threads + " didn't finish within " + TIMEOUT_SECONDS
+              + " seconds, which suggests a deadlock" + describe(futures, workers));
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          }
+          throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+      }
+      return results;
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Describes where the unfinished threads of a run are.
+   *
+   * @param futures the {@link Future} of each thread's task
+   * @param workers the thread running each task, once it has started
+   * @return the stack trace of each thread whose task hasn't finished
+   */
+  private static String describe(List<? extends Future<?>> futures, AtomicReferenceArray<Thread> workers) {
+    StringBuilder description = new StringBuilder();
+    for (int thread = 0; thread < workers.length(); thread++) {
+      Thread worker = workers.get(thread);
+      if (!futures.get(thread).isDone() && worker != null) {
+        description.append("\nthread ").append(thread).append(" ").append(worker.getState());
+        for (StackTraceElement element : worker.getStackTrace()) {
+          description.append("\n    at ").append(element);
+        }
+      }
+    }
+    return description.toString();
+  }
+}
@@ -16,6 +16,9 @@
  */
 package org.jsr107.tck.testutil;
 
+import org.jsr107.tck.support.SystemTimeSource;
+import org.jsr107.tck.support.TimeSource;
+
 import javax.cache.Cache;
 import javax.cache.CacheException;
 import javax.cache.CacheManager;
@@ -120,6 +123,22 @@ public class TestSupport {
     return Caching.getCachingProvider().getCacheManager();
   }
 
+  /**
+   * Obtains the {@link TimeSource} to use for letting expiry durations elapse.
+   * <p/>
+   * When the {@link CacheManager} can be unwrapped to a {@link TimeSource} that
+   * is used, otherwise time is based on the wall clock.
+   *
+   * @return the {@link TimeSource}
+   */
+  protected TimeSource getTimeSource() {
+    try {
+      return getCacheManager().unwrap(TimeSource.class);
+    } catch (IllegalArgumentException e) {
+      return SystemTimeSource.INSTANCE;
+    }
+  }
+
   protected String getTestCacheName() {
     return getClass().getName();
   }
@@ -20,25 +20,44 @@ package org.jsr107.tck.annotations.cdi.test;
 import org.jboss.weld.environment.se.Weld;
 import org.jboss.weld.environment.se.WeldContainer;
 
-import javax.cache.annotation.BeanProvider;
+import javax.cache.annotation.BootstrapPhases;
+import javax.cache.annotation.BootstrapTimedBeanProvider;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 
 /**
  * Weld specific bean provider that loads up the CDI BeanManager when constructed
+ * <p/>
+ * The reference resolved for each bean type is cached, so that only the first
+ * lookup of a type pays for resolving it.
  *
  * @author Eric Dalquist
  * @version $Revision$
  */
-public class CdiBeanProvider implements BeanProvider {
+public class CdiBeanProvider implements BootstrapTimedBeanProvider {
   private final BeanManager beanManager;
+  private final BootstrapPhases bootstrapPhases;
+  private final ConcurrentMap<Class<?>, Object> beans = new ConcurrentHashMap<Class<?>, Object>();
 
   public CdiBeanProvider() {
+    bootstrapPhases = new BootstrapPhases("Weld");
     Weld weld = new Weld();
+    bootstrapPhases.end("create");
     WeldContainer delegate = weld.initialize();
+    bootstrapPhases.end("initialize");
     beanManager = delegate.getBeanManager();
+    bootstrapPhases.end("beanManager");
+    Logger.getLogger(getClass().getName()).info(bootstrapPhases.toString());
+  }
+
+  @Override
+  public BootstrapPhases getBootstrapPhases() {
+    return bootstrapPhases;
   }
 
   /* (non-Javadoc)
@@ -50,15 +69,21 @@ public class CdiBeanProvider implements BeanProvider {
       throw new IllegalArgumentException("CDI Bean type cannot be null");
     }
 
-    Set<Bean<?>> beans = beanManager.getBeans(beanClass);
-    if (beans.isEmpty()) {
-      throw new IllegalStateException("Could not locate a bean of type " + beanClass.getName());
+    Object cached = beans.get(beanClass);
+    if (cached == null) {
+      Set<Bean<?>> candidates = beanManager.getBeans(beanClass);
+      if (candidates.isEmpty()) {
+        throw new IllegalStateException("Could not locate a bean of type " + beanClass.getName());
+      }
+      Bean<?> bean = beanManager.resolve(candidates);
+      CreationalContext<?> context = beanManager.createCreationalContext(bean);
+      Object reference = beanManager.getReference(bean, bean.getBeanClass(), context);
+
+      cached = beans.putIfAbsent(beanClass, reference);
+      if (cached == null) {
+        cached = reference;
+      }
     }
-    Bean<?> bean = beanManager.resolve(beans);
-    CreationalContext<?> context = beanManager.createCreationalContext(bean);
-    @SuppressWarnings("unchecked")
-    T result = (T) beanManager.getReference(bean, bean.getBeanClass(),
-        context);
-    return result;
+    return beanClass.cast(cached);
   }
 }
@@ -23,26 +23,36 @@ import com.google.inject.Injector;
 import com.google.inject.Provider;
 import manager.CacheNameOnEachMethodBlogManagerImpl;
 import manager.ClassLevelCacheConfigBlogManagerImpl;
+import manager.CountingBlogManagerImpl;
 import manager.UsingDefaultCacheNameBlogManagerImpl;
 import org.jsr107.ri.annotations.guice.module.CacheAnnotationsModule;
 
 import javax.cache.CacheManager;
 import javax.cache.Caching;
-import javax.cache.annotation.BeanProvider;
+import javax.cache.annotation.BootstrapPhases;
+import javax.cache.annotation.BootstrapTimedBeanProvider;
 import javax.cache.spi.CachingProvider;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
  * Guice specific bean provider that loads up guice modules when constructed
+ * <p/>
+ * The instance created for each type is cached, so that only the first lookup
+ * of a type pays for its construction and injection.
  *
  * @author Michael Stachel
  * @version $Revision$
  */
-public class GuiceBeanProvider implements BeanProvider {
+public class GuiceBeanProvider implements BootstrapTimedBeanProvider {
   private final Injector injector;
+  private final BootstrapPhases bootstrapPhases;
+  private final ConcurrentMap<Class<?>, Object> beans = new ConcurrentHashMap<Class<?>, Object>();
 
   public GuiceBeanProvider() {
     super();
+    this.bootstrapPhases = new BootstrapPhases("Guice");
     this.injector = Guice.createInjector(new AbstractModule() {
 
       @Override
@@ -51,6 +61,7 @@ public class GuiceBeanProvider implements BeanProvider {
         bind(CacheNameOnEachMethodBlogManagerImpl.class);
         bind(ClassLevelCacheConfigBlogManagerImpl.class);
         bind(UsingDefaultCacheNameBlogManagerImpl.class);
+        bind(CountingBlogManagerImpl.class);
         bind(CacheManager.class).toProvider(new Provider<CacheManager>() {
 
           @Override
@@ -63,12 +74,27 @@ public class GuiceBeanProvider implements BeanProvider {
       }
 
     });
+    bootstrapPhases.end("createInjector");
     this.injector.getInstance(Logger.class).info("Guice started successfully");
+    this.injector.getInstance(Logger.class).info(bootstrapPhases.toString());
+  }
+
+  @Override
+  public BootstrapPhases getBootstrapPhases() {
+    return bootstrapPhases;
   }
 
   @Override
   public <T> T getBeanByType(Class<T> beanClass) {
-    return this.injector.getInstance(beanClass);
+    Object cached = beans.get(beanClass);
+    if (cached == null) {
+      T bean = this.injector.getInstance(beanClass);
+      cached = beans.putIfAbsent(beanClass, bean);
+      if (cached == null) {
+        cached = bean;
+      }
+    }
+    return beanClass.cast(cached);
   }
 
 }
@@ -20,22 +20,41 @@ package org.jsr107.tck.annotations.spring.test;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
-import javax.cache.annotation.BeanProvider;
+import javax.cache.annotation.BootstrapPhases;
+import javax.cache.annotation.BootstrapTimedBeanProvider;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 
 /**
  * Spring specific bean provider that loads up the spring app context when constructed
+ * <p/>
+ * The bean found for each type is cached, so that only the first lookup of a
+ * type pays for searching the context.
  *
  * @author Eric Dalquist
  * @version $Revision$
  */
-public class SpringBeanProvider implements BeanProvider {
+public class SpringBeanProvider implements BootstrapTimedBeanProvider {
   private final ApplicationContext applicationContext;
+  private final BootstrapPhases bootstrapPhases;
+  private final ConcurrentMap<Class<?>, Object> beans = new ConcurrentHashMap<Class<?>, Object>();
 
   public SpringBeanProvider() {
+    this.bootstrapPhases = new BootstrapPhases("Spring");
     final ClassPathXmlApplicationContext classPathXmlApplicationContext =
-        new ClassPathXmlApplicationContext("/annotationsTestContext.xml");
+        new ClassPathXmlApplicationContext(new String[]{"/annotationsTestContext.xml"}, false);
+    bootstrapPhases.end("create");
+    classPathXmlApplicationContext.refresh();
+    bootstrapPhases.end("refresh");
     classPathXmlApplicationContext.registerShutdownHook();
     this.applicationContext = classPathXmlApplicationContext;
+    Logger.getLogger(getClass().getName()).info(bootstrapPhases.toString());
+  }
+
+  @Override
+  public BootstrapPhases getBootstrapPhases() {
+    return bootstrapPhases;
   }
 
   /* (non-Javadoc)
@@ -43,7 +62,15 @@ public class SpringBeanProvider implements BeanProvider {
    */
   @Override
   public <T> T getBeanByType(Class<T> beanClass) {
-    return this.applicationContext.getBean(beanClass);
+    Object cached = beans.get(beanClass);
+    if (cached == null) {
+      T bean = this.applicationContext.getBean(beanClass);
+      cached = beans.putIfAbsent(beanClass, bean);
+      if (cached == null) {
+        cached = bean;
+      }
+    }
+    return beanClass.cast(cached);
   }
 
 }
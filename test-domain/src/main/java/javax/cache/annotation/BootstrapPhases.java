@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package javax.cache.annotation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases in which an annotation test harness bootstraps its
+ * dependency injection container.
+ * <p/>
+ * Each phase runs from the end of the previous one, or from the construction
+ * of the {@link BootstrapPhases}, until {@link #end(String)} is called.
+ */
+public class BootstrapPhases {
+
+  private final String container;
+  private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+  private long phaseStart;
+
+  /**
+   * Constructs a {@link BootstrapPhases}, starting the first phase.
+   *
+   * @param container the name of the container being bootstrapped
+   */
+  public BootstrapPhases(String container) {
+    this.container = container;
+    this.phaseStart = System.nanoTime();
+  }
+
+  /**
+   * Ends the current phase and starts the next.
+   *
+   * @param phase the name of the phase that ended
+   */
+  public synchronized void end(String phase) {
+    long now = System.nanoTime();
+    phases.put(phase, now - phaseStart);
+    phaseStart = now;
+  }
+
+  /**
+   * Obtains the name of the container.
+   *
+   * @return the name of the container
+   */
+  public String getContainer() {
+    return container;
+  }
+
+  /**
+   * Obtains the duration of each phase, in the order they ran.
+   *
+   * @return the durations in nanoseconds by phase
+   */
+  public synchronized Map<String, Long> getPhases() {
+    return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(phases));
+  }
+
+  /**
+   * Obtains the total duration of the phases.
+   *
+   * @return the total duration in nanoseconds
+   */
+  public synchronized long getTotal() {
+    long total = 0;
+    for (long duration : phases.values()) {
+      total += duration;
+    }
+    return total;
+  }
+
+  /**
+   * Describes the phases, for logging.
+   *
+   * @return a description of the phases
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder(container).append(" bootstrap took ").append(millis(getTotal()));
+    String separator = ": ";
+    for (Map.Entry<String, Long> entry : phases.entrySet()) {
+      builder.append(separator).append(entry.getKey()).append('=').append(millis(entry.getValue()));
+      separator = ", ";
+    }
+    return builder.toString();
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.1f ms", (double) nanos / TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
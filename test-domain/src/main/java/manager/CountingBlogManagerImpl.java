@@ -0,0 +1,150 @@
+/**
+ *  Copyright 2011-2013 Terracotta, Inc.
+ *  Copyright 2011-2013 Oracle, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package manager;
+
+import domain.Blog;
+
+import javax.cache.annotation.CacheDefaults;
+import javax.cache.annotation.CacheKey;
+import javax.cache.annotation.CachePut;
+import javax.cache.annotation.CacheRemove;
+import javax.cache.annotation.CacheRemoveAll;
+import javax.cache.annotation.CacheResult;
+import javax.cache.annotation.CacheValue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe implementation of BlogManager that counts how many times the
+ * methods annotated with {@link CacheResult} actually run, so that concurrent
+ * callers can tell how often a missing entry was computed.
+ * <p/>
+ * Like the other implementations its state is static, as the containers may
+ * create a new instance for every bean lookup.  The annotated methods can be
+ * made to take longer, as if reading from a slow backend, with
+ * {@link #setLatency(long, TimeUnit)}.
+ */
+@CacheDefaults(cacheName = "countingBlogManager")
+public class CountingBlogManagerImpl implements BlogManager {
+
+  private static final ConcurrentMap<String, Blog> MAP = new ConcurrentHashMap<String, Blog>();
+
+  private static final ConcurrentMap<String, AtomicLong> INVOCATIONS = new ConcurrentHashMap<String, AtomicLong>();
+
+  private static volatile long latencyNanos;
+
+  @CacheResult
+  public Blog getEntryCached(String title) {
+    return load(title);
+  }
+
+  @CacheResult
+  public Blog getEntryCached(String randomArg, @CacheKey String title, String randomArg2) {
+    return load(title);
+  }
+
+  public Blog getEntryRaw(String title) {
+    return MAP.get(title);
+  }
+
+  @CacheRemove
+  public void clearEntryFromCache(String title) {
+  }
+
+  public void clearEntry(String title) {
+    MAP.remove(title);
+  }
+
+  @CacheRemoveAll
+  public void clearCache() {
+  }
+
+  public void createEntry(Blog blog) {
+    MAP.put(blog.getTitle(), blog);
+  }
+
+  /**
+   * Replaces an entry, caching it under its title with {@link CachePut}.
+   *
+   * @param title the title
+   * @param blog  the {@link Blog}
+   */
+  @CachePut
+  public void updateEntry(String title, @CacheValue Blog blog) {
+    MAP.put(title, blog);
+  }
+
+  /**
+   * Obtains the number of times the {@link CacheResult} methods ran for a
+   * title.
+   *
+   * @param title the title
+   * @return the number of invocations
+   */
+  public static long getInvocationCount(String title) {
+    AtomicLong invocations = INVOCATIONS.get(title);
+    return invocations == null ? 0 : invocations.get();
+  }
+
+  /**
+   * Resets the number of invocations of every title.
+   */
+  public static void resetInvocationCounts() {
+    INVOCATIONS.clear();
+  }
+
+  /**
+   * Sets how long the {@link CacheResult} methods take to run.
+   *
+   * @param latency the latency, zero for none
+   * @param unit    the {@link TimeUnit} of the latency
+   */
+  public static void setLatency(long latency, TimeUnit unit) {
+    latencyNanos = unit.toNanos(latency);
+  }
+
+  /**
+   * Counts an invocation for a title and reads its entry, after the
+   * latency.
+   *
+   * @param title the title
+   * @return the {@link Blog}, or <code>null</code> if there is none
+   */
+  private static Blog load(String title) {
+    AtomicLong invocations = INVOCATIONS.get(title);
+    if (invocations == null) {
+      AtomicLong created = new AtomicLong();
+      invocations = INVOCATIONS.putIfAbsent(title, created);
+      if (invocations == null) {
+        invocations = created;
+      }
+    }
+    invocations.incrementAndGet();
+
+    long latency = latencyNanos;
+    if (latency > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return MAP.get(title);
+  }
+}